@@ -0,0 +1,150 @@
+package com.activeandroid.compiler;
+
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Description: Holds what the generated adapter needs to know about one {@code @Column} field
+ */
+class ColumnDefinition {
+
+    /**
+     * How the value of the column is stored in the DB
+     */
+    enum Kind {
+        BYTE, SHORT, INT, LONG, FLOAT, DOUBLE, BOOLEAN, CHAR, STRING, BLOB, ENUM, FOREIGN_KEY
+    }
+
+    final VariableElement element;
+
+    final String fieldName;
+
+    /**
+     * The name of the column when loading from a cursor
+     */
+    final String columnName;
+
+    /**
+     * The name of the column when saving, which differs from {@link #columnName} for a named foreign key
+     */
+    final String bindName;
+
+    final TypeMirror type;
+
+    final Kind kind;
+
+    /**
+     * True if the field is an object that can hold null
+     */
+    final boolean nullable;
+
+    final boolean primaryKey;
+
+    final boolean indexedKey;
+
+    ColumnDefinition(VariableElement element, String columnName, String bindName, Kind kind, boolean nullable,
+                     boolean primaryKey, boolean indexedKey) {
+        this.element = element;
+        this.fieldName = element.getSimpleName().toString();
+        this.columnName = columnName;
+        this.bindName = bindName;
+        this.type = element.asType();
+        this.kind = kind;
+        this.nullable = nullable;
+        this.primaryKey = primaryKey;
+        this.indexedKey = indexedKey;
+    }
+
+    /**
+     * Returns true if the value can be inlined into SQL without escaping
+     * @return
+     */
+    boolean isNumber() {
+        switch (kind) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the expression reading the column at {@code index} from {@code cursor}
+     * @return
+     */
+    String getCursorExpression() {
+        switch (kind) {
+            case BYTE:
+                return "(byte) cursor.getInt(index)";
+            case SHORT:
+                return "cursor.getShort(index)";
+            case INT:
+                return "cursor.getInt(index)";
+            case LONG:
+                return "cursor.getLong(index)";
+            case FLOAT:
+                return "cursor.getFloat(index)";
+            case DOUBLE:
+                return "cursor.getDouble(index)";
+            case BOOLEAN:
+                return "cursor.getInt(index) != 0";
+            case CHAR:
+                return "cursor.getString(index).charAt(0)";
+            case STRING:
+                return "cursor.getString(index)";
+            case BLOB:
+                return "cursor.getBlob(index)";
+            case ENUM:
+                return type.toString() + ".valueOf(cursor.getString(index))";
+            default:
+                throw new IllegalStateException("No cursor expression for: " + kind);
+        }
+    }
+
+    /**
+     * Returns the statement binding the non-null field to the argument at {@code index} of {@code statement}
+     * @return
+     */
+    String getBindStatement(String index) {
+        final String value = "model." + fieldName;
+        switch (kind) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                return "statement.bindLong(" + index + ", " + value + ");";
+            case FLOAT:
+            case DOUBLE:
+                return "statement.bindDouble(" + index + ", " + value + ");";
+            case BOOLEAN:
+                return "statement.bindLong(" + index + ", " + value + " ? 1 : 0);";
+            case BLOB:
+                return "statement.bindBlob(" + index + ", " + value + ");";
+            default:
+                return "statement.bindString(" + index + ", " + getStoredExpression() + ");";
+        }
+    }
+
+    /**
+     * Returns the expression of the value stored in the DB, given a non-null field
+     * @return
+     */
+    String getStoredExpression() {
+        final String value = "model." + fieldName;
+        switch (kind) {
+            case CHAR:
+                return "String.valueOf(" + value + ")";
+            case ENUM:
+                return value + ".name()";
+            case FOREIGN_KEY:
+                return value + ".getId()";
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.activeandroid.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Description: Generates an {@code IModelAdapter} for every model class so the runtime can save and load
+ * rows without reflection. Models with a column generated code cannot reach (a private or final field, or a type
+ * other than a primitive, String, byte[], enum or foreign key) are skipped and keep using reflection.
+ * Serializers are registered at runtime, so an adapter is generated even for a column whose type the app has a
+ * {@code TypeSerializer} for; {@code TableInfo} then ignores that adapter and the table uses reflection.
+ */
+@SupportedAnnotationTypes({
+        ModelAdapterProcessor.TABLE,
+        ModelAdapterProcessor.COLUMN
+})
+public class ModelAdapterProcessor extends AbstractProcessor {
+
+    static final String TABLE = "com.activeandroid.annotation.Table";
+    static final String COLUMN = "com.activeandroid.annotation.Column";
+    static final String PRIMARY_KEY = "com.activeandroid.annotation.PrimaryKey";
+    static final String FOREIGN_KEY = "com.activeandroid.annotation.ForeignKey";
+    static final String INDEXED_KEY = "com.activeandroid.annotation.IndexedKey";
+    static final String IGNORE = "com.activeandroid.annotation.Ignore";
+    static final String MODEL = "com.activeandroid.IModel";
+
+    static final String SUFFIX = "$$Adapter";
+
+    private Elements mElements;
+
+    private Types mTypes;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        mElements = processingEnv.getElementUtils();
+        mTypes = processingEnv.getTypeUtils();
+
+        final TypeElement table = mElements.getTypeElement(TABLE);
+        final TypeElement column = mElements.getTypeElement(COLUMN);
+        if (table == null || column == null) {
+            return false;
+        }
+
+        final Set<TypeElement> models = new LinkedHashSet<TypeElement>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(table)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                models.add((TypeElement) element);
+            }
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(column)) {
+            models.add((TypeElement) element.getEnclosingElement());
+        }
+
+        for (TypeElement model : models) {
+            if (isGeneratable(model)) {
+                final List<ColumnDefinition> columns = getColumns(model);
+                if (columns != null) {
+                    writeAdapter(model, columns);
+                }
+            }
+        }
+
+        return false;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private boolean isGeneratable(TypeElement model) {
+        final Set<Modifier> modifiers = model.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT) || getAnnotation(model, IGNORE) != null
+                || !mTypes.isAssignable(model.asType(), mTypes.erasure(mElements.getTypeElement(MODEL).asType()))) {
+            return false;
+        }
+
+        if (model.getNestingKind().isNested() && !modifiers.contains(Modifier.STATIC)) {
+            note(model, "inner classes cannot be instantiated by a generated adapter");
+            return false;
+        }
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(model.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        note(model, "no accessible default constructor");
+        return false;
+    }
+
+    /**
+     * Returns the columns of the model and its super classes, or null if any of them is out of reach of generated code
+     */
+    private List<ColumnDefinition> getColumns(TypeElement model) {
+        final List<ColumnDefinition> columns = new ArrayList<ColumnDefinition>();
+        final PackageElement modelPackage = mElements.getPackageOf(model);
+        final TypeMirror modelType = mTypes.erasure(mElements.getTypeElement(MODEL).asType());
+
+        TypeElement current = model;
+        while (current != null) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                final AnnotationMirror columnAnnotation = getAnnotation(field, COLUMN);
+                if (columnAnnotation == null) {
+                    continue;
+                }
+
+                final Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC)
+                        || (!modifiers.contains(Modifier.PUBLIC) && !mElements.getPackageOf(current).equals(modelPackage))) {
+                    note(model, "column " + field.getSimpleName() + " is not accessible from the generated adapter");
+                    return null;
+                }
+
+                final ColumnDefinition.Kind kind = getKind(field, modelType);
+                if (kind == null) {
+                    note(model, "column " + field.getSimpleName() + " of type " + field.asType() + " needs reflection");
+                    return null;
+                }
+
+                String columnName = (String) getValue(columnAnnotation, "name");
+                if (columnName.equals("")) {
+                    columnName = field.getSimpleName().toString();
+                }
+
+                String bindName = columnName;
+                final AnnotationMirror foreignKey = getAnnotation(field, FOREIGN_KEY);
+                if (foreignKey != null && !getValue(foreignKey, "name").equals("")) {
+                    bindName = (String) getValue(foreignKey, "name");
+                }
+
+                columns.add(new ColumnDefinition(field, columnName, bindName, kind, !field.asType().getKind().isPrimitive(),
+                        getAnnotation(field, PRIMARY_KEY) != null, getAnnotation(field, INDEXED_KEY) != null));
+            }
+
+            final TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+
+        return columns;
+    }
+
+    private ColumnDefinition.Kind getKind(VariableElement field, TypeMirror modelType) {
+        final TypeMirror type = field.asType();
+        switch (type.getKind()) {
+            case BYTE:
+                return ColumnDefinition.Kind.BYTE;
+            case SHORT:
+                return ColumnDefinition.Kind.SHORT;
+            case INT:
+                return ColumnDefinition.Kind.INT;
+            case LONG:
+                return ColumnDefinition.Kind.LONG;
+            case FLOAT:
+                return ColumnDefinition.Kind.FLOAT;
+            case DOUBLE:
+                return ColumnDefinition.Kind.DOUBLE;
+            case BOOLEAN:
+                return ColumnDefinition.Kind.BOOLEAN;
+            case CHAR:
+                return ColumnDefinition.Kind.CHAR;
+            case ARRAY:
+                return type.toString().equals("byte[]") ? ColumnDefinition.Kind.BLOB : null;
+            case DECLARED:
+                break;
+            default:
+                return null;
+        }
+
+        final String name = mTypes.erasure(type).toString();
+        if (name.equals("java.lang.Byte")) {
+            return ColumnDefinition.Kind.BYTE;
+        } else if (name.equals("java.lang.Short")) {
+            return ColumnDefinition.Kind.SHORT;
+        } else if (name.equals("java.lang.Integer")) {
+            return ColumnDefinition.Kind.INT;
+        } else if (name.equals("java.lang.Long")) {
+            return ColumnDefinition.Kind.LONG;
+        } else if (name.equals("java.lang.Float")) {
+            return ColumnDefinition.Kind.FLOAT;
+        } else if (name.equals("java.lang.Double")) {
+            return ColumnDefinition.Kind.DOUBLE;
+        } else if (name.equals("java.lang.Boolean")) {
+            return ColumnDefinition.Kind.BOOLEAN;
+        } else if (name.equals("java.lang.Character")) {
+            return ColumnDefinition.Kind.CHAR;
+        } else if (name.equals("java.lang.String")) {
+            return ColumnDefinition.Kind.STRING;
+        } else if (((DeclaredType) type).asElement().getKind() == ElementKind.ENUM) {
+            return ColumnDefinition.Kind.ENUM;
+        } else if (getAnnotation(field, FOREIGN_KEY) != null && mTypes.isAssignable(mTypes.erasure(type), modelType)) {
+            return ColumnDefinition.Kind.FOREIGN_KEY;
+        }
+
+        // anything else needs a TypeSerializer, which is only known at runtime
+        return null;
+    }
+
+    private void writeAdapter(TypeElement model, List<ColumnDefinition> columns) {
+        final String packageName = mElements.getPackageOf(model).getQualifiedName().toString();
+        final String binaryName = mElements.getBinaryName(model).toString();
+        final String adapterName = (packageName.length() > 0 ? binaryName.substring(packageName.length() + 1) : binaryName) + SUFFIX;
+
+        try {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(binaryName + SUFFIX, model);
+            final Writer writer = file.openWriter();
+            try {
+                writer.write(new ModelAdapterWriter(packageName, adapterName, model.getQualifiedName().toString(), columns).write());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write adapter: " + e.getMessage(), model);
+        }
+    }
+
+    private AnnotationMirror getAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Object getValue(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : mElements.getElementValuesWithDefaults(mirror).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private void note(Element element, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "Not generating an adapter for " + element + ": " + reason + ". Reflection will be used instead.", element);
+    }
+}
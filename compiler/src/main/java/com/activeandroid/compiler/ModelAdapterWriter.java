@@ -0,0 +1,218 @@
+package com.activeandroid.compiler;
+
+import java.util.List;
+
+/**
+ * Description: Writes the source of the {@code IModelAdapter} of one model
+ */
+class ModelAdapterWriter {
+
+    private final String mPackageName;
+
+    private final String mAdapterName;
+
+    private final String mModelName;
+
+    private final List<ColumnDefinition> mColumns;
+
+    private final StringBuilder mSource = new StringBuilder();
+
+    ModelAdapterWriter(String packageName, String adapterName, String modelName, List<ColumnDefinition> columns) {
+        mPackageName = packageName;
+        mAdapterName = adapterName;
+        mModelName = modelName;
+        mColumns = columns;
+    }
+
+    String write() {
+        if (mPackageName.length() > 0) {
+            line(0, "package " + mPackageName + ";");
+            line(0, "");
+        }
+        line(0, "import android.content.ContentValues;");
+        line(0, "import android.database.Cursor;");
+        line(0, "import android.database.DatabaseUtils;");
+        line(0, "import android.database.sqlite.SQLiteStatement;");
+        line(0, "");
+        line(0, "import com.activeandroid.Cache;");
+        line(0, "import com.activeandroid.IModel;");
+        line(0, "import com.activeandroid.IModelAdapter;");
+        line(0, "import com.activeandroid.exception.PrimaryKeyCannotBeNullException;");
+        line(0, "import com.activeandroid.util.SQLiteUtils;");
+        line(0, "");
+        line(0, "/**");
+        line(0, " * Generated by the activeandroid-compiler. Do not modify.");
+        line(0, " */");
+        line(0, "public final class " + mAdapterName + " implements IModelAdapter<" + mModelName + "> {");
+        line(0, "");
+
+        writeNewInstance();
+        writeBindToContentValues();
+        writeBindToStatement();
+        writeLoadFromCursor();
+        writeGetWhereStatement();
+
+        line(0, "}");
+        return mSource.toString();
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private void writeNewInstance() {
+        line(1, "@Override");
+        line(1, "public " + mModelName + " newInstance() {");
+        line(2, "return new " + mModelName + "();");
+        line(1, "}");
+        line(0, "");
+    }
+
+    private void writeBindToContentValues() {
+        line(1, "@Override");
+        line(1, "public void bindToContentValues(ContentValues values, " + mModelName + " model) {");
+        for (ColumnDefinition column : mColumns) {
+            final String name = quote(column.bindName);
+            if (column.nullable) {
+                line(2, "if (model." + column.fieldName + " == null) {");
+                line(3, "values.putNull(" + name + ");");
+                line(2, "} else {");
+                line(3, "values.put(" + name + ", " + column.getStoredExpression() + ");");
+                line(2, "}");
+            } else {
+                line(2, "values.put(" + name + ", " + column.getStoredExpression() + ");");
+            }
+        }
+        line(1, "}");
+        line(0, "");
+    }
+
+    private void writeBindToStatement() {
+        line(1, "@Override");
+        line(1, "public String[] getColumnNames() {");
+        line(2, "return new String[] {");
+        for (int i = 0; i < mColumns.size(); i++) {
+            line(4, quote(mColumns.get(i).bindName) + (i < mColumns.size() - 1 ? "," : ""));
+        }
+        line(2, "};");
+        line(1, "}");
+        line(0, "");
+
+        line(1, "@Override");
+        line(1, "public void bindToStatement(SQLiteStatement statement, " + mModelName + " model) {");
+        for (int i = 0; i < mColumns.size(); i++) {
+            final ColumnDefinition column = mColumns.get(i);
+            final String index = String.valueOf(i + 1);
+            if (column.nullable) {
+                line(2, "if (model." + column.fieldName + " == null) {");
+                line(3, "statement.bindNull(" + index + ");");
+                line(2, "} else {");
+                line(3, column.getBindStatement(index));
+                line(2, "}");
+            } else {
+                line(2, column.getBindStatement(index));
+            }
+        }
+        line(1, "}");
+        line(0, "");
+
+        line(1, "@Override");
+        line(1, "public void bindPrimaryKeys(SQLiteStatement statement, " + mModelName + " model, int startIndex) {");
+        int offset = 0;
+        for (ColumnDefinition column : mColumns) {
+            if (!column.primaryKey || column.indexedKey) {
+                continue;
+            }
+
+            if (column.nullable) {
+                writeNullPrimaryKeyCheck(column);
+            }
+            line(2, column.getBindStatement("startIndex + " + offset));
+            offset++;
+        }
+        line(1, "}");
+        line(0, "");
+    }
+
+    private void writeNullPrimaryKeyCheck(ColumnDefinition column) {
+        line(2, "if (model." + column.fieldName + " == null) {");
+        line(3, "throw new RuntimeException(new PrimaryKeyCannotBeNullException(\"The primary key: " + column.fieldName
+                + " from \" + Cache.getTableName(" + mModelName + ".class) + \" cannot be null.\"));");
+        line(2, "}");
+    }
+
+    private void writeLoadFromCursor() {
+        line(1, "@Override");
+        line(1, "public void loadFromCursor(Cursor cursor, " + mModelName + " model) {");
+        line(2, "loadFromCursor(cursor, model, getColumnIndexes(cursor));");
+        line(1, "}");
+        line(0, "");
+
+        line(1, "@Override");
+        line(1, "public int[] getColumnIndexes(Cursor cursor) {");
+        line(2, "return new int[] {");
+        for (int i = 0; i < mColumns.size(); i++) {
+            line(4, "cursor.getColumnIndex(" + quote(mColumns.get(i).columnName) + ")" + (i < mColumns.size() - 1 ? "," : ""));
+        }
+        line(2, "};");
+        line(1, "}");
+        line(0, "");
+
+        line(1, "@Override");
+        line(1, "public void loadFromCursor(Cursor cursor, " + mModelName + " model, int[] columnIndexes) {");
+        line(2, "int index;");
+        for (int i = 0; i < mColumns.size(); i++) {
+            final ColumnDefinition column = mColumns.get(i);
+            line(2, "index = columnIndexes[" + i + "];");
+            line(2, "if (index >= 0 && !cursor.isNull(index)) {");
+            if (column.kind == ColumnDefinition.Kind.FOREIGN_KEY) {
+                final String entityType = column.type.toString();
+                line(3, "final IModel entity = SQLiteUtils.loadForeignEntity(" + entityType + ".class, cursor, index);");
+                line(3, "if (entity != null) {");
+                line(4, "model." + column.fieldName + " = (" + entityType + ") entity;");
+                line(3, "}");
+            } else {
+                line(3, "model." + column.fieldName + " = " + column.getCursorExpression() + ";");
+            }
+            line(2, "}");
+        }
+        line(1, "}");
+        line(0, "");
+    }
+
+    private void writeGetWhereStatement() {
+        line(1, "@Override");
+        line(1, "public String getWhereStatement(" + mModelName + " model) {");
+        line(2, "final StringBuilder where = new StringBuilder();");
+        boolean first = true;
+        for (ColumnDefinition column : mColumns) {
+            if (!column.primaryKey || column.indexedKey) {
+                continue;
+            }
+
+            if (column.nullable) {
+                writeNullPrimaryKeyCheck(column);
+            }
+            line(2, "where.append(" + quote((first ? "" : " AND ") + column.columnName + "=") + ");");
+            if (column.isNumber()) {
+                line(2, "where.append(model." + column.fieldName + ");");
+            } else {
+                line(2, "where.append(DatabaseUtils.sqlEscapeString(String.valueOf(" + column.getStoredExpression() + ")));");
+            }
+            first = false;
+        }
+        line(2, "return where.toString();");
+        line(1, "}");
+    }
+
+    private void line(int indent, String text) {
+        for (int i = 0; i < indent; i++) {
+            mSource.append("    ");
+        }
+        mSource.append(text).append('\n');
+    }
+
+    private static String quote(String text) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -20,6 +20,7 @@ import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 
 import com.activeandroid.util.AALog;
+import com.activeandroid.util.SQLiteUtils;
 
 public final class ActiveAndroid {
 	//////////////////////////////////////////////////////////////////////////////////////
@@ -77,10 +78,10 @@ public final class ActiveAndroid {
 	}
 
 	public static void execSQL(String sql) {
-		Cache.openDatabase().execSQL(sql);
+		SQLiteUtils.execSql(sql);
 	}
 
 	public static void execSQL(String sql, Object[] bindArgs) {
-		Cache.openDatabase().execSQL(sql, bindArgs);
+		SQLiteUtils.execSql(sql, bindArgs);
 	}
 }
@@ -16,12 +16,22 @@ package com.activeandroid;
  * limitations under the License.
  */
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.SystemClock;
 import android.support.v4.util.LruCache;
 
+import com.activeandroid.query.QueryCache;
+import com.activeandroid.query.QueryMonitor;
+import com.activeandroid.runtime.BatchSaveJournal;
+import com.activeandroid.runtime.DBBatchSaveQueue;
+import com.activeandroid.runtime.DBRequestQueue;
+import com.activeandroid.runtime.ModelStatements;
 import com.activeandroid.serializer.TypeSerializer;
 import com.activeandroid.util.AALog;
+import com.activeandroid.util.SQLiteUtils;
 
 import java.util.Collection;
 
@@ -41,12 +51,19 @@ public final class Cache {
 	private static ModelInfo sIModelInfo;
 	private static DatabaseHelper sDatabaseHelper;
 
-	private static LruCache<String, IModel> sEntities;
+	private static int sReadConnectionPoolSize;
+	private static ReadConnectionPool sReadConnectionPool;
+	private static final Object POOL_LOCK = new Object();
 
-	private static boolean sIsInitialized = false;
+	private static volatile EntityCache sEntities;
 
+	/**
+	 * Primary keys found missing, with the time they were, null unless enabled
+	 */
+	private static volatile LruCache<String, Long> sMissingEntities;
+	private static long sMissingEntityTimeout;
 
-    private static final Object SYN_OBJECT = new Object();
+	private static boolean sIsInitialized = false;
 
     /**
      * boolean to tell us whether a migration has successfully been executed
@@ -82,35 +99,74 @@ public final class Cache {
 		sContext = configuration.getContext();
 		sIModelInfo = new ModelInfo(configuration);
 		sDatabaseHelper = new DatabaseHelper(configuration);
-
-        synchronized (SYN_OBJECT) {
-            // TODO: It would be nice to override sizeOf here and calculate the memory
-            // actually used, however at this point it seems like the reflection
-            // required would be too costly to be of any benefit. We'll just set a max
-            // object size instead.
-            sEntities = new LruCache<String, IModel>(configuration.getCacheSize());
-        }
+		// from Jelly Bean on, a database in WAL mode pools its read connections itself
+		sReadConnectionPoolSize = sDatabaseHelper.isWriteAheadLoggingEnabled() && Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN
+				? configuration.getReadConnectionPoolSize() : 0;
+		DBBatchSaveQueue.setPolicy(configuration.getBatchSavePolicy());
+		DBRequestQueue.setDefaultReadWorkers(configuration.getReadWorkerCount());
+		QueryMonitor.setSlowQueryThreshold(configuration.getSlowQueryThreshold());
+		SQLiteUtils.setBatchForeignKeys(configuration.isBatchForeignKeysEnabled());
+
+		sEntities = EntityCache.create(configuration.getCachePolicy(), configuration.getCacheSize(), configuration.getCacheMaxBytes());
+		sMissingEntityTimeout = configuration.getNegativeCacheTimeout();
+		sMissingEntities = configuration.getNegativeCacheSize() > 0
+				? new LruCache<String, Long>(configuration.getNegativeCacheSize()) : null;
 
 		openDatabase();
 
+		if (configuration.isBatchSaveJournalEnabled()) {
+			final BatchSaveJournal journal = new BatchSaveJournal(
+					sContext.getDatabasePath(configuration.getDatabaseName()).getParentFile(), configuration.getDatabaseName());
+			journal.replay(openDatabase());
+			DBBatchSaveQueue.setJournal(journal);
+		}
+		else {
+			DBBatchSaveQueue.setJournal(null);
+		}
+
 		sIsInitialized = true;
 
 		AALog.v("ActiveAndroid initialized successfully.");
 	}
 
 	public static void clear() {
-        synchronized (SYN_OBJECT) {
-            sEntities.evictAll();
-        }
+		sEntities.clear();
+		clearMissingEntities();
 		AALog.v("Cache cleared.");
 	}
 
+	/**
+	 * Shrinks the identity cache for a level passed to {@link android.content.ComponentCallbacks2#onTrimMemory(int)}:
+	 * a little once the UI is hidden or memory runs low, to a quarter when it is critical or the app is in the
+	 * background, and completely when the app is next to be killed
+	 * @param level
+	 */
+	public static void trimMemory(int level) {
+		final EntityCache entities = sEntities;
+		if (entities == null) {
+			return;
+		}
+
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+			entities.clear();
+		}
+		else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+			entities.trim(0.25f);
+		}
+		else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+			entities.trim(0.5f);
+		}
+		else {
+			entities.trim(0.75f);
+		}
+		AALog.v("Cache trimmed for level " + level + " to " + entities.size() + " models.");
+	}
+
 	public static void dispose() {
 		closeDatabase();
 
-        synchronized (SYN_OBJECT) {
-            sEntities = null;
-        }
+		sEntities = null;
+		sMissingEntities = null;
 		sIModelInfo = null;
 		sDatabaseHelper = null;
 
@@ -125,10 +181,50 @@ public final class Cache {
 		return sDatabaseHelper.getWritableDatabase();
 	}
 
+	/**
+	 * Returns a connection for queries: a read-only one from the {@link com.activeandroid.ReadConnectionPool} when
+	 * WAL mode is enabled before Jelly Bean, otherwise the writable database, which pools its own read connections
+	 * in WAL mode from Jelly Bean on.
+	 * Pass it to {@link #releaseReadableDatabase(android.database.sqlite.SQLiteDatabase)} once its cursors are closed.
+	 * @return
+	 */
+	public static SQLiteDatabase acquireReadableDatabase() {
+		final ReadConnectionPool pool = getReadConnectionPool();
+		return pool != null ? pool.acquire() : openDatabase();
+	}
+
+	public static void releaseReadableDatabase(SQLiteDatabase database) {
+		final ReadConnectionPool pool = sReadConnectionPool;
+		if (pool != null) {
+			pool.release(database);
+		}
+	}
+
 	public static void closeDatabase() {
+		ModelStatements.clear();
+		QueryCache.clear();
+		synchronized (POOL_LOCK) {
+			if (sReadConnectionPool != null) {
+				sReadConnectionPool.close();
+				sReadConnectionPool = null;
+			}
+		}
 		sDatabaseHelper.close();
 	}
 
+	private static ReadConnectionPool getReadConnectionPool() {
+		if (sReadConnectionPoolSize <= 0) {
+			return null;
+		}
+
+		synchronized (POOL_LOCK) {
+			if (sReadConnectionPool == null) {
+				sReadConnectionPool = new ReadConnectionPool(openDatabase(), sReadConnectionPoolSize);
+			}
+			return sReadConnectionPool;
+		}
+	}
+
 	// Context access
 
 	public static Context getContext() {
@@ -145,22 +241,192 @@ public final class Cache {
 		return getIdentifier(entity.getClass(), entity.getId());
 	}
 
+	/**
+	 * Caches the model by its table and primary key. Models of a table without {@link TableInfo#hasIntegerPrimaryKey()}
+	 * are only cached once their {@link IModel#getId()} is not null.
+	 * @param entity
+	 */
 	public static void addEntity(IModel entity) {
-        synchronized (SYN_OBJECT) {
-            sEntities.put(getIdentifier(entity), entity);
-        }
+		final TableInfo tableInfo = getTableInfo(entity.getClass());
+		if (tableInfo.hasIntegerPrimaryKey()) {
+			sEntities.put(tableInfo, tableInfo.getIntegerPrimaryKey(entity), entity);
+		}
+		else {
+			final String entityId = entity.getId();
+			if (entityId != null) {
+				sEntities.put(tableInfo, entityId, entity);
+			}
+		}
 	}
 
 	public static IModel getEntity(Class<? extends IModel> type, String entityId) {
-        synchronized (SYN_OBJECT) {
-            return sEntities.get(getIdentifier(type, entityId));
-        }
+		final TableInfo tableInfo = getTableInfo(type);
+		if (tableInfo.hasIntegerPrimaryKey()) {
+			try {
+				return sEntities.get(tableInfo, Long.parseLong(entityId));
+			}
+			catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return sEntities.get(tableInfo, entityId);
+	}
+
+	/**
+	 * Returns the cached model of a table with {@link TableInfo#hasIntegerPrimaryKey()}, without allocating
+	 * @param type
+	 * @param id
+	 * @return
+	 */
+	public static IModel getEntity(Class<? extends IModel> type, long id) {
+		return sEntities.get(getTableInfo(type), id);
+	}
+
+	/**
+	 * Returns the cached model with the primary key values, given in the order of {@link TableInfo#getPrimaryKeyColumnNames()}.
+	 * Values a cached model could not be told apart by, such as a string holding the comma {@link IModel#getId()}
+	 * separates keys with, are not looked up.
+	 * @param type
+	 * @param values
+	 * @return the model, or null if it is not cached
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends IModel> T getEntityByPrimaryKey(Class<T> type, Object... values) {
+		final TableInfo tableInfo = getTableInfo(type);
+		if (values == null || values.length == 0 || values.length != tableInfo.getPrimaryKeyColumnNames().length
+				|| values.length != tableInfo.getPrimaryKeys().size()) {
+			// keys declared as IndexedKey are part of the id but not of the lookup
+			return null;
+		}
+
+		if (tableInfo.hasIntegerPrimaryKey()) {
+			final Object value = values[0];
+			if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+				return (T) sEntities.get(tableInfo, ((Number) value).longValue());
+			}
+			return value instanceof String ? (T) getEntity(type, (String) value) : null;
+		}
+
+		final StringBuilder entityId = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			final String value = String.valueOf(values[i]);
+			if (value.indexOf(',') >= 0) {
+				return null;
+			}
+			if (i > 0) {
+				entityId.append(',');
+			}
+			entityId.append(value);
+		}
+		return (T) sEntities.get(tableInfo, entityId.toString());
 	}
 
 	public static void removeEntity(IModel entity) {
-        synchronized (SYN_OBJECT) {
-            sEntities.remove(getIdentifier(entity));
-        }
+		final TableInfo tableInfo = getTableInfo(entity.getClass());
+		if (tableInfo.hasIntegerPrimaryKey()) {
+			sEntities.remove(tableInfo, tableInfo.getIntegerPrimaryKey(entity));
+		}
+		else {
+			final String entityId = entity.getId();
+			if (entityId != null) {
+				sEntities.remove(tableInfo, entityId);
+			}
+		}
+	}
+
+	/**
+	 * Returns the identity cache, for its size and hit, miss and eviction counts
+	 * @return
+	 */
+	public static EntityCache getEntityCache() {
+		return sEntities;
+	}
+
+	// Negative cache
+
+	/**
+	 * Returns true if the primary key values were recently found missing. Always false unless
+	 * {@link Configuration.Builder#setNegativeCacheSize(int)} enabled the negative cache.
+	 * @param type
+	 * @param values - in the order of {@link TableInfo#getPrimaryKeyColumnNames()}
+	 * @return
+	 */
+	public static boolean isEntityMissing(Class<? extends IModel> type, Object... values) {
+		final LruCache<String, Long> missingEntities = sMissingEntities;
+		if (missingEntities == null) {
+			return false;
+		}
+
+		final String identifier = getMissingIdentifier(getTableInfo(type), values);
+		final Long time = missingEntities.get(identifier);
+		if (time == null) {
+			return false;
+		}
+		else if (sMissingEntityTimeout > 0 && SystemClock.uptimeMillis() - time > sMissingEntityTimeout) {
+			missingEntities.remove(identifier);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Records that no row has the primary key values, if the negative cache is enabled
+	 * @param type
+	 * @param values - in the order of {@link TableInfo#getPrimaryKeyColumnNames()}
+	 */
+	public static void addMissingEntity(Class<? extends IModel> type, Object... values) {
+		final LruCache<String, Long> missingEntities = sMissingEntities;
+		if (missingEntities != null) {
+			missingEntities.put(getMissingIdentifier(getTableInfo(type), values), SystemClock.uptimeMillis());
+		}
+	}
+
+	/**
+	 * Forgets that the primary key of the model was missing, called when it is saved
+	 * @param tableInfo
+	 * @param entity
+	 */
+	public static void removeMissingEntity(TableInfo tableInfo, IModel entity) {
+		final LruCache<String, Long> missingEntities = sMissingEntities;
+		if (missingEntities != null) {
+			missingEntities.remove(getMissingIdentifier(tableInfo, tableInfo.getPrimaryKeyValues(entity)));
+		}
+	}
+
+	/**
+	 * Forgets all primary keys of the table found missing, called when rows are written without saving a model
+	 * @param type
+	 */
+	public static void removeMissingEntities(Class<? extends IModel> type) {
+		final LruCache<String, Long> missingEntities = sMissingEntities;
+		if (missingEntities == null || missingEntities.size() == 0) {
+			return;
+		}
+
+		final String prefix = getTableName(type) + "@";
+		for (String identifier : missingEntities.snapshot().keySet()) {
+			if (identifier.startsWith(prefix)) {
+				missingEntities.remove(identifier);
+			}
+		}
+	}
+
+	/**
+	 * Forgets all primary keys found missing, called when raw SQL may have written any table
+	 */
+	public static void clearMissingEntities() {
+		final LruCache<String, Long> missingEntities = sMissingEntities;
+		if (missingEntities != null) {
+			missingEntities.evictAll();
+		}
+	}
+
+	private static String getMissingIdentifier(TableInfo tableInfo, Object[] values) {
+		final StringBuilder identifier = new StringBuilder(tableInfo.getTableName());
+		for (Object value : values) {
+			identifier.append('@').append(value);
+		}
+		return identifier.toString();
 	}
 
 	// IModel cache
@@ -0,0 +1,568 @@
+package com.activeandroid;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Description: An {@link com.activeandroid.EntityCache} split into shards by key. Each shard keeps a map per table:
+ * an open addressing map of primitive ids for tables with a single integer primary key, a
+ * {@link java.util.concurrent.ConcurrentHashMap} of ids otherwise. Lookups take no lock, allocate nothing and only
+ * mark the model as referenced.
+ * Adds and removals lock their shard alone. A full shard evicts with the CLOCK algorithm: its hand sweeps the
+ * slots, giving referenced models a second chance, and evicts the first model not referenced since the last sweep.
+ * With a byte budget, or a {@link com.activeandroid.annotation.Table#cacheMaxBytes()}, models are weighed when added
+ * and the clock also evicts to keep the shard, or the models of the table in it, within their share of the budget.
+ */
+public final class ClockEntityCache extends EntityCache {
+
+    private static final int MAX_SHARDS = 16;
+
+    /**
+     * The smallest shard worth splitting off, so small caches do not evict from tiny shards
+     */
+    private static final int MIN_SHARD_SIZE = 32;
+
+    private final Shard[] mShards;
+
+    private final int mShardMask;
+
+    private final int mMaxSize;
+
+    private final long mMaxBytes;
+
+    public ClockEntityCache(int maxSize) {
+        this(maxSize, 0);
+    }
+
+    /**
+     * @param maxSize - the max number of models kept
+     * @param maxBytes - the max estimated bytes of models kept, 0 for no limit
+     */
+    public ClockEntityCache(int maxSize, long maxBytes) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mMaxSize = maxSize;
+        mMaxBytes = Math.max(maxBytes, 0);
+
+        int shardCount = 1;
+        while (shardCount < MAX_SHARDS && shardCount * 2 * MIN_SHARD_SIZE <= maxSize) {
+            shardCount *= 2;
+        }
+        mShards = new Shard[shardCount];
+        mShardMask = shardCount - 1;
+        final int shardSize = (maxSize + shardCount - 1) / shardCount;
+        for (int i = 0; i < shardCount; i++) {
+            mShards[i] = new Shard(shardSize, mMaxBytes > 0 ? Math.max(mMaxBytes / shardCount, 1) : 0, shardCount);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public IModel get(TableInfo table, long id) {
+        final int hash = hash(id);
+        return getShard(hash).get(table, id, hash);
+    }
+
+    @Override
+    public IModel get(TableInfo table, String entityId) {
+        return getShard(entityId.hashCode()).get(table, entityId);
+    }
+
+    @Override
+    public void put(TableInfo table, long id, IModel model) {
+        final int hash = hash(id);
+        getShard(hash).put(table, id, hash, model);
+    }
+
+    @Override
+    public void put(TableInfo table, String entityId, IModel model) {
+        getShard(entityId.hashCode()).put(table, entityId, model);
+    }
+
+    @Override
+    public void remove(TableInfo table, long id) {
+        final int hash = hash(id);
+        getShard(hash).remove(table, id, hash);
+    }
+
+    @Override
+    public void remove(TableInfo table, String entityId) {
+        getShard(entityId.hashCode()).remove(table, entityId);
+    }
+
+    @Override
+    public void clear() {
+        for (Shard shard : mShards) {
+            shard.clear();
+        }
+    }
+
+    @Override
+    public void trim(float fraction) {
+        for (Shard shard : mShards) {
+            shard.trim(fraction);
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Shard shard : mShards) {
+            size += shard.mSize;
+        }
+        return size;
+    }
+
+    @Override
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    @Override
+    public long getWeight() {
+        long weight = 0;
+        for (Shard shard : mShards) {
+            weight += shard.mWeight;
+        }
+        return weight;
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return mMaxBytes;
+    }
+
+    @Override
+    public long getHitCount() {
+        long hits = 0;
+        for (Shard shard : mShards) {
+            hits += shard.mHits.get();
+        }
+        return hits;
+    }
+
+    @Override
+    public long getMissCount() {
+        long misses = 0;
+        for (Shard shard : mShards) {
+            misses += shard.mMisses.get();
+        }
+        return misses;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        long evictions = 0;
+        for (Shard shard : mShards) {
+            evictions += shard.mEvictions;
+        }
+        return evictions;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private Shard getShard(int hash) {
+        return mShards[(hash ^ (hash >>> 16)) & mShardMask];
+    }
+
+    /**
+     * Spreads ids over the low bits, which are what the shards and the id maps index with
+     */
+    private static int hash(long id) {
+        return (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // INNER CLASSES
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Shard {
+
+        private final ConcurrentHashMap<TableInfo, Entities> mTables = new ConcurrentHashMap<TableInfo, Entities>(16, 0.75f, 1);
+
+        /**
+         * The clock, with a node or null in every slot. Guarded by the shard.
+         */
+        private final Node[] mSlots;
+
+        private final int[] mFreeSlots;
+
+        private final long mMaxWeight;
+
+        /**
+         * The number of shards a table budget is split across
+         */
+        private final int mShardCount;
+
+        private int mFreeCount;
+
+        private int mHand;
+
+        private volatile int mSize;
+
+        private volatile long mWeight;
+
+        private final AtomicLong mHits = new AtomicLong();
+
+        private final AtomicLong mMisses = new AtomicLong();
+
+        private volatile long mEvictions;
+
+        Shard(int size, long maxWeight, int shardCount) {
+            mSlots = new Node[size];
+            mFreeSlots = new int[size];
+            mMaxWeight = maxWeight;
+            mShardCount = shardCount;
+            resetFreeSlots();
+        }
+
+        IModel get(TableInfo table, long id, int hash) {
+            final Entities entities = mTables.get(table);
+            return hit(entities != null ? entities.mIds.get(id, hash) : null);
+        }
+
+        IModel get(TableInfo table, String entityId) {
+            final Entities entities = mTables.get(table);
+            return hit(entities != null ? entities.mEntityIds.get(entityId) : null);
+        }
+
+        synchronized void put(TableInfo table, long id, int hash, IModel model) {
+            final Entities entities = getEntities(table);
+            Node node = entities.mIds.get(id, hash);
+            if (node != null) {
+                update(table, node, model);
+            } else {
+                node = new Node(entities, id, hash, null, model, takeSlot());
+                entities.mIds.put(node);
+                link(table, node);
+            }
+            trimWeight(node);
+        }
+
+        synchronized void put(TableInfo table, String entityId, IModel model) {
+            final Entities entities = getEntities(table);
+            Node node = entities.mEntityIds.get(entityId);
+            if (node != null) {
+                update(table, node, model);
+            } else {
+                node = new Node(entities, 0, 0, entityId, model, takeSlot());
+                entities.mEntityIds.put(entityId, node);
+                link(table, node);
+            }
+            trimWeight(node);
+        }
+
+        synchronized void remove(TableInfo table, long id, int hash) {
+            final Entities entities = mTables.get(table);
+            if (entities != null) {
+                release(entities.mIds.remove(id, hash));
+            }
+        }
+
+        synchronized void remove(TableInfo table, String entityId) {
+            final Entities entities = mTables.get(table);
+            if (entities != null) {
+                release(entities.mEntityIds.remove(entityId));
+            }
+        }
+
+        synchronized void clear() {
+            mTables.clear();
+            for (int i = 0; i < mSlots.length; i++) {
+                mSlots[i] = null;
+            }
+            resetFreeSlots();
+            mHand = 0;
+        }
+
+        synchronized void trim(float fraction) {
+            final int maxSize = (int) (mSlots.length * fraction);
+            final long maxWeight = (long) (mMaxWeight * fraction);
+            while (mSize > 0 && (mSize > maxSize || (mMaxWeight > 0 && mWeight > maxWeight))) {
+                mFreeSlots[mFreeCount++] = evict(null, null);
+            }
+        }
+
+        private IModel hit(Node node) {
+            if (node == null) {
+                mMisses.incrementAndGet();
+                return null;
+            }
+            // a racy write at worst costs the model its second chance
+            node.mReferenced = true;
+            mHits.incrementAndGet();
+            return node.mModel;
+        }
+
+        private Entities getEntities(TableInfo table) {
+            Entities entities = mTables.get(table);
+            if (entities == null) {
+                final long maxBytes = table.getCacheMaxBytes();
+                entities = new Entities(maxBytes > 0 ? Math.max(maxBytes / mShardCount, 1) : 0);
+                mTables.put(table, entities);
+            }
+            return entities;
+        }
+
+        /**
+         * Returns a free slot, evicting a model when the shard is full
+         * @return
+         */
+        private int takeSlot() {
+            return mFreeCount > 0 ? mFreeSlots[--mFreeCount] : evict(null, null);
+        }
+
+        private void link(TableInfo table, Node node) {
+            final Entities entities = node.mEntities;
+            node.mWeight = weigh(table, entities, node.mModel);
+            mSlots[node.mSlot] = node;
+            entities.mCount++;
+            entities.mWeight += node.mWeight;
+            mWeight += node.mWeight;
+            mSize++;
+        }
+
+        private void update(TableInfo table, Node node, IModel model) {
+            final Entities entities = node.mEntities;
+            final int weight = weigh(table, entities, model);
+            entities.mWeight += weight - node.mWeight;
+            mWeight += weight - node.mWeight;
+            node.mWeight = weight;
+            node.mModel = model;
+            node.mReferenced = true;
+        }
+
+        /**
+         * Takes the node out of the clock. It must already be out of its map.
+         */
+        private void unlink(Node node) {
+            final Entities entities = node.mEntities;
+            mSlots[node.mSlot] = null;
+            entities.mCount--;
+            entities.mWeight -= node.mWeight;
+            mWeight -= node.mWeight;
+            mSize--;
+        }
+
+        private void release(Node node) {
+            if (node != null) {
+                unlink(node);
+                mFreeSlots[mFreeCount++] = node.mSlot;
+            }
+        }
+
+        private int weigh(TableInfo table, Entities entities, IModel model) {
+            return mMaxWeight > 0 || entities.mMaxWeight > 0 ? table.estimateSize(model) : 0;
+        }
+
+        /**
+         * Evicts models until the shard and the table of the node added are within their budgets, never the node itself
+         */
+        private void trimWeight(Node added) {
+            while (mMaxWeight > 0 && mWeight > mMaxWeight && mSize > 1) {
+                mFreeSlots[mFreeCount++] = evict(null, added);
+            }
+
+            final Entities entities = added.mEntities;
+            while (entities.mMaxWeight > 0 && entities.mWeight > entities.mMaxWeight && entities.mCount > 1) {
+                mFreeSlots[mFreeCount++] = evict(entities, added);
+            }
+        }
+
+        /**
+         * Sweeps the clock until a model not referenced since the last sweep is found, and evicts it
+         * @param entities - the table to evict from, null for any
+         * @param keep - a node never evicted, or null
+         * @return the slot freed
+         */
+        private int evict(Entities entities, Node keep) {
+            while (true) {
+                final int slot = mHand;
+                mHand = mHand + 1 == mSlots.length ? 0 : mHand + 1;
+
+                final Node node = mSlots[slot];
+                if (node == null || node == keep || (entities != null && node.mEntities != entities)) {
+                    continue;
+                }
+
+                if (node.mReferenced) {
+                    node.mReferenced = false;
+                } else {
+                    node.mEntities.remove(node);
+                    unlink(node);
+                    mEvictions++;
+                    return slot;
+                }
+            }
+        }
+
+        private void resetFreeSlots() {
+            // hand out slots from the start so the clock sweeps them in order
+            for (int i = 0; i < mFreeSlots.length; i++) {
+                mFreeSlots[i] = mFreeSlots.length - 1 - i;
+            }
+            mFreeCount = mFreeSlots.length;
+            mSize = 0;
+            mWeight = 0;
+        }
+    }
+
+    /**
+     * The models of one table in a shard
+     */
+    private static final class Entities {
+
+        private final LongNodeMap mIds = new LongNodeMap();
+
+        private final ConcurrentHashMap<String, Node> mEntityIds = new ConcurrentHashMap<String, Node>(4, 0.75f, 1);
+
+        private final long mMaxWeight;
+
+        private int mCount;
+
+        private long mWeight;
+
+        Entities(long maxWeight) {
+            mMaxWeight = maxWeight;
+        }
+
+        void remove(Node node) {
+            if (node.mEntityId != null) {
+                mEntityIds.remove(node.mEntityId);
+            } else {
+                mIds.remove(node.mId, node.mHash);
+            }
+        }
+    }
+
+    /**
+     * An open addressing map from primitive ids to nodes, written under the lock of its shard and read without it.
+     * Slots only go from null to a node and from a node to {@link #TOMBSTONE} until the table is rebuilt, so a reader
+     * racing a writer at worst misses, and always finds a null slot to stop at.
+     */
+    private static final class LongNodeMap {
+
+        private static final int MIN_CAPACITY = 8;
+
+        private static final Node TOMBSTONE = new Node(null, 0, 0, null, null, -1);
+
+        private volatile Node[] mTable = new Node[MIN_CAPACITY];
+
+        private int mSize;
+
+        private int mTombstones;
+
+        Node get(long id, int hash) {
+            final Node[] table = mTable;
+            final int mask = table.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                final Node node = table[i];
+                if (node == null) {
+                    return null;
+                } else if (node != TOMBSTONE && node.mId == id) {
+                    return node;
+                }
+            }
+        }
+
+        void put(Node node) {
+            // keep at least half of the slots null
+            if ((mSize + mTombstones + 1) * 2 > mTable.length) {
+                rebuild();
+            }
+            if (insert(mTable, node)) {
+                mTombstones--;
+            }
+            mSize++;
+        }
+
+        Node remove(long id, int hash) {
+            final Node[] table = mTable;
+            final int mask = table.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                final Node node = table[i];
+                if (node == null) {
+                    return null;
+                } else if (node != TOMBSTONE && node.mId == id) {
+                    table[i] = TOMBSTONE;
+                    mSize--;
+                    mTombstones++;
+                    return node;
+                }
+            }
+        }
+
+        /**
+         * Copies the nodes to a new table a quarter full at most, dropping the tombstones
+         */
+        private void rebuild() {
+            int capacity = MIN_CAPACITY;
+            while ((mSize + 1) * 4 > capacity) {
+                capacity *= 2;
+            }
+
+            final Node[] table = new Node[capacity];
+            for (Node node : mTable) {
+                if (node != null && node != TOMBSTONE) {
+                    insert(table, node);
+                }
+            }
+            mTombstones = 0;
+            mTable = table;
+        }
+
+        /**
+         * @return true if the node took the slot of a tombstone
+         */
+        private static boolean insert(Node[] table, Node node) {
+            final int mask = table.length - 1;
+            int i = node.mHash & mask;
+            while (table[i] != null && table[i] != TOMBSTONE) {
+                i = (i + 1) & mask;
+            }
+            final boolean tombstone = table[i] == TOMBSTONE;
+            table[i] = node;
+            return tombstone;
+        }
+    }
+
+    private static final class Node {
+
+        private final Entities mEntities;
+
+        private final long mId;
+
+        private final int mHash;
+
+        /**
+         * The id of a table keyed by {@link com.activeandroid.IModel#getId()}, null for a primitive id
+         */
+        private final String mEntityId;
+
+        private final int mSlot;
+
+        private volatile IModel mModel;
+
+        private boolean mReferenced;
+
+        /**
+         * The estimated bytes of the model, 0 unless the cache weighs models. Guarded by the shard.
+         */
+        private int mWeight;
+
+        Node(Entities entities, long id, int hash, String entityId, IModel model, int slot) {
+            mEntities = entities;
+            mId = id;
+            mHash = hash;
+            mEntityId = entityId;
+            mModel = model;
+            mSlot = slot;
+        }
+    }
+}
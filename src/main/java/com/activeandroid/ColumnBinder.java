@@ -0,0 +1,661 @@
+package com.activeandroid;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import com.activeandroid.annotation.ForeignKey;
+import com.activeandroid.serializer.TypeSerializer;
+import com.activeandroid.util.AALog;
+import com.activeandroid.util.ReflectionUtils;
+import com.activeandroid.util.SQLiteUtils;
+
+import java.lang.reflect.Field;
+
+/**
+ * Description: Moves the value of one column between a model field and the DB. The binder for a column
+ * is resolved once from its field type and {@link com.activeandroid.serializer.TypeSerializer} when the
+ * {@link com.activeandroid.TableInfo} is compiled, so saving and loading rows does no type dispatch.
+ */
+public abstract class ColumnBinder {
+
+    protected final Field mField;
+
+    protected final String mColumnName;
+
+    ColumnBinder(Field field, String columnName) {
+        mField = field;
+        mColumnName = columnName;
+        mField.setAccessible(true);
+    }
+
+    public Field getField() {
+        return mField;
+    }
+
+    public String getColumnName() {
+        return mColumnName;
+    }
+
+    /**
+     * Returns the model a foreign key column references, or null for any other column
+     * @return
+     */
+    public Class<? extends IModel> getForeignEntityType() {
+        return null;
+    }
+
+    /**
+     * Returns the name of the column the value is saved to
+     * @return
+     */
+    public String getBindName() {
+        return mColumnName;
+    }
+
+    /**
+     * Puts the value of the field into the values under this binder's column
+     * @param model
+     * @param values
+     */
+    public abstract void bind(IModel model, ContentValues values) throws IllegalAccessException;
+
+    /**
+     * Binds the value of the field to the argument at the index of the statement
+     * @param model
+     * @param statement
+     * @param index - the 1-based index of the argument
+     */
+    public abstract void bind(IModel model, SQLiteStatement statement, int index) throws IllegalAccessException;
+
+    /**
+     * Reads the column at the index into the field. Null columns leave the field untouched.
+     * @param model
+     * @param cursor
+     * @param columnIndex
+     */
+    public abstract void load(IModel model, Cursor cursor, int columnIndex) throws IllegalAccessException;
+
+    /**
+     * Sets the field to the default value of its type, which is what a null column leaves in a new model
+     * @param model
+     */
+    public void reset(IModel model) throws IllegalAccessException {
+        final Class<?> type = mField.getType();
+        if (!type.isPrimitive()) {
+            mField.set(model, null);
+        } else if (type.equals(boolean.class)) {
+            mField.setBoolean(model, false);
+        } else if (type.equals(char.class)) {
+            mField.setChar(model, (char) 0);
+        } else {
+            // widens to every other primitive
+            mField.setByte(model, (byte) 0);
+        }
+    }
+
+    /**
+     * Returns the binder for the field, or null if the field type cannot be stored
+     * @param field
+     * @param columnName
+     * @param typeSerializer - the serializer registered for the field type, if any
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    static ColumnBinder create(Field field, String columnName, TypeSerializer typeSerializer) {
+        Class<?> fieldType = field.getType();
+        if (typeSerializer != null) {
+            final ValueType valueType = ValueType.forType(typeSerializer.getSerializedType());
+            if (valueType == null) {
+                return null;
+            }
+            return new SerializedBinder(field, columnName, valueType, typeSerializer);
+        }
+
+        if (fieldType.equals(int.class)) {
+            return new IntBinder(field, columnName);
+        } else if (fieldType.equals(long.class)) {
+            return new LongBinder(field, columnName);
+        } else if (fieldType.equals(double.class)) {
+            return new DoubleBinder(field, columnName);
+        } else if (fieldType.equals(boolean.class)) {
+            return new BooleanBinder(field, columnName);
+        }
+
+        final ValueType valueType = ValueType.forType(fieldType);
+        if (valueType != null) {
+            return new ObjectBinder(field, columnName, valueType);
+        } else if (field.isAnnotationPresent(ForeignKey.class) && ReflectionUtils.isModel(fieldType)) {
+            String bindName = columnName;
+            final ForeignKey key = field.getAnnotation(ForeignKey.class);
+            if (!key.name().equals("")) {
+                bindName = key.name();
+            }
+            return new ForeignKeyBinder(field, columnName, bindName, (Class<? extends IModel>) fieldType);
+        } else if (ReflectionUtils.isSubclassOf(fieldType, Enum.class)) {
+            return new EnumBinder(field, columnName, (Class<? extends Enum>) fieldType);
+        }
+
+        return null;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // VALUE TYPES
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Reads and writes boxed values of one java type
+     */
+    enum ValueType {
+        BYTE {
+            @Override
+            void bind(SQLiteStatement statement, int index, Object value) {
+                statement.bindLong(index, (Byte) value);
+            }
+
+            @Override
+            void put(ContentValues values, String column, Object value) {
+                values.put(column, (Byte) value);
+            }
+
+            @Override
+            Object read(Cursor cursor, int columnIndex) {
+                return (byte) cursor.getInt(columnIndex);
+            }
+        },
+        SHORT {
+            @Override
+            void bind(SQLiteStatement statement, int index, Object value) {
+                statement.bindLong(index, (Short) value);
+            }
+
+            @Override
+            void put(ContentValues values, String column, Object value) {
+                values.put(column, (Short) value);
+            }
+
+            @Override
+            Object read(Cursor cursor, int columnIndex) {
+                return cursor.getShort(columnIndex);
+            }
+        },
+        INTEGER {
+            @Override
+            void bind(SQLiteStatement statement, int index, Object value) {
+                statement.bindLong(index, (Integer) value);
+            }
+
+            @Override
+            void put(ContentValues values, String column, Object value) {
+                values.put(column, (Integer) value);
+            }
+
+            @Override
+            Object read(Cursor cursor, int columnIndex) {
+                return cursor.getInt(columnIndex);
+            }
+        },
+        LONG {
+            @Override
+            void bind(SQLiteStatement statement, int index, Object value) {
+                statement.bindLong(index, (Long) value);
+            }
+
+            @Override
+            void put(ContentValues values, String column, Object value) {
+                values.put(column, (Long) value);
+            }
+
+            @Override
+            Object read(Cursor cursor, int columnIndex) {
+                return cursor.getLong(columnIndex);
+            }
+        },
+        FLOAT {
+            @Override
+            void bind(SQLiteStatement statement, int index, Object value) {
+                statement.bindDouble(index, (Float) value);
+            }
+
+            @Override
+            void put(ContentValues values, String column, Object value) {
+                values.put(column, (Float) value);
+            }
+
+            @Override
+            Object read(Cursor cursor, int columnIndex) {
+                return cursor.getFloat(columnIndex);
+            }
+        },
+        DOUBLE {
+            @Override
+            void bind(SQLiteStatement statement, int index, Object value) {
+                statement.bindDouble(index, (Double) value);
+            }
+
+            @Override
+            void put(ContentValues values, String column, Object value) {
+                values.put(column, (Double) value);
+            }
+
+            @Override
+            Object read(Cursor cursor, int columnIndex) {
+                return cursor.getDouble(columnIndex);
+            }
+        },
+        BOOLEAN {
+            @Override
+            void bind(SQLiteStatement statement, int index, Object value) {
+                statement.bindLong(index, ((Boolean) value) ? 1 : 0);
+            }
+
+            @Override
+            void put(ContentValues values, String column, Object value) {
+                values.put(column, (Boolean) value);
+            }
+
+            @Override
+            Object read(Cursor cursor, int columnIndex) {
+                return cursor.getInt(columnIndex) != 0;
+            }
+        },
+        CHARACTER {
+            @Override
+            void bind(SQLiteStatement statement, int index, Object value) {
+                statement.bindString(index, value.toString());
+            }
+
+            @Override
+            void put(ContentValues values, String column, Object value) {
+                values.put(column, value.toString());
+            }
+
+            @Override
+            Object read(Cursor cursor, int columnIndex) {
+                return cursor.getString(columnIndex).charAt(0);
+            }
+        },
+        STRING {
+            @Override
+            void bind(SQLiteStatement statement, int index, Object value) {
+                statement.bindString(index, value.toString());
+            }
+
+            @Override
+            void put(ContentValues values, String column, Object value) {
+                values.put(column, value.toString());
+            }
+
+            @Override
+            Object read(Cursor cursor, int columnIndex) {
+                return cursor.getString(columnIndex);
+            }
+        },
+        BLOB {
+            @Override
+            void bind(SQLiteStatement statement, int index, Object value) {
+                statement.bindBlob(index, (byte[]) value);
+            }
+
+            @Override
+            void put(ContentValues values, String column, Object value) {
+                values.put(column, (byte[]) value);
+            }
+
+            @Override
+            Object read(Cursor cursor, int columnIndex) {
+                return cursor.getBlob(columnIndex);
+            }
+        },
+        BOXED_BLOB {
+            @Override
+            void bind(SQLiteStatement statement, int index, Object value) {
+                statement.bindBlob(index, unbox((Byte[]) value));
+            }
+
+            @Override
+            void put(ContentValues values, String column, Object value) {
+                values.put(column, unbox((Byte[]) value));
+            }
+
+            private byte[] unbox(Byte[] boxed) {
+                final byte[] bytes = new byte[boxed.length];
+                for (int i = 0; i < boxed.length; i++) {
+                    bytes[i] = boxed[i];
+                }
+                return bytes;
+            }
+
+            @Override
+            Object read(Cursor cursor, int columnIndex) {
+                final byte[] bytes = cursor.getBlob(columnIndex);
+                final Byte[] boxed = new Byte[bytes.length];
+                for (int i = 0; i < bytes.length; i++) {
+                    boxed[i] = bytes[i];
+                }
+                return boxed;
+            }
+        };
+
+        abstract void bind(SQLiteStatement statement, int index, Object value);
+
+        abstract void put(ContentValues values, String column, Object value);
+
+        abstract Object read(Cursor cursor, int columnIndex);
+
+        static ValueType forType(Class<?> type) {
+            if (type.equals(Byte.class) || type.equals(byte.class)) {
+                return BYTE;
+            } else if (type.equals(Short.class) || type.equals(short.class)) {
+                return SHORT;
+            } else if (type.equals(Integer.class) || type.equals(int.class)) {
+                return INTEGER;
+            } else if (type.equals(Long.class) || type.equals(long.class)) {
+                return LONG;
+            } else if (type.equals(Float.class) || type.equals(float.class)) {
+                return FLOAT;
+            } else if (type.equals(Double.class) || type.equals(double.class)) {
+                return DOUBLE;
+            } else if (type.equals(Boolean.class) || type.equals(boolean.class)) {
+                return BOOLEAN;
+            } else if (type.equals(Character.class) || type.equals(char.class)) {
+                return CHARACTER;
+            } else if (type.equals(String.class)) {
+                return STRING;
+            } else if (type.equals(byte[].class)) {
+                return BLOB;
+            } else if (type.equals(Byte[].class)) {
+                return BOXED_BLOB;
+            }
+            return null;
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // BINDERS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private static class ObjectBinder extends ColumnBinder {
+
+        private final ValueType mValueType;
+
+        ObjectBinder(Field field, String columnName, ValueType valueType) {
+            super(field, columnName);
+            mValueType = valueType;
+        }
+
+        @Override
+        public void bind(IModel model, ContentValues values) throws IllegalAccessException {
+            final Object value = mField.get(model);
+            if (value == null) {
+                values.putNull(mColumnName);
+            } else {
+                mValueType.put(values, mColumnName, value);
+            }
+        }
+
+        @Override
+        public void bind(IModel model, SQLiteStatement statement, int index) throws IllegalAccessException {
+            final Object value = mField.get(model);
+            if (value == null) {
+                statement.bindNull(index);
+            } else {
+                mValueType.bind(statement, index, value);
+            }
+        }
+
+        @Override
+        public void load(IModel model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            if (!cursor.isNull(columnIndex)) {
+                mField.set(model, mValueType.read(cursor, columnIndex));
+            }
+        }
+    }
+
+    private static class SerializedBinder extends ColumnBinder {
+
+        private final ValueType mValueType;
+
+        private final TypeSerializer mTypeSerializer;
+
+        SerializedBinder(Field field, String columnName, ValueType valueType, TypeSerializer typeSerializer) {
+            super(field, columnName);
+            mValueType = valueType;
+            mTypeSerializer = typeSerializer;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void bind(IModel model, ContentValues values) throws IllegalAccessException {
+            Object value = mField.get(model);
+            if (value != null) {
+                value = mTypeSerializer.serialize(value);
+            }
+
+            if (value == null) {
+                values.putNull(mColumnName);
+            } else {
+                // check that the serializer returned what it promised
+                if (!value.getClass().equals(mTypeSerializer.getSerializedType())) {
+                    AALog.w(String.format("TypeSerializer returned wrong type: expected a %s but got a %s",
+                            mTypeSerializer.getSerializedType(), value.getClass()));
+                }
+                mValueType.put(values, mColumnName, value);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void bind(IModel model, SQLiteStatement statement, int index) throws IllegalAccessException {
+            Object value = mField.get(model);
+            if (value != null) {
+                value = mTypeSerializer.serialize(value);
+            }
+
+            if (value == null) {
+                statement.bindNull(index);
+            } else {
+                mValueType.bind(statement, index, value);
+            }
+        }
+
+        @Override
+        public void load(IModel model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            if (!cursor.isNull(columnIndex)) {
+                final Object value = mTypeSerializer.deserialize(mValueType.read(cursor, columnIndex));
+                if (value != null) {
+                    mField.set(model, value);
+                }
+            }
+        }
+    }
+
+    private static class IntBinder extends ColumnBinder {
+
+        IntBinder(Field field, String columnName) {
+            super(field, columnName);
+        }
+
+        @Override
+        public void bind(IModel model, ContentValues values) throws IllegalAccessException {
+            values.put(mColumnName, mField.getInt(model));
+        }
+
+        @Override
+        public void bind(IModel model, SQLiteStatement statement, int index) throws IllegalAccessException {
+            statement.bindLong(index, mField.getInt(model));
+        }
+
+        @Override
+        public void load(IModel model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            if (!cursor.isNull(columnIndex)) {
+                mField.setInt(model, cursor.getInt(columnIndex));
+            }
+        }
+    }
+
+    private static class LongBinder extends ColumnBinder {
+
+        LongBinder(Field field, String columnName) {
+            super(field, columnName);
+        }
+
+        @Override
+        public void bind(IModel model, ContentValues values) throws IllegalAccessException {
+            values.put(mColumnName, mField.getLong(model));
+        }
+
+        @Override
+        public void bind(IModel model, SQLiteStatement statement, int index) throws IllegalAccessException {
+            statement.bindLong(index, mField.getLong(model));
+        }
+
+        @Override
+        public void load(IModel model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            if (!cursor.isNull(columnIndex)) {
+                mField.setLong(model, cursor.getLong(columnIndex));
+            }
+        }
+    }
+
+    private static class DoubleBinder extends ColumnBinder {
+
+        DoubleBinder(Field field, String columnName) {
+            super(field, columnName);
+        }
+
+        @Override
+        public void bind(IModel model, ContentValues values) throws IllegalAccessException {
+            values.put(mColumnName, mField.getDouble(model));
+        }
+
+        @Override
+        public void bind(IModel model, SQLiteStatement statement, int index) throws IllegalAccessException {
+            statement.bindDouble(index, mField.getDouble(model));
+        }
+
+        @Override
+        public void load(IModel model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            if (!cursor.isNull(columnIndex)) {
+                mField.setDouble(model, cursor.getDouble(columnIndex));
+            }
+        }
+    }
+
+    private static class BooleanBinder extends ColumnBinder {
+
+        BooleanBinder(Field field, String columnName) {
+            super(field, columnName);
+        }
+
+        @Override
+        public void bind(IModel model, ContentValues values) throws IllegalAccessException {
+            values.put(mColumnName, mField.getBoolean(model));
+        }
+
+        @Override
+        public void bind(IModel model, SQLiteStatement statement, int index) throws IllegalAccessException {
+            statement.bindLong(index, mField.getBoolean(model) ? 1 : 0);
+        }
+
+        @Override
+        public void load(IModel model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            if (!cursor.isNull(columnIndex)) {
+                mField.setBoolean(model, cursor.getInt(columnIndex) != 0);
+            }
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static class EnumBinder extends ColumnBinder {
+
+        private final Class<? extends Enum> mEnumType;
+
+        EnumBinder(Field field, String columnName, Class<? extends Enum> enumType) {
+            super(field, columnName);
+            mEnumType = enumType;
+        }
+
+        @Override
+        public void bind(IModel model, ContentValues values) throws IllegalAccessException {
+            final Object value = mField.get(model);
+            if (value == null) {
+                values.putNull(mColumnName);
+            } else {
+                values.put(mColumnName, ((Enum<?>) value).name());
+            }
+        }
+
+        @Override
+        public void bind(IModel model, SQLiteStatement statement, int index) throws IllegalAccessException {
+            final Object value = mField.get(model);
+            if (value == null) {
+                statement.bindNull(index);
+            } else {
+                statement.bindString(index, ((Enum<?>) value).name());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void load(IModel model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            if (!cursor.isNull(columnIndex)) {
+                mField.set(model, Enum.valueOf(mEnumType, cursor.getString(columnIndex)));
+            }
+        }
+    }
+
+    private static class ForeignKeyBinder extends ColumnBinder {
+
+        /**
+         * The column name used when saving, {@link com.activeandroid.annotation.ForeignKey#name()} if present.
+         */
+        private final String mBindName;
+
+        private final Class<? extends IModel> mEntityType;
+
+        ForeignKeyBinder(Field field, String columnName, String bindName, Class<? extends IModel> entityType) {
+            super(field, columnName);
+            mBindName = bindName;
+            mEntityType = entityType;
+        }
+
+        @Override
+        public void bind(IModel model, ContentValues values) throws IllegalAccessException {
+            final Object value = mField.get(model);
+            if (value == null) {
+                values.putNull(mBindName);
+            } else {
+                values.put(mBindName, ((IModel) value).getId());
+            }
+        }
+
+        @Override
+        public String getBindName() {
+            return mBindName;
+        }
+
+        @Override
+        public Class<? extends IModel> getForeignEntityType() {
+            return mEntityType;
+        }
+
+        @Override
+        public void bind(IModel model, SQLiteStatement statement, int index) throws IllegalAccessException {
+            final Object value = mField.get(model);
+            if (value == null) {
+                statement.bindNull(index);
+            } else {
+                statement.bindString(index, ((IModel) value).getId());
+            }
+        }
+
+        @Override
+        public void load(IModel model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            final IModel entity = SQLiteUtils.loadForeignEntity(mEntityType, cursor, columnIndex);
+            if (entity != null) {
+                mField.set(model, entity);
+            }
+        }
+    }
+}
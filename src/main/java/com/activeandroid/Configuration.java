@@ -22,6 +22,7 @@ import java.util.List;
 
 import android.content.Context;
 
+import com.activeandroid.runtime.BatchSavePolicy;
 import com.activeandroid.serializer.TypeSerializer;
 import com.activeandroid.util.AALog;
 import com.activeandroid.util.ReflectionUtils;
@@ -37,6 +38,17 @@ public class Configuration {
 	private List<Class<? extends IModel>> mModelClasses;
 	private List<Class<? extends TypeSerializer>> mTypeSerializers;
 	private int mCacheSize;
+	private EntityCache.Policy mCachePolicy;
+	private long mCacheMaxBytes;
+	private int mNegativeCacheSize;
+	private long mNegativeCacheTimeout;
+	private boolean mBatchForeignKeys;
+	private BatchSavePolicy mBatchSavePolicy;
+	private boolean mBatchSaveJournalEnabled;
+	private boolean mWriteAheadLoggingEnabled;
+	private int mReadConnectionPoolSize;
+	private int mReadWorkerCount;
+	private long mSlowQueryThreshold;
 
 	//////////////////////////////////////////////////////////////////////////////////////
 	// CONSTRUCTORS
@@ -74,6 +86,50 @@ public class Configuration {
 		return mCacheSize;
 	}
 
+	public EntityCache.Policy getCachePolicy() {
+		return mCachePolicy;
+	}
+
+	public long getCacheMaxBytes() {
+		return mCacheMaxBytes;
+	}
+
+	public int getNegativeCacheSize() {
+		return mNegativeCacheSize;
+	}
+
+	public long getNegativeCacheTimeout() {
+		return mNegativeCacheTimeout;
+	}
+
+	public boolean isBatchForeignKeysEnabled() {
+		return mBatchForeignKeys;
+	}
+
+	public BatchSavePolicy getBatchSavePolicy() {
+		return mBatchSavePolicy;
+	}
+
+	public boolean isBatchSaveJournalEnabled() {
+		return mBatchSaveJournalEnabled;
+	}
+
+	public boolean isWriteAheadLoggingEnabled() {
+		return mWriteAheadLoggingEnabled;
+	}
+
+	public int getReadConnectionPoolSize() {
+		return mReadConnectionPoolSize;
+	}
+
+	public int getReadWorkerCount() {
+		return mReadWorkerCount;
+	}
+
+	public long getSlowQueryThreshold() {
+		return mSlowQueryThreshold;
+	}
+
 	public boolean isValid() {
 		return mModelClasses != null && mModelClasses.size() > 0;
 	}
@@ -93,6 +149,7 @@ public class Configuration {
 		private final static String AA_SERIALIZERS = "AA_SERIALIZERS";
 
 		private static final int DEFAULT_CACHE_SIZE = 1024;
+		private static final int DEFAULT_READ_CONNECTION_POOL_SIZE = 4;
 		private static final String DEFAULT_DB_NAME = "Application.db";
 
 		//////////////////////////////////////////////////////////////////////////////////////
@@ -102,11 +159,26 @@ public class Configuration {
 		private Context mContext;
 
 		private Integer mCacheSize;
+		private EntityCache.Policy mCachePolicy = EntityCache.Policy.CLOCK;
+		private long mCacheMaxBytes = 0;
+		private int mNegativeCacheSize = 0;
+		private long mNegativeCacheTimeout = 0;
+		private boolean mBatchForeignKeys = false;
 		private String mDatabaseName;
 		private Integer mDatabaseVersion;
 		private List<Class<? extends IModel>> mModelClasses;
 		private List<Class<? extends TypeSerializer>> mTypeSerializers;
 
+		private int mBatchSaveSize = BatchSavePolicy.DEFAULT_MAX_BATCH_SIZE;
+		private long mBatchSaveLatency = BatchSavePolicy.DEFAULT_MAX_LATENCY;
+		private long mBatchSaveMemory = BatchSavePolicy.DEFAULT_MAX_MEMORY;
+		private boolean mBatchSaveAdaptive = false;
+		private boolean mBatchSaveJournalEnabled = false;
+		private boolean mWriteAheadLoggingEnabled = false;
+		private int mReadConnectionPoolSize = DEFAULT_READ_CONNECTION_POOL_SIZE;
+		private int mReadWorkerCount = 0;
+		private long mSlowQueryThreshold = 0;
+
 		//////////////////////////////////////////////////////////////////////////////////////
 		// CONSTRUCTORS
 		//////////////////////////////////////////////////////////////////////////////////////
@@ -125,6 +197,66 @@ public class Configuration {
 			return this;
 		}
 
+		/**
+		 * Sets how the identity cache evicts models, {@link com.activeandroid.EntityCache.Policy#CLOCK} by default
+		 * @param cachePolicy
+		 * @return
+		 */
+		public Builder setCachePolicy(EntityCache.Policy cachePolicy) {
+			mCachePolicy = cachePolicy;
+			return this;
+		}
+
+		/**
+		 * Sets the estimated bytes of models the identity cache keeps on top of {@link #setCacheSize(int)}, 0, the default, for no limit.
+		 * Models are weighed from their column types and the length of their string and blob values.
+		 * See {@link com.activeandroid.annotation.Table#cacheMaxBytes()} for a budget per table.
+		 * @param cacheMaxBytes
+		 * @return
+		 */
+		public Builder setCacheMaxBytes(long cacheMaxBytes) {
+			mCacheMaxBytes = cacheMaxBytes;
+			return this;
+		}
+
+		/**
+		 * Sets the number of primary keys remembered as missing, so fetching them again goes straight to the
+		 * {@link com.activeandroid.interfaces.ObjectRequester}. A key is forgotten once a model with it is saved. An
+		 * {@link com.activeandroid.query.Update} or a {@link com.activeandroid.content.ContentProvider} write forgets all keys
+		 * of its table, and SQL run through {@link com.activeandroid.ActiveAndroid#execSQL(String)} or
+		 * {@link com.activeandroid.util.SQLiteUtils#execSql(String)} forgets all keys. Rows written on the
+		 * {@link android.database.sqlite.SQLiteDatabase} directly are not noticed, so set a
+		 * {@link #setNegativeCacheTimeout(long)} if other code writes the database. 0, the default, disables it.
+		 * @param negativeCacheSize
+		 * @return
+		 */
+		public Builder setNegativeCacheSize(int negativeCacheSize) {
+			mNegativeCacheSize = negativeCacheSize;
+			return this;
+		}
+
+		/**
+		 * Sets the time in ms a primary key stays known as missing, 0, the default, until it is saved or evicted
+		 * @param negativeCacheTimeout
+		 * @return
+		 */
+		public Builder setNegativeCacheTimeout(long negativeCacheTimeout) {
+			mNegativeCacheTimeout = negativeCacheTimeout;
+			return this;
+		}
+
+		/**
+		 * Sets whether query results load the models their foreign keys reference with one IN query per
+		 * referenced table, instead of one query per row. Off by default.
+		 * See {@link com.activeandroid.util.SQLiteUtils#setBatchForeignKeys(boolean)}.
+		 * @param batchForeignKeys
+		 * @return
+		 */
+		public Builder setBatchForeignKeys(boolean batchForeignKeys) {
+			mBatchForeignKeys = batchForeignKeys;
+			return this;
+		}
+
 		public Builder setDatabaseName(String databaseName) {
 			mDatabaseName = databaseName;
 			return this;
@@ -181,9 +313,117 @@ public class Configuration {
 			return this;
 		}
 
+		/**
+		 * Sets the number of models that makes the batch save queue save
+		 * @param batchSaveSize
+		 * @return
+		 */
+		public Builder setBatchSaveSize(int batchSaveSize) {
+			mBatchSaveSize = batchSaveSize;
+			return this;
+		}
+
+		/**
+		 * Sets the longest time in ms a model waits in the batch save queue before it is saved
+		 * @param batchSaveLatency
+		 * @return
+		 */
+		public Builder setBatchSaveLatency(long batchSaveLatency) {
+			mBatchSaveLatency = batchSaveLatency;
+			return this;
+		}
+
+		/**
+		 * Sets the estimated bytes of pending models that makes the batch save queue save, 0 for no limit
+		 * @param batchSaveMemory
+		 * @return
+		 */
+		public Builder setBatchSaveMemory(long batchSaveMemory) {
+			mBatchSaveMemory = batchSaveMemory;
+			return this;
+		}
+
+		/**
+		 * Lets the batch save queue grow its batch size under sustained load and save early when idle
+		 * @param batchSaveAdaptive
+		 * @return
+		 */
+		public Builder setBatchSaveAdaptive(boolean batchSaveAdaptive) {
+			mBatchSaveAdaptive = batchSaveAdaptive;
+			return this;
+		}
+
+		/**
+		 * Records models added to the batch save queue in a journal file until they are saved, so models pending
+		 * when the process dies are saved on the next initialize
+		 * @param batchSaveJournalEnabled
+		 * @return
+		 */
+		public Builder setBatchSaveJournalEnabled(boolean batchSaveJournalEnabled) {
+			mBatchSaveJournalEnabled = batchSaveJournalEnabled;
+			return this;
+		}
+
+		/**
+		 * Opens the database in WAL journal mode, so queries from {@link com.activeandroid.query.Select} run on a pool
+		 * of read-only connections in parallel with saves on the single writer connection. Requires API 11.
+		 * @param writeAheadLoggingEnabled
+		 * @return
+		 */
+		public Builder setWriteAheadLoggingEnabled(boolean writeAheadLoggingEnabled) {
+			mWriteAheadLoggingEnabled = writeAheadLoggingEnabled;
+			return this;
+		}
+
+		/**
+		 * Sets the max number of read-only connections opened in WAL mode before Jelly Bean. From Jelly Bean on the
+		 * framework pools the read connections of a database in WAL mode, and this is ignored.
+		 * @param readConnectionPoolSize
+		 * @return
+		 */
+		public Builder setReadConnectionPoolSize(int readConnectionPoolSize) {
+			mReadConnectionPoolSize = readConnectionPoolSize;
+			return this;
+		}
+
+		/**
+		 * Sets the number of threads a {@link com.activeandroid.runtime.DBRequestQueue} runs read requests on in parallel,
+		 * while writes stay serialized. 0, the default, runs reads and writes on one thread. Most useful with
+		 * {@link #setWriteAheadLoggingEnabled(boolean)}, so the reads also use separate connections.
+		 * @param readWorkerCount
+		 * @return
+		 */
+		public Builder setReadWorkerCount(int readWorkerCount) {
+			mReadWorkerCount = readWorkerCount;
+			return this;
+		}
+
+		/**
+		 * Sets the time in ms above which queries are logged with their query plan, 0, the default, for none.
+		 * See {@link com.activeandroid.query.QueryMonitor}.
+		 * @param slowQueryThreshold
+		 * @return
+		 */
+		public Builder setSlowQueryThreshold(long slowQueryThreshold) {
+			mSlowQueryThreshold = slowQueryThreshold;
+			return this;
+		}
+
 		public Configuration create() {
 			Configuration configuration = new Configuration(mContext);
 			configuration.mCacheSize = mCacheSize;
+			configuration.mCachePolicy = mCachePolicy;
+			configuration.mCacheMaxBytes = mCacheMaxBytes;
+			configuration.mNegativeCacheSize = mNegativeCacheSize;
+			configuration.mNegativeCacheTimeout = mNegativeCacheTimeout;
+			configuration.mBatchForeignKeys = mBatchForeignKeys;
+			configuration.mBatchSavePolicy = new BatchSavePolicy(mBatchSaveSize, mBatchSaveLatency, mBatchSaveMemory,
+					mBatchSaveAdaptive);
+			configuration.mBatchSaveJournalEnabled = mBatchSaveJournalEnabled;
+			configuration.mWriteAheadLoggingEnabled = mWriteAheadLoggingEnabled;
+			configuration.mReadConnectionPoolSize = mReadConnectionPoolSize;
+			configuration.mReadWorkerCount = mReadWorkerCount;
+			configuration.mSlowQueryThreshold = mSlowQueryThreshold;
 
 			// Get database name from meta-data
 			if (mDatabaseName != null) {
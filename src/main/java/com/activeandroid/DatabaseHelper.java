@@ -19,6 +19,7 @@ package com.activeandroid;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
 import com.activeandroid.util.AALog;
 import com.activeandroid.util.NaturalOrderComparator;
@@ -43,6 +44,12 @@ public final class DatabaseHelper extends SQLiteOpenHelper {
 
     public final static String MIGRATION_PATH = "migrations";
 
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE MEMBERS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private final boolean mWriteAheadLoggingEnabled;
+
     //////////////////////////////////////////////////////////////////////////////////////
     // CONSTRUCTORS
     //////////////////////////////////////////////////////////////////////////////////////
@@ -50,6 +57,12 @@ public final class DatabaseHelper extends SQLiteOpenHelper {
     public DatabaseHelper(Configuration configuration) {
         super(configuration.getContext(), configuration.getDatabaseName(), null, configuration.getDatabaseVersion());
         copyAttachedDatabase(configuration.getContext(), configuration.getDatabaseName());
+
+        mWriteAheadLoggingEnabled = configuration.isWriteAheadLoggingEnabled()
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+        if (mWriteAheadLoggingEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(true);
+        }
     }
 
     //////////////////////////////////////////////////////////////////////////////////////
@@ -59,6 +72,17 @@ public final class DatabaseHelper extends SQLiteOpenHelper {
     @Override
     public void onOpen(SQLiteDatabase db) {
         executePragmas(db);
+        if (mWriteAheadLoggingEnabled && Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN && !db.isReadOnly()) {
+            db.enableWriteAheadLogging();
+        }
+    }
+
+    /**
+     * Returns true if the database is opened in WAL journal mode
+     * @return
+     */
+    public boolean isWriteAheadLoggingEnabled() {
+        return mWriteAheadLoggingEnabled;
     }
 
     @Override
@@ -0,0 +1,110 @@
+package com.activeandroid;
+
+/**
+ * Description: The identity cache {@link com.activeandroid.Cache} keeps loaded models in, so a row loaded twice
+ * resolves to the same instance. Implementations are safe to use from any thread and count their hits, misses and evictions.
+ * Models are keyed by their table and either the primitive value of a single integer primary key or their
+ * {@link com.activeandroid.IModel#getId()}.
+ */
+public abstract class EntityCache {
+
+    /**
+     * How a full cache picks the model to evict
+     */
+    public enum Policy {
+        /**
+         * Evicts the least recently used model, behind a single lock
+         */
+        LRU,
+
+        /**
+         * Approximates LRU with the CLOCK algorithm over independently locked shards. Lookups take no lock,
+         * so concurrent readers do not serialize.
+         */
+        CLOCK
+    }
+
+    /**
+     * Creates a cache with the policy
+     * @param policy
+     * @param maxSize - the max number of models kept
+     * @param maxBytes - the max bytes of models kept, estimated by {@link com.activeandroid.TableInfo#estimateSize(IModel)},
+     *                 0 to only count models
+     * @return
+     */
+    public static EntityCache create(Policy policy, int maxSize, long maxBytes) {
+        switch (policy) {
+            case LRU:
+                return new LruEntityCache(maxSize, maxBytes);
+            default:
+                return new ClockEntityCache(maxSize, maxBytes);
+        }
+    }
+
+    /**
+     * Returns the model of a table with a {@link com.activeandroid.TableInfo#hasIntegerPrimaryKey()}, or null if it is not cached
+     * @param table
+     * @param id - the value of its primary key
+     * @return
+     */
+    public abstract IModel get(TableInfo table, long id);
+
+    /**
+     * Returns the model of any other table, or null if it is not cached
+     * @param table
+     * @param entityId - from {@link com.activeandroid.IModel#getId()}
+     * @return
+     */
+    public abstract IModel get(TableInfo table, String entityId);
+
+    /**
+     * Caches the model under its primary key, replacing the model cached under it
+     * @param table
+     * @param id
+     * @param model
+     */
+    public abstract void put(TableInfo table, long id, IModel model);
+
+    /**
+     * Caches the model under its id, replacing the model cached under it
+     * @param table
+     * @param entityId
+     * @param model
+     */
+    public abstract void put(TableInfo table, String entityId, IModel model);
+
+    public abstract void remove(TableInfo table, long id);
+
+    public abstract void remove(TableInfo table, String entityId);
+
+    public abstract void clear();
+
+    /**
+     * Evicts models until the cache holds at most the fraction of its max size and max bytes. The limits are kept,
+     * so the cache grows back as models load again.
+     * @param fraction - between 0, to evict everything, and 1
+     */
+    public abstract void trim(float fraction);
+
+    /**
+     * Returns the number of models cached
+     * @return
+     */
+    public abstract int size();
+
+    public abstract int getMaxSize();
+
+    /**
+     * Returns the estimated bytes of the models cached, 0 if the cache only counts models
+     * @return
+     */
+    public abstract long getWeight();
+
+    public abstract long getMaxWeight();
+
+    public abstract long getHitCount();
+
+    public abstract long getMissCount();
+
+    public abstract long getEvictionCount();
+}
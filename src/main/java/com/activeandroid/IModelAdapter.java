@@ -0,0 +1,84 @@
+package com.activeandroid;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Description: Reads and writes a model's columns with direct field access. Implementations are generated
+ * at compile time by the activeandroid-compiler annotation processor as {@code <ModelClass>$$Adapter} in the
+ * model's package. When one is present, {@link com.activeandroid.TableInfo} uses it instead of reflection.
+ *
+ * @param <OBJECT_CLASS> - the model class this adapter handles
+ */
+public interface IModelAdapter<OBJECT_CLASS extends IModel> {
+
+    /**
+     * The suffix appended to the model's class name to find its generated adapter
+     */
+    public static final String SUFFIX = "$$Adapter";
+
+    /**
+     * Creates an empty model to load a row into
+     * @return
+     */
+    public OBJECT_CLASS newInstance();
+
+    /**
+     * Puts the value of every column into the values
+     * @param values
+     * @param model
+     */
+    public void bindToContentValues(ContentValues values, OBJECT_CLASS model);
+
+    /**
+     * Returns the names of the columns bound by {@link #bindToStatement(android.database.sqlite.SQLiteStatement, IModel)}, in order
+     * @return
+     */
+    public String[] getColumnNames();
+
+    /**
+     * Binds the value of every column to the statement, starting at index 1
+     * @param statement
+     * @param model
+     */
+    public void bindToStatement(SQLiteStatement statement, OBJECT_CLASS model);
+
+    /**
+     * Binds the values of the primary keys, excluding {@link com.activeandroid.annotation.IndexedKey} columns, in order of declaration
+     * @param statement
+     * @param model
+     * @param startIndex - the 1-based index of the first key
+     */
+    public void bindPrimaryKeys(SQLiteStatement statement, OBJECT_CLASS model, int startIndex);
+
+    /**
+     * Load the model from the cursor
+     * @param cursor
+     * @param model
+     */
+    public void loadFromCursor(Cursor cursor, OBJECT_CLASS model);
+
+    /**
+     * Returns the index of each column in the cursor, -1 for missing columns. Resolve once per cursor and pass
+     * to {@link #loadFromCursor(android.database.Cursor, IModel, int[])} for every row.
+     * @param cursor
+     * @return
+     */
+    public int[] getColumnIndexes(Cursor cursor);
+
+    /**
+     * Load the model from the cursor using indexes from {@link #getColumnIndexes(android.database.Cursor)}
+     * @param cursor
+     * @param model
+     * @param columnIndexes
+     */
+    public void loadFromCursor(Cursor cursor, OBJECT_CLASS model, int[] columnIndexes);
+
+    /**
+     * Returns the where statement with primary keys and values filled in
+     * @param model
+     * @return
+     */
+    public String getWhereStatement(OBJECT_CLASS model);
+}
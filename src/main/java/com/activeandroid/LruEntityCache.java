@@ -0,0 +1,162 @@
+package com.activeandroid;
+
+import android.support.v4.util.LruCache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Description: An {@link com.activeandroid.EntityCache} that evicts the least recently used model. Every access takes
+ * the lock of the underlying {@link android.support.v4.util.LruCache}, and builds a "table@id" string to key it with.
+ * With a byte budget the cache is limited by the estimated bytes of its models instead of their number, and
+ * {@link com.activeandroid.annotation.Table#cacheMaxBytes()} is ignored.
+ */
+public final class LruEntityCache extends EntityCache {
+
+    private final LruCache<String, Entry> mEntities;
+
+    private final int mMaxSize;
+
+    private final boolean mWeighing;
+
+    private final AtomicInteger mSize = new AtomicInteger();
+
+    public LruEntityCache(int maxSize) {
+        this(maxSize, 0);
+    }
+
+    /**
+     * @param maxSize - the max number of models kept
+     * @param maxBytes - the max estimated bytes of models kept, which replaces maxSize as the limit, 0 for none
+     */
+    public LruEntityCache(int maxSize, long maxBytes) {
+        mMaxSize = maxSize;
+        mWeighing = maxBytes > 0;
+        mEntities = new LruCache<String, Entry>(mWeighing ? (int) Math.min(maxBytes, Integer.MAX_VALUE) : maxSize) {
+            @Override
+            protected int sizeOf(String key, Entry value) {
+                return mWeighing ? value.mWeight : 1;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Entry oldValue, Entry newValue) {
+                if (newValue == null) {
+                    mSize.decrementAndGet();
+                }
+            }
+        };
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public IModel get(TableInfo table, long id) {
+        return unwrap(mEntities.get(getIdentifier(table, String.valueOf(id))));
+    }
+
+    @Override
+    public IModel get(TableInfo table, String entityId) {
+        return unwrap(mEntities.get(getIdentifier(table, entityId)));
+    }
+
+    @Override
+    public void put(TableInfo table, long id, IModel model) {
+        putEntry(table, getIdentifier(table, String.valueOf(id)), model);
+    }
+
+    @Override
+    public void put(TableInfo table, String entityId, IModel model) {
+        putEntry(table, getIdentifier(table, entityId), model);
+    }
+
+    @Override
+    public void remove(TableInfo table, long id) {
+        mEntities.remove(getIdentifier(table, String.valueOf(id)));
+    }
+
+    @Override
+    public void remove(TableInfo table, String entityId) {
+        mEntities.remove(getIdentifier(table, entityId));
+    }
+
+    @Override
+    public void clear() {
+        mEntities.evictAll();
+    }
+
+    @Override
+    public void trim(float fraction) {
+        mEntities.trimToSize((int) (mEntities.maxSize() * fraction));
+    }
+
+    @Override
+    public int size() {
+        return mSize.get();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    @Override
+    public long getWeight() {
+        return mWeighing ? mEntities.size() : 0;
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return mWeighing ? mEntities.maxSize() : 0;
+    }
+
+    @Override
+    public long getHitCount() {
+        return mEntities.hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return mEntities.missCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return mEntities.evictionCount();
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private void putEntry(TableInfo table, String identifier, IModel model) {
+        // the weight is taken once, so the cache stays consistent however the model changes later
+        if (mEntities.put(identifier, new Entry(model, mWeighing ? table.estimateSize(model) : 1)) == null) {
+            mSize.incrementAndGet();
+        }
+    }
+
+    private static IModel unwrap(Entry entry) {
+        return entry != null ? entry.mModel : null;
+    }
+
+    private static String getIdentifier(TableInfo table, String entityId) {
+        return table.getTableName() + "@" + entityId;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // INNER CLASSES
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Entry {
+
+        private final IModel mModel;
+
+        private final int mWeight;
+
+        Entry(IModel model, int weight) {
+            mModel = model;
+            mWeight = weight;
+        }
+    }
+}
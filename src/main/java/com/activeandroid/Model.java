@@ -16,21 +16,15 @@ package com.activeandroid;
  * limitations under the License.
  */
 
-import android.content.ContentValues;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 
-import com.activeandroid.annotation.ForeignKey;
-import com.activeandroid.annotation.PrimaryKey;
+import com.activeandroid.annotation.Table;
 import com.activeandroid.content.ContentProvider;
 import com.activeandroid.query.Delete;
 import com.activeandroid.query.Select;
-import com.activeandroid.serializer.TypeSerializer;
-import com.activeandroid.util.AALog;
-import com.activeandroid.util.ReflectionUtils;
+import com.activeandroid.runtime.ModelStatements;
 import com.activeandroid.util.SQLiteUtils;
 
-import java.lang.reflect.Field;
 import java.util.List;
 
 @SuppressWarnings("unchecked")
@@ -63,7 +57,7 @@ public abstract class Model implements IModel{
 	public abstract String getId();
 
 	public final void delete() {
-		Cache.openDatabase().delete(mTableInfo.getTableName(), SQLiteUtils.getWhereStatement(this, mTableInfo), null);
+		ModelStatements.getStatements(mTableInfo).delete(this);
 		Cache.removeEntity(this);
 
 		Cache.getContext().getContentResolver()
@@ -71,114 +65,22 @@ public abstract class Model implements IModel{
 	}
 
 	public final void save() {
-		final SQLiteDatabase db = Cache.openDatabase();
-		final ContentValues values = new ContentValues();
-
-		for (Field field : mTableInfo.getFields()) {
-			String fieldName = mTableInfo.getColumnName(field);
-			Class<?> fieldType = field.getType();
-
-			field.setAccessible(true);
-
-			try {
-				Object value = field.get(this);
-
-				if (value != null) {
-					final TypeSerializer typeSerializer = Cache.getParserForType(fieldType);
-					if (typeSerializer != null) {
-						// serialize data
-						value = typeSerializer.serialize(value);
-						// set new object type
-						if (value != null) {
-							fieldType = value.getClass();
-							// check that the serializer returned what it promised
-							if (!fieldType.equals(typeSerializer.getSerializedType())) {
-								AALog.w(String.format("TypeSerializer returned wrong type: expected a %s but got a %s",
-                                        typeSerializer.getSerializedType(), fieldType));
-							}
-						}
-					}
-				}
-
-				// TODO: Find a smarter way to do this? This if block is necessary because we
-				// can't know the type until runtime.
-				if (value == null) {
-					values.putNull(fieldName);
-				}
-				else if (fieldType.equals(Byte.class) || fieldType.equals(byte.class)) {
-					values.put(fieldName, (Byte) value);
-				}
-				else if (fieldType.equals(Short.class) || fieldType.equals(short.class)) {
-					values.put(fieldName, (Short) value);
-				}
-				else if (fieldType.equals(Integer.class) || fieldType.equals(int.class)) {
-					values.put(fieldName, (Integer) value);
-				}
-				else if (fieldType.equals(Long.class) || fieldType.equals(long.class)) {
-					values.put(fieldName, (Long) value);
-				}
-				else if (fieldType.equals(Float.class) || fieldType.equals(float.class)) {
-					values.put(fieldName, (Float) value);
-				}
-				else if (fieldType.equals(Double.class) || fieldType.equals(double.class)) {
-					values.put(fieldName, (Double) value);
-				}
-				else if (fieldType.equals(Boolean.class) || fieldType.equals(boolean.class)) {
-					values.put(fieldName, (Boolean) value);
-				}
-				else if (fieldType.equals(Character.class) || fieldType.equals(char.class)) {
-					values.put(fieldName, value.toString());
-				}
-				else if (fieldType.equals(String.class)) {
-					values.put(fieldName, value.toString());
-				}
-				else if (fieldType.equals(Byte[].class) || fieldType.equals(byte[].class)) {
-					values.put(fieldName, (byte[]) value);
-				}
-				else if (field.isAnnotationPresent(ForeignKey.class) && ReflectionUtils.isModel(fieldType)) {
-                    ForeignKey key = field.getAnnotation(ForeignKey.class);
-                    if(!key.name().equals("")){
-                        fieldName = field.getAnnotation(ForeignKey.class).name();
-                    }
-					values.put(fieldName, ((Model) value).getId());
-				}
-				else if (ReflectionUtils.isSubclassOf(fieldType, Enum.class)) {
-					values.put(fieldName, ((Enum<?>) value).name());
-				}
-			}
-			catch (IllegalArgumentException e) {
-				AALog.e(e.getClass().getName(), e);
-			}
-			catch (IllegalAccessException e) {
-				AALog.e(e.getClass().getName(), e);
-			}
-		}
+		save(mTableInfo.getSaveMode());
+	}
 
-        if(!exists()){
-		     mId = db.insert(mTableInfo.getTableName(), null, values);
-
-            for(Field field : mTableInfo.getPrimaryKeys()){
-                if(field.isAnnotationPresent(PrimaryKey.class) &&
-                        field.getAnnotation(PrimaryKey.class).type().equals(PrimaryKey.Type.AUTO_INCREMENT)){
-                    field.setAccessible(true);
-                    try {
-                        field.set(this, mId);
-                    } catch (Throwable e) {
-                        throw new RuntimeException(e);
-                    }
-                }
-            }
-        } else {
-			mId = db.update(mTableInfo.getTableName(), values, SQLiteUtils.getWhereStatement(this, mTableInfo), null);
-		}
+	/**
+	 * Saves the model with the mode passed instead of the one declared by its {@link com.activeandroid.annotation.Table}
+	 * @param saveMode
+	 */
+	public final void save(Table.SaveMode saveMode) {
+		mId = ModelStatements.getStatements(mTableInfo).save(this, saveMode);
 
 		Cache.getContext().getContentResolver()
 				.notifyChange(ContentProvider.createUri(mTableInfo.getType(), getId()), null);
 	}
 
     public boolean exists(){
-        Model model = new Select().from(getClass()).where(SQLiteUtils.getWhereStatement(this, mTableInfo)).executeSingle();
-        return model!=null;
+        return ModelStatements.getStatements(mTableInfo).exists(this);
     }
 
     public void update(){
@@ -199,111 +101,36 @@ public abstract class Model implements IModel{
 
 	public static void delete(Class<? extends Model> type, long id) {
 		new Delete().from(type).where("Id=?", id).execute();
+
+		if (isIdPrimaryKey(type)) {
+			final Model entity = Cache.getEntityByPrimaryKey(type, id);
+			if (entity != null) {
+				Cache.removeEntity(entity);
+			}
+		}
 	}
 
+	/**
+	 * Loads the model with the id, returning the instance in the entity cache without querying if the
+	 * Id column is the primary key and the model is there
+	 * @param type
+	 * @param id
+	 * @return
+	 */
 	public static <T extends Model> T load(Class<T> type, long id) {
+		if (isIdPrimaryKey(type)) {
+			final T cached = Cache.getEntityByPrimaryKey(type, id);
+			if (cached != null) {
+				return cached;
+			}
+		}
 		return new Select().from(type).where("Id=?", id).executeSingle();
 	}
 
 	// Model population
 
 	public final void loadFromCursor(Cursor cursor) {
-		for (Field field : mTableInfo.getFields()) {
-			final String fieldName = mTableInfo.getColumnName(field);
-			Class<?> fieldType = field.getType();
-			final int columnIndex = cursor.getColumnIndex(fieldName);
-
-			if (columnIndex < 0) {
-				continue;
-			}
-
-			field.setAccessible(true);
-
-			try {
-				boolean columnIsNull = cursor.isNull(columnIndex);
-				TypeSerializer typeSerializer = Cache.getParserForType(fieldType);
-				Object value = null;
-
-				if (typeSerializer != null) {
-					fieldType = typeSerializer.getSerializedType();
-				}
-
-				// TODO: Find a smarter way to do this? This if block is necessary because we
-				// can't know the type until runtime.
-				if (columnIsNull) {
-					field = null;
-				}
-				else if (fieldType.equals(Byte.class) || fieldType.equals(byte.class)) {
-					value = cursor.getInt(columnIndex);
-				}
-				else if (fieldType.equals(Short.class) || fieldType.equals(short.class)) {
-					value = cursor.getInt(columnIndex);
-				}
-				else if (fieldType.equals(Integer.class) || fieldType.equals(int.class)) {
-					value = cursor.getInt(columnIndex);
-				}
-				else if (fieldType.equals(Long.class) || fieldType.equals(long.class)) {
-					value = cursor.getLong(columnIndex);
-				}
-				else if (fieldType.equals(Float.class) || fieldType.equals(float.class)) {
-					value = cursor.getFloat(columnIndex);
-				}
-				else if (fieldType.equals(Double.class) || fieldType.equals(double.class)) {
-					value = cursor.getDouble(columnIndex);
-				}
-				else if (fieldType.equals(Boolean.class) || fieldType.equals(boolean.class)) {
-					value = cursor.getInt(columnIndex) != 0;
-				}
-				else if (fieldType.equals(Character.class) || fieldType.equals(char.class)) {
-					value = cursor.getString(columnIndex).charAt(0);
-				}
-				else if (fieldType.equals(String.class)) {
-					value = cursor.getString(columnIndex);
-				}
-				else if (fieldType.equals(Byte[].class) || fieldType.equals(byte[].class)) {
-					value = cursor.getBlob(columnIndex);
-				}
-				else if (field.isAnnotationPresent(ForeignKey.class) && ReflectionUtils.isModel(fieldType)) {
-					final String entityId = cursor.getString(columnIndex);
-					final Class<? extends Model> entityType = (Class<? extends Model>) fieldType;
-
-					IModel entity = Cache.getEntity(entityType, entityId);
-					if (entity == null) {
-						entity = new Select().from(entityType).where(SQLiteUtils.getWhereFromEntityId(entityType, entityId)).executeSingle();
-					}
-
-					value = entity;
-				}
-				else if (ReflectionUtils.isSubclassOf(fieldType, Enum.class)) {
-					@SuppressWarnings("rawtypes")
-					final Class<? extends Enum> enumType = (Class<? extends Enum>) fieldType;
-					value = Enum.valueOf(enumType, cursor.getString(columnIndex));
-				}
-
-				// Use a deserializer if one is available
-				if (typeSerializer != null && !columnIsNull) {
-					value = typeSerializer.deserialize(value);
-				}
-
-				// Set the field name
-				if (value != null) {
-					field.set(this, value);
-				}
-			}
-			catch (IllegalArgumentException e) {
-				AALog.e(e.getClass().getName(), e);
-			}
-			catch (IllegalAccessException e) {
-				AALog.e(e.getClass().getName(), e);
-			}
-			catch (SecurityException e) {
-				AALog.e(e.getClass().getName(), e);
-			}
-		}
-
-		if (getId() != null) {
-			Cache.addEntity(this);
-		}
+		SQLiteUtils.loadFromCursor(cursor, this);
 	}
 
 	//////////////////////////////////////////////////////////////////////////////////////
@@ -318,6 +145,15 @@ public abstract class Model implements IModel{
         return new Select().from(type).orderBy(sort).where(Cache.getTableName(type) + "." + foreignKey + "=?", field).execute();
     }
 
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static boolean isIdPrimaryKey(Class<? extends Model> type) {
+		final TableInfo tableInfo = Cache.getTableInfo(type);
+		return tableInfo.hasIntegerPrimaryKey() && tableInfo.getPrimaryKeyColumnNames()[0].equalsIgnoreCase("Id");
+	}
+
 	//////////////////////////////////////////////////////////////////////////////////////
 	// OVERRIDEN METHODS
 	//////////////////////////////////////////////////////////////////////////////////////
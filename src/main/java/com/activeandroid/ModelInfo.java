@@ -67,6 +67,10 @@ final class ModelInfo {
 			}
 		}
 
+		for (TableInfo tableInfo : mTableInfos.values()) {
+			tableInfo.compileColumnBinders(this);
+		}
+
 		AALog.i("ModelInfo loaded.");
 	}
 
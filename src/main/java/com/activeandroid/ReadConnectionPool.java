@@ -0,0 +1,101 @@
+package com.activeandroid;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.activeandroid.util.AALog;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Description: Hands out read-only connections to a database in WAL journal mode, so queries run in parallel
+ * with each other and with the single writer connection. Connections are opened on demand up to the pool size;
+ * when all are in use the writer connection is used instead of waiting, which also keeps nested queries,
+ * such as foreign key loads while processing a cursor, from blocking on the pool. Only used before Jelly Bean:
+ * from then on a {@link android.database.sqlite.SQLiteDatabase} in WAL mode runs queries on a pool of read
+ * connections of its own.
+ */
+public final class ReadConnectionPool {
+
+    private final String mPath;
+
+    private final int mSize;
+
+    private final SQLiteDatabase mWriter;
+
+    private final ConcurrentLinkedQueue<SQLiteDatabase> mIdle = new ConcurrentLinkedQueue<SQLiteDatabase>();
+
+    private final AtomicInteger mOpened = new AtomicInteger();
+
+    private volatile boolean mClosed;
+
+    /**
+     * @param writer - the open writer connection, whose file the readers open
+     * @param size   - the max number of read-only connections
+     */
+    public ReadConnectionPool(SQLiteDatabase writer, int size) {
+        mWriter = writer;
+        mPath = writer.getPath();
+        mSize = size;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns a connection to read with, which must be passed to {@link #release(android.database.sqlite.SQLiteDatabase)}
+     * once its cursors are closed. A thread inside a transaction on the writer gets the writer, so it sees its own changes.
+     * @return
+     */
+    public SQLiteDatabase acquire() {
+        if (mClosed || (mWriter.inTransaction() && mWriter.isDbLockedByCurrentThread())) {
+            return mWriter;
+        }
+
+        final SQLiteDatabase database = mIdle.poll();
+        if (database != null) {
+            return database;
+        }
+
+        if (mOpened.incrementAndGet() <= mSize) {
+            try {
+                return SQLiteDatabase.openDatabase(mPath, null, SQLiteDatabase.OPEN_READONLY);
+            } catch (RuntimeException e) {
+                AALog.e(e.getClass().getName(), e);
+            }
+        }
+        mOpened.decrementAndGet();
+        return mWriter;
+    }
+
+    /**
+     * Returns the connection from {@link #acquire()} to the pool
+     * @param database
+     */
+    public void release(SQLiteDatabase database) {
+        if (database == mWriter) {
+            return;
+        }
+
+        if (mClosed) {
+            database.close();
+        } else {
+            mIdle.offer(database);
+            if (mClosed && mIdle.remove(database)) {
+                database.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the idle connections. Connections in use are closed when they are released.
+     */
+    public void close() {
+        mClosed = true;
+        SQLiteDatabase database;
+        while ((database = mIdle.poll()) != null) {
+            database.close();
+        }
+    }
+}
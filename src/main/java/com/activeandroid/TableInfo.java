@@ -26,24 +26,55 @@ import java.util.Map;
 
 import com.activeandroid.annotation.Column;
 import com.activeandroid.annotation.ForeignKey;
+import com.activeandroid.annotation.IndexedKey;
 import com.activeandroid.annotation.PrimaryKey;
 import com.activeandroid.annotation.Table;
 import com.activeandroid.exception.PrimaryKeyNotFoundException;
+import com.activeandroid.serializer.TypeSerializer;
 import com.activeandroid.util.AALog;
 import com.activeandroid.util.ReflectionUtils;
 
 public final class TableInfo {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Rough sizes used to estimate the memory held by a model: its object header, a field,
+	 * a boxed or serialized value, and the fixed parts of a string and a byte array
+	 */
+	private static final int MODEL_BYTES = 16;
+	private static final int FIELD_BYTES = 8;
+	private static final int OBJECT_BYTES = 16;
+	private static final int STRING_BYTES = 40;
+	private static final int ARRAY_BYTES = 16;
+
 	//////////////////////////////////////////////////////////////////////////////////////
 	// PRIVATE MEMBERS
 	//////////////////////////////////////////////////////////////////////////////////////
 
 	private Class<? extends IModel> mType;
 	private String mTableName;
+	private Table.SaveMode mSaveMode = Table.SaveMode.EXISTS;
+	private long mCacheMaxBytes;
 
 	private Map<Field, String> mColumnNames = new HashMap<Field, String>();
     private LinkedList<Field> mPrimaryKeys = new LinkedList<Field>();
     private LinkedList<Field> mForeignKeys = new LinkedList<Field>();
 
+    private ColumnBinder[] mColumnBinders;
+    private ColumnBinder[] mPrimaryKeyBinders;
+    private String[] mPrimaryKeyColumnNames;
+    private String mPrimaryKeyWhere;
+    private int[] mEntityIdPositions;
+    private Field mIntegerPrimaryKey;
+    private int mFixedSize;
+    private Field[] mStringFields;
+    private Field[] mBlobFields;
+    private Field mAutoIncrementKey;
+
+    private IModelAdapter mModelAdapter;
+
 	//////////////////////////////////////////////////////////////////////////////////////
 	// CONSTRUCTORS
 	//////////////////////////////////////////////////////////////////////////////////////
@@ -54,6 +85,8 @@ public final class TableInfo {
 		final Table tableAnnotation = type.getAnnotation(Table.class);
 		if (tableAnnotation != null) {
 			mTableName = tableAnnotation.name();
+			mSaveMode = tableAnnotation.saveMode();
+			mCacheMaxBytes = tableAnnotation.cacheMaxBytes();
 		}
 		else {
 			mTableName = type.getSimpleName();
@@ -86,6 +119,11 @@ public final class TableInfo {
 
             if(field.isAnnotationPresent(PrimaryKey.class)){
                 mPrimaryKeys.add(field);
+
+                if(field.getAnnotation(PrimaryKey.class).type().equals(PrimaryKey.Type.AUTO_INCREMENT)){
+                    field.setAccessible(true);
+                    mAutoIncrementKey = field;
+                }
             }
 
             if(field.isAnnotationPresent(ForeignKey.class)){
@@ -96,6 +134,8 @@ public final class TableInfo {
         if(mPrimaryKeys.isEmpty()){
             throw new PrimaryKeyNotFoundException("Table: " + mTableName + " must define a primary key");
         }
+
+        mModelAdapter = loadModelAdapter(type);
 	}
 
 	//////////////////////////////////////////////////////////////////////////////////////
@@ -110,6 +150,22 @@ public final class TableInfo {
 		return mTableName;
 	}
 
+	/**
+	 * Returns the save mode declared in {@link com.activeandroid.annotation.Table#saveMode()}
+	 * @return
+	 */
+	public Table.SaveMode getSaveMode() {
+		return mSaveMode;
+	}
+
+	/**
+	 * Returns the byte budget of this table in the entity cache, declared in {@link com.activeandroid.annotation.Table#cacheMaxBytes()}
+	 * @return
+	 */
+	public long getCacheMaxBytes() {
+		return mCacheMaxBytes;
+	}
+
 	public Collection<Field> getFields() {
 		return mColumnNames.keySet();
 	}
@@ -118,10 +174,256 @@ public final class TableInfo {
 		return mColumnNames.get(field);
 	}
 
+	/**
+	 * Returns the binders of every storable column, compiled once when the {@link com.activeandroid.ModelInfo} loads
+	 * @return
+	 */
+	public ColumnBinder[] getColumnBinders() {
+		return mColumnBinders;
+	}
+
+	/**
+	 * Returns the binders of the primary keys that identify a row, in order of declaration.
+	 * {@link com.activeandroid.annotation.IndexedKey} columns are not included.
+	 * @return
+	 */
+	public ColumnBinder[] getPrimaryKeyBinders() {
+		return mPrimaryKeyBinders;
+	}
+
+	/**
+	 * Returns the column names of {@link #getPrimaryKeyBinders()}
+	 * @return
+	 */
+	public String[] getPrimaryKeyColumnNames() {
+		return mPrimaryKeyColumnNames;
+	}
+
+	/**
+	 * Returns the where clause that matches a row by its primary keys, with a ? for each key in the order of
+	 * {@link #getPrimaryKeyColumnNames()}, e.g. "id=? AND name=?"
+	 * @return
+	 */
+	public String getPrimaryKeyWhere() {
+		return mPrimaryKeyWhere;
+	}
+
+	/**
+	 * Returns the arguments of {@link #getPrimaryKeyWhere()} taken from an id returned by {@link com.activeandroid.IModel#getId()},
+	 * which lists the values of all primary keys separated by commas
+	 * @param entityId
+	 * @return
+	 */
+	public String[] getPrimaryKeyArguments(String entityId) {
+		final String[] values = entityId.split(",", -1);
+		final String[] arguments = new String[mEntityIdPositions.length];
+		for (int i = 0; i < arguments.length; i++) {
+			arguments[i] = values[mEntityIdPositions[i]];
+		}
+		return arguments;
+	}
+
+	/**
+	 * Returns the values of the primary keys of the model, in the order of {@link #getPrimaryKeyColumnNames()}
+	 * @param model
+	 * @return
+	 */
+	public Object[] getPrimaryKeyValues(IModel model) {
+		final Object[] values = new Object[mPrimaryKeyBinders.length];
+		try {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = mPrimaryKeyBinders[i].getField().get(model);
+			}
+		}
+		catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+		return values;
+	}
+
+	/**
+	 * Returns true if the table has a single primary key of a primitive integer type, so its models are cached by
+	 * {@link #getIntegerPrimaryKey(IModel)} instead of {@link com.activeandroid.IModel#getId()}
+	 * @return
+	 */
+	public boolean hasIntegerPrimaryKey() {
+		return mIntegerPrimaryKey != null;
+	}
+
+	/**
+	 * Returns the value of the primary key of the model, without boxing it. Only valid if {@link #hasIntegerPrimaryKey()}.
+	 * @param model
+	 * @return
+	 */
+	public long getIntegerPrimaryKey(IModel model) {
+		try {
+			return mIntegerPrimaryKey.getLong(model);
+		}
+		catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Estimates the bytes the model holds from the types of its columns and the length of its string and blob values
+	 * @param model
+	 * @return
+	 */
+	public int estimateSize(IModel model) {
+		int size = mFixedSize;
+		try {
+			for (Field field : mStringFields) {
+				final String value = (String) field.get(model);
+				if (value != null) {
+					size += 2 * value.length();
+				}
+			}
+			for (Field field : mBlobFields) {
+				final byte[] value = (byte[]) field.get(model);
+				if (value != null) {
+					size += value.length;
+				}
+			}
+		}
+		catch (IllegalAccessException e) {
+			AALog.e("Couldn't estimate the size of " + mTableName, e);
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the {@link com.activeandroid.annotation.PrimaryKey.Type#AUTO_INCREMENT} key, or null if the table has none
+	 * @return
+	 */
+	public Field getAutoIncrementKey() {
+		return mAutoIncrementKey;
+	}
+
+	/**
+	 * Returns the generated {@link com.activeandroid.IModelAdapter} for this table, or null if none was generated
+	 * @return
+	 */
+	public IModelAdapter getModelAdapter() {
+		return mModelAdapter;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PACKAGE PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Resolves the {@link com.activeandroid.ColumnBinder} of each column. Called after all
+	 * {@link com.activeandroid.serializer.TypeSerializer} are registered. A generated adapter is dropped if a column
+	 * has a serializer, since it was generated without knowing about it and stores the field as is.
+	 * @param modelInfo
+	 */
+	void compileColumnBinders(ModelInfo modelInfo) {
+		final List<ColumnBinder> binders = new ArrayList<ColumnBinder>(mColumnNames.size());
+		for (Map.Entry<Field, String> column : mColumnNames.entrySet()) {
+			final Field field = column.getKey();
+			final TypeSerializer typeSerializer = modelInfo.getTypeSerializer(field.getType());
+			if (typeSerializer != null && mModelAdapter != null) {
+				AALog.v("Not using the generated adapter for: " + mTableName + ", column " + column.getValue()
+						+ " has a TypeSerializer");
+				mModelAdapter = null;
+			}
+
+			final ColumnBinder binder = ColumnBinder.create(field, column.getValue(), typeSerializer);
+			if (binder != null) {
+				binders.add(binder);
+			}
+			else {
+				AALog.e("No type mapping for: " + field.getType().toString());
+			}
+		}
+		mColumnBinders = binders.toArray(new ColumnBinder[binders.size()]);
+
+		final List<ColumnBinder> primaryKeyBinders = new ArrayList<ColumnBinder>();
+		final List<Integer> entityIdPositions = new ArrayList<Integer>();
+		int position = 0;
+		for (Field field : mPrimaryKeys) {
+			if (!field.isAnnotationPresent(IndexedKey.class)) {
+				for (ColumnBinder binder : mColumnBinders) {
+					if (binder.getField().equals(field)) {
+						primaryKeyBinders.add(binder);
+						entityIdPositions.add(position);
+					}
+				}
+			}
+			position++;
+		}
+		mPrimaryKeyBinders = primaryKeyBinders.toArray(new ColumnBinder[primaryKeyBinders.size()]);
+
+		mPrimaryKeyColumnNames = new String[mPrimaryKeyBinders.length];
+		mEntityIdPositions = new int[mPrimaryKeyBinders.length];
+		final StringBuilder where = new StringBuilder();
+		for (int i = 0; i < mPrimaryKeyBinders.length; i++) {
+			mPrimaryKeyColumnNames[i] = mPrimaryKeyBinders[i].getColumnName();
+			mEntityIdPositions[i] = entityIdPositions.get(i);
+			if (i > 0) {
+				where.append(" AND ");
+			}
+			where.append(mPrimaryKeyColumnNames[i]).append("=?");
+		}
+		mPrimaryKeyWhere = where.toString();
+
+		final List<Field> stringFields = new ArrayList<Field>();
+		final List<Field> blobFields = new ArrayList<Field>();
+		mFixedSize = MODEL_BYTES;
+		for (ColumnBinder binder : mColumnBinders) {
+			final Field field = binder.getField();
+			final Class<?> type = field.getType();
+			mFixedSize += FIELD_BYTES;
+			if (type.equals(String.class)) {
+				mFixedSize += STRING_BYTES;
+				stringFields.add(field);
+			}
+			else if (type.equals(byte[].class)) {
+				mFixedSize += ARRAY_BYTES;
+				blobFields.add(field);
+			}
+			else if (!type.isPrimitive() && !type.isEnum() && !ReflectionUtils.isModel(type)) {
+				// boxed and serialized values, referenced models are weighed on their own
+				mFixedSize += OBJECT_BYTES;
+			}
+		}
+		mStringFields = stringFields.toArray(new Field[stringFields.size()]);
+		mBlobFields = blobFields.toArray(new Field[blobFields.size()]);
+
+		mIntegerPrimaryKey = null;
+		if (mPrimaryKeys.size() == 1 && mPrimaryKeyBinders.length == 1) {
+			final Field field = mPrimaryKeyBinders[0].getField();
+			final Class<?> type = field.getType();
+			if (type == long.class || type == int.class || type == short.class || type == byte.class) {
+				field.setAccessible(true);
+				mIntegerPrimaryKey = field;
+			}
+		}
+	}
+
 	//////////////////////////////////////////////////////////////////////////////////////
 	// PRIVATE METHODS
 	//////////////////////////////////////////////////////////////////////////////////////
 
+	private IModelAdapter loadModelAdapter(Class<? extends IModel> type) {
+		try {
+			final Class<?> adapterClass = Class.forName(type.getName() + IModelAdapter.SUFFIX, true, type.getClassLoader());
+			AALog.v("Using generated adapter for: " + mTableName);
+			return (IModelAdapter) adapterClass.newInstance();
+		}
+		catch (ClassNotFoundException e) {
+			// No adapter was generated, fall back to reflection
+		}
+		catch (InstantiationException e) {
+			AALog.e("Couldn't instantiate IModelAdapter.", e);
+		}
+		catch (IllegalAccessException e) {
+			AALog.e("IllegalAccessException", e);
+		}
+
+		return null;
+	}
+
 	private Field getIdField(Class<?> type) {
 		if (type.equals(IModel.class)) {
 			try {
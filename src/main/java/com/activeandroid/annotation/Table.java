@@ -24,5 +24,34 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Table {
+	/**
+	 * How {@link com.activeandroid.IModel#save()} writes a row
+	 */
+	public enum SaveMode {
+		/**
+		 * Check {@link com.activeandroid.IModel#exists()} first, then insert or update
+		 */
+		EXISTS,
+		/**
+		 * A single INSERT OR REPLACE. A conflicting row, on the primary key or any unique column, is deleted
+		 * and re-inserted, which fires ON DELETE actions of foreign keys referencing it.
+		 */
+		REPLACE,
+		/**
+		 * INSERT OR IGNORE, then an update by primary key only if the insert was ignored. Unlike {@link #REPLACE}
+		 * it never deletes a row, but a model whose unique column conflicts with another row is not saved at all:
+		 * the insert is ignored and the update finds no row, so a warning is logged and the save returns -1.
+		 */
+		UPSERT
+	}
+
 	public String name();
+
+	public SaveMode saveMode() default SaveMode.EXISTS;
+
+	/**
+	 * The estimated bytes of models of this table the entity cache keeps, 0 for no limit beyond the global ones.
+	 * Only applies to {@link com.activeandroid.EntityCache.Policy#CLOCK}.
+	 */
+	public long cacheMaxBytes() default 0;
 }
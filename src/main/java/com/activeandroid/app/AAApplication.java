@@ -42,6 +42,20 @@ public class AAApplication extends android.app.Application {
         return mDebug;
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        Cache.trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+
+        Cache.trimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
     @Override
     public void onTerminate() {
         super.onTerminate();
@@ -94,6 +94,7 @@ public class ContentProvider extends android.content.ContentProvider {
 	public Uri insert(Uri uri, ContentValues values) {
 		final Class<? extends IModel> type = getModelType(uri);
 		final Long id = Cache.openDatabase().insert(Cache.getTableName(type), null, values);
+		Cache.removeMissingEntities(type);
 
 		if (id != null && id > 0) {
 			Uri retUri = createUri(type, String.valueOf(id));
@@ -109,6 +110,7 @@ public class ContentProvider extends android.content.ContentProvider {
 	public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
 		final Class<? extends IModel> type = getModelType(uri);
 		final int count = Cache.openDatabase().update(Cache.getTableName(type), values, selection, selectionArgs);
+		Cache.removeMissingEntities(type);
 
 		notifyChange(uri);
 
@@ -1,8 +1,15 @@
 package com.activeandroid.manager;
 
+import com.activeandroid.Cache;
 import com.activeandroid.IModel;
 import com.activeandroid.interfaces.CollectionReceiver;
 import com.activeandroid.interfaces.ObjectReceiver;
+import com.activeandroid.query.From;
+import com.activeandroid.query.LazyModelList;
+import com.activeandroid.query.Page;
+import com.activeandroid.query.PageToken;
+import com.activeandroid.query.Select;
+import com.activeandroid.runtime.DBRequestFuture;
 
 import java.util.List;
 
@@ -122,8 +129,8 @@ public abstract class DBManager<OBJECT_CLASS extends IModel> extends SingleDBMan
      *
      * @param receiver - function to call when finished that passes the list of objects that was found
      */
-    public void fetchAll(final CollectionReceiver<OBJECT_CLASS> receiver) {
-        fetchAll(mObjectClass, receiver);
+    public DBRequestFuture<List<OBJECT_CLASS>> fetchAll(final CollectionReceiver<OBJECT_CLASS> receiver) {
+        return fetchAll(mObjectClass, receiver);
     }
 
     /**
@@ -132,14 +139,53 @@ public abstract class DBManager<OBJECT_CLASS extends IModel> extends SingleDBMan
      * @param sort     - valid SQLLite syntax for sort e.g. name ASC
      * @param receiver - function to call when finished that passes the list of objects that was found
      */
-    public void fetchAllWithSort(final String sort, final CollectionReceiver<OBJECT_CLASS> receiver) {
-        fetchAllWithSort(mObjectClass, sort, receiver);
+    public DBRequestFuture<List<OBJECT_CLASS>> fetchAllWithSort(final String sort, final CollectionReceiver<OBJECT_CLASS> receiver) {
+        return fetchAllWithSort(mObjectClass, sort, receiver);
     }
 
     ;
 
-    public void fetchAllWithColumnValue(final Object value, final String column, final CollectionReceiver<OBJECT_CLASS> receiver) {
-        fetchAllWithColumnValue(mObjectClass, value, column, receiver);
+    public DBRequestFuture<List<OBJECT_CLASS>> fetchAllWithColumnValue(final Object value, final String column, final CollectionReceiver<OBJECT_CLASS> receiver) {
+        return fetchAllWithColumnValue(mObjectClass, value, column, receiver);
+    }
+
+    /**
+     * Returns a page of objects using keyset pagination
+     *
+     * @param sort     - valid SQLLite syntax for sort on plain, non-null columns e.g. name ASC, or null to order by primary key
+     * @param pageSize
+     * @param token    - the {@link com.activeandroid.query.Page#getNextToken()} of the previous page, null for the first page
+     * @return
+     */
+    public Page<OBJECT_CLASS> getPage(String sort, int pageSize, PageToken token) {
+        return getPage(mObjectClass, sort, pageSize, token);
+    }
+
+    /**
+     * Fetches a page of objects on the BG using keyset pagination
+     *
+     * @param sort     - valid SQLLite syntax for sort on plain, non-null columns e.g. name ASC, or null to order by primary key
+     * @param pageSize
+     * @param token    - the {@link com.activeandroid.query.Page#getNextToken()} of the previous page, null for the first page
+     * @param receiver - function to call when finished that passes the page
+     * @return the handle to cancel the fetch with
+     */
+    public DBRequestFuture<Page<OBJECT_CLASS>> fetchPage(String sort, int pageSize, PageToken token, ObjectReceiver<Page<OBJECT_CLASS>> receiver) {
+        return fetchPage(mObjectClass, sort, pageSize, token, receiver);
+    }
+
+    /**
+     * Fetches all objects of this table on the BG as a {@link com.activeandroid.query.LazyModelList}, which only loads the rows read
+     *
+     * @param sort     - valid SQLLite syntax for sort e.g. name ASC, or null
+     * @param receiver - function to call when finished that passes the lazy list of objects, which it should close when done
+     */
+    public DBRequestFuture<LazyModelList<OBJECT_CLASS>> fetchAllLazy(final String sort, final CollectionReceiver<OBJECT_CLASS> receiver) {
+        final From query = new Select().from(mObjectClass);
+        if (sort != null) {
+            query.orderBy(sort);
+        }
+        return fetchLazy(query, receiver);
     }
 
     /**
@@ -208,8 +254,8 @@ public abstract class DBManager<OBJECT_CLASS extends IModel> extends SingleDBMan
      *
      * @param objectReceiver
      */
-    public void fetchCount(final ObjectReceiver<Long> objectReceiver) {
-        fetchCount(mObjectClass, objectReceiver);
+    public DBRequestFuture<Long> fetchCount(final ObjectReceiver<Long> objectReceiver) {
+        return fetchCount(mObjectClass, objectReceiver);
     }
 
     /**
@@ -220,7 +266,13 @@ public abstract class DBManager<OBJECT_CLASS extends IModel> extends SingleDBMan
      * @return true if the object exists in the DB, otherwise its on a BG thread
      */
     public boolean fetchObject(final ObjectReceiver<OBJECT_CLASS> objectReceiver, final Object... uid) {
-        OBJECT_CLASS object = getObjectById(uid);
+        OBJECT_CLASS object = null;
+        if (!Cache.isEntityMissing(mObjectClass, uid)) {
+            object = getObjectById(uid);
+            if (object == null) {
+                Cache.addMissingEntity(mObjectClass, uid);
+            }
+        }
         if (object == null) {
             processOnForeground(new Runnable() {
                 @Override
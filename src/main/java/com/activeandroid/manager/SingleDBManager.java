@@ -1,6 +1,7 @@
 package com.activeandroid.manager;
 
 import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
 import android.os.Handler;
 import android.os.Looper;
 
@@ -12,15 +13,23 @@ import com.activeandroid.interfaces.CollectionReceiver;
 import com.activeandroid.interfaces.ObjectReceiver;
 import com.activeandroid.interfaces.ObjectRequester;
 import com.activeandroid.query.Delete;
+import com.activeandroid.query.From;
+import com.activeandroid.query.LazyModelList;
+import com.activeandroid.query.Page;
+import com.activeandroid.query.PageToken;
 import com.activeandroid.query.Select;
 import com.activeandroid.runtime.DBBatchSaveQueue;
+import com.activeandroid.runtime.DBFetchRequest;
 import com.activeandroid.runtime.DBRequest;
+import com.activeandroid.runtime.DBRequestFuture;
 import com.activeandroid.runtime.DBRequestInfo;
+import com.activeandroid.runtime.DBRequestListener;
 import com.activeandroid.runtime.DBRequestQueue;
 import com.activeandroid.util.AALog;
 import com.activeandroid.util.SQLiteUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -120,9 +129,46 @@ public class SingleDBManager {
      * Runs a request from the DB in the request queue
      *
      * @param runnable
+     * @return the handle to cancel, wait for or listen to the request with
      */
-    protected void processOnBackground(DBRequest runnable) {
-        getQueue().add(runnable);
+    protected DBRequestFuture<?> processOnBackground(DBRequest runnable) {
+        return getQueue().add(runnable);
+    }
+
+    /**
+     * Runs a fetch from the DB in the request queue
+     *
+     * @param request
+     * @return the handle to cancel, wait for or listen to the request with
+     */
+    protected <RESULT> DBRequestFuture<RESULT> processOnBackground(DBFetchRequest<RESULT> request) {
+        return getQueue().add(request);
+    }
+
+    /**
+     * Runs a fetch in the request queue and passes its result to the listener in the handler,
+     * unless the returned handle is cancelled before then
+     *
+     * @param request
+     * @param listener
+     * @return the handle to cancel, wait for or listen to the request with
+     */
+    protected <RESULT> DBRequestFuture<RESULT> processOnForeground(DBFetchRequest<RESULT> request, final DBRequestListener<RESULT> listener) {
+        final DBRequestFuture<RESULT> future = processOnBackground(request);
+        future.addListener(new DBRequestListener<RESULT>() {
+            @Override
+            public void onRequestFinished(final RESULT result) {
+                processOnForeground(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!future.isCancelled()) {
+                            listener.onRequestFinished(result);
+                        }
+                    }
+                });
+            }
+        });
+        return future;
     }
 
     /**
@@ -284,19 +330,20 @@ public class SingleDBManager {
     /**
      * Fetches objects from this DB on the BG
      *
-     * @param receiver - function to call when finished that passes the list of objects that was found
+     * @param receiver - function to call when finished that passes the list of objects that was found, its own copy even
+     *                 when identical fetches were merged
+     * @return the handle to cancel the fetch with, for instance when its screen goes away
      */
-    public <OBJECT_CLASS extends IModel> void fetchAll(final Class<OBJECT_CLASS> obClazz, final CollectionReceiver<OBJECT_CLASS> receiver) {
-        processOnBackground(new DBRequest(DBRequestInfo.createFetch()) {
+    public <OBJECT_CLASS extends IModel> DBRequestFuture<List<OBJECT_CLASS>> fetchAll(final Class<OBJECT_CLASS> obClazz, final CollectionReceiver<OBJECT_CLASS> receiver) {
+        return processOnForeground(new DBFetchRequest<List<OBJECT_CLASS>>(DBRequestInfo.createReadFetch().setKey("fetchAll " + obClazz.getName())) {
             @Override
-            public void run() {
-                final List<OBJECT_CLASS> list = getAll(obClazz);
-                processOnForeground(new Runnable() {
-                    @Override
-                    public void run() {
-                        receiver.onCollectionReceived(list);
-                    }
-                });
+            public List<OBJECT_CLASS> fetch() {
+                return getAll(obClazz);
+            }
+        }, new DBRequestListener<List<OBJECT_CLASS>>() {
+            @Override
+            public void onRequestFinished(List<OBJECT_CLASS> result) {
+                receiver.onCollectionReceived(copyOf(result));
             }
         });
     }
@@ -305,47 +352,131 @@ public class SingleDBManager {
      * Fetches objects from this DB on the BG calling orderBy with the sort passed.
      *
      * @param sort     - valid SQLLite syntax for sort e.g. name ASC
-     * @param receiver - function to call when finished that passes the list of objects that was found
+     * @param receiver - function to call when finished that passes the list of objects that was found, its own copy even
+     *                 when identical fetches were merged
+     * @return the handle to cancel the fetch with, for instance when its screen goes away
      */
-    public <OBJECT_CLASS extends IModel> void fetchAllWithSort(final Class<OBJECT_CLASS> obClazz, final String sort, final CollectionReceiver<OBJECT_CLASS> receiver) {
-        processOnBackground(new DBRequest(DBRequestInfo.createFetch()) {
+    public <OBJECT_CLASS extends IModel> DBRequestFuture<List<OBJECT_CLASS>> fetchAllWithSort(final Class<OBJECT_CLASS> obClazz, final String sort, final CollectionReceiver<OBJECT_CLASS> receiver) {
+        return processOnForeground(new DBFetchRequest<List<OBJECT_CLASS>>(DBRequestInfo.createReadFetch().setKey("fetchAllWithSort " + obClazz.getName() + " " + sort)) {
             @Override
-            public void run() {
-                final List<OBJECT_CLASS> list = getAllWithSort(obClazz, sort);
-                processOnForeground(new Runnable() {
-                    @Override
-                    public void run() {
-                        receiver.onCollectionReceived(list);
-                    }
-                });
+            public List<OBJECT_CLASS> fetch() {
+                return getAllWithSort(obClazz, sort);
+            }
+        }, new DBRequestListener<List<OBJECT_CLASS>>() {
+            @Override
+            public void onRequestFinished(List<OBJECT_CLASS> result) {
+                receiver.onCollectionReceived(copyOf(result));
             }
         });
     }
 
     ;
 
-    public <OBJECT_CLASS extends IModel> void fetchAllWithColumnValue(final Class<OBJECT_CLASS> obClazz, final Object value, final String column, final CollectionReceiver<OBJECT_CLASS> receiver) {
-        processOnBackground(new DBRequest(DBRequestInfo.create("fetch", DBRequest.PRIORITY_UI)) {
+    /**
+     * Fetches objects with the column value from this DB on the BG. Identical fetches waiting in the queue run once.
+     *
+     * @param value
+     * @param column
+     * @param receiver - function to call when finished that passes the list of objects that was found, its own copy even
+     *                 when identical fetches were merged
+     * @return the handle to cancel the fetch with, for instance when its screen goes away
+     */
+    public <OBJECT_CLASS extends IModel> DBRequestFuture<List<OBJECT_CLASS>> fetchAllWithColumnValue(final Class<OBJECT_CLASS> obClazz, final Object value, final String column, final CollectionReceiver<OBJECT_CLASS> receiver) {
+        return processOnForeground(new DBFetchRequest<List<OBJECT_CLASS>>(DBRequestInfo.create("fetch", DBRequest.PRIORITY_UI, true).setKey("fetchAllWithColumnValue " + obClazz.getName() + " " + column + " " + value)) {
             @Override
-            public void run() {
-                final List<OBJECT_CLASS> list = getAllWithColumnValue(obClazz, column, value);
+            public List<OBJECT_CLASS> fetch() {
+                return getAllWithColumnValue(obClazz, column, value);
+            }
+        }, new DBRequestListener<List<OBJECT_CLASS>>() {
+            @Override
+            public void onRequestFinished(List<OBJECT_CLASS> result) {
+                receiver.onCollectionReceived(copyOf(result));
+            }
+        });
+    }
+
+    /**
+     * Returns a page of objects, ordered by the sort then by primary key, using keyset pagination
+     * so the cost of a page does not grow with its depth. See {@link com.activeandroid.query.From#executePage(int, com.activeandroid.query.PageToken)}.
+     *
+     * @param sort     - valid SQLLite syntax for sort on plain, non-null columns e.g. name ASC, or null to order by primary key
+     * @param pageSize
+     * @param token    - the {@link com.activeandroid.query.Page#getNextToken()} of the previous page, null for the first page
+     * @return
+     */
+    public <OBJECT_CLASS extends IModel> Page<OBJECT_CLASS> getPage(Class<OBJECT_CLASS> obClazz, String sort, int pageSize, PageToken token) {
+        return new Select().from(obClazz).orderBy(sort).executePage(pageSize, token);
+    }
+
+    /**
+     * Fetches a page of objects on the BG, see {@link #getPage(Class, String, int, com.activeandroid.query.PageToken)}
+     *
+     * @param sort     - valid SQLLite syntax for sort on plain, non-null columns e.g. name ASC, or null to order by primary key
+     * @param pageSize
+     * @param token    - the {@link com.activeandroid.query.Page#getNextToken()} of the previous page, null for the first page
+     * @param receiver - function to call when finished that passes the page, whose token continues with the next page
+     * @return the handle to cancel the fetch with
+     */
+    public <OBJECT_CLASS extends IModel> DBRequestFuture<Page<OBJECT_CLASS>> fetchPage(final Class<OBJECT_CLASS> obClazz, final String sort, final int pageSize,
+                                                                                    final PageToken token, final ObjectReceiver<Page<OBJECT_CLASS>> receiver) {
+        return processOnForeground(new DBFetchRequest<Page<OBJECT_CLASS>>(DBRequestInfo.createReadFetch()) {
+            @Override
+            public Page<OBJECT_CLASS> fetch() {
+                return getPage(obClazz, sort, pageSize, token);
+            }
+        }, new DBRequestListener<Page<OBJECT_CLASS>>() {
+            @Override
+            public void onRequestFinished(Page<OBJECT_CLASS> result) {
+                receiver.onObjectReceived(result);
+            }
+        });
+    }
+
+    /**
+     * Runs the query on the BG and passes its results as a {@link com.activeandroid.query.LazyModelList}, which only loads the rows read.
+     * The receiver owns the list and should close it when done. If the returned handle is cancelled first, the list is closed instead.
+     *
+     * @param query
+     * @param receiver - function to call when finished that passes the lazy list of objects that was found
+     * @return the handle to cancel the fetch with, for instance when its screen goes away
+     */
+    public <OBJECT_CLASS extends IModel> DBRequestFuture<LazyModelList<OBJECT_CLASS>> fetchLazy(final From query, final CollectionReceiver<OBJECT_CLASS> receiver) {
+        final DBRequestFuture<LazyModelList<OBJECT_CLASS>> future = processOnBackground(new DBFetchRequest<LazyModelList<OBJECT_CLASS>>(DBRequestInfo.createReadFetch()) {
+            @Override
+            public LazyModelList<OBJECT_CLASS> fetch() {
+                return query.executeLazy();
+            }
+        });
+        future.addListener(new DBRequestListener<LazyModelList<OBJECT_CLASS>>() {
+            @Override
+            public void onRequestFinished(final LazyModelList<OBJECT_CLASS> result) {
                 processOnForeground(new Runnable() {
                     @Override
                     public void run() {
-                        receiver.onCollectionReceived(list);
+                        if (future.isCancelled()) {
+                            result.close();
+                        } else {
+                            receiver.onCollectionReceived(result);
+                        }
                     }
                 });
             }
         });
+        return future;
     }
 
     /**
-     * This will get the where statement for this object, the amount of ids passed must match the primary key column size
+     * This will get the where statement for this object, the amount of ids passed must match the primary key column size.
+     * Returns the instance in the entity cache without querying if it is there.
      *
      * @return
      */
     public <OBJECT_CLASS extends IModel> OBJECT_CLASS getObjectById(final Class<OBJECT_CLASS> obClazz, Object... ids) {
-        return new Select().from(obClazz).where(SQLiteUtils.getWhereStatement(obClazz, Cache.getTableInfo(obClazz)), ids).executeSingle();
+        final OBJECT_CLASS cached = Cache.getEntityByPrimaryKey(obClazz, ids);
+        if (cached != null) {
+            return cached;
+        }
+        return new Select().from(obClazz).where(Cache.getTableInfo(obClazz).getPrimaryKeyWhere(), ids).executeSingle();
     }
 
     /**
@@ -362,6 +493,9 @@ public class SingleDBManager {
                 throw new RuntimeException("Number of ColumnNames cannot be different from the number of ids passed!");
             }
         }
+        if (Arrays.equals(columnNames, Cache.getTableInfo(obClazz).getPrimaryKeyColumnNames())) {
+            return getObjectById(obClazz, values);
+        }
         return new Select().from(obClazz).where(SQLiteUtils.getWhereStatement(obClazz, Cache.getTableInfo(obClazz), columnNames), values).executeSingle();
     }
 
@@ -374,6 +508,10 @@ public class SingleDBManager {
      * @return
      */
     public <OBJECT_CLASS extends IModel> OBJECT_CLASS getObjectByColumnValue(final Class<OBJECT_CLASS> obClazz, String column, Object uid) {
+        final String[] primaryKeys = Cache.getTableInfo(obClazz).getPrimaryKeyColumnNames();
+        if (primaryKeys.length == 1 && primaryKeys[0].equals(column)) {
+            return getObjectById(obClazz, uid);
+        }
         return new Select().from(obClazz).where(column + " =?", uid).executeSingle();
     }
 
@@ -406,37 +544,50 @@ public class SingleDBManager {
      * @return
      */
     public long getCount(final Class<? extends IModel> obClazz) {
-        return DatabaseUtils.queryNumEntries(Cache.openDatabase(), Cache.getTableName(obClazz));
+        final SQLiteDatabase database = Cache.acquireReadableDatabase();
+        try {
+            return DatabaseUtils.queryNumEntries(database, Cache.getTableName(obClazz));
+        } finally {
+            Cache.releaseReadableDatabase(database);
+        }
     }
 
     /**
      * Fetches the count on the DB thread and returns it on the handler
      *
      * @param objectReceiver
+     * @return the handle to cancel the fetch with
      */
-    public <OBJECT_CLASS extends IModel> void fetchCount(final Class<OBJECT_CLASS> obclazz, final ObjectReceiver<Long> objectReceiver) {
-        processOnBackground(new DBRequest(DBRequestInfo.createFetch()) {
+    public <OBJECT_CLASS extends IModel> DBRequestFuture<Long> fetchCount(final Class<OBJECT_CLASS> obclazz, final ObjectReceiver<Long> objectReceiver) {
+        return processOnForeground(new DBFetchRequest<Long>(DBRequestInfo.createReadFetch().setKey("fetchCount " + obclazz.getName())) {
             @Override
-            public void run() {
-                processOnForeground(new Runnable() {
-                    @Override
-                    public void run() {
-                        objectReceiver.onObjectReceived(getCount(obclazz));
-                    }
-                });
+            public Long fetch() {
+                return getCount(obclazz);
+            }
+        }, new DBRequestListener<Long>() {
+            @Override
+            public void onRequestFinished(Long result) {
+                objectReceiver.onObjectReceived(result);
             }
         });
     }
 
     /**
-     * Will return the object if its within the DB, if not, it will call upon an {@link com.activeandroid.interfaces.ObjectRequester} to get the data from the API
+     * Will return the object if its within the DB, if not, it will call upon an {@link com.activeandroid.interfaces.ObjectRequester} to get the data from the API.
+     * With {@link com.activeandroid.Configuration.Builder#setNegativeCacheSize(int)}, ids recently found missing go to the requester without querying.
      *
      * @param objectReceiver
      * @param uid
      * @return true if the object exists in the DB, otherwise its on a BG thread
      */
     public <OBJECT_CLASS extends IModel> boolean fetchObject(final Class<OBJECT_CLASS> obClazz, final ObjectRequester<OBJECT_CLASS> requester, final ObjectReceiver<OBJECT_CLASS> objectReceiver, final Object... uid) {
-        OBJECT_CLASS object = getObjectById(obClazz, uid);
+        OBJECT_CLASS object = null;
+        if (requester == null || !Cache.isEntityMissing(obClazz, uid)) {
+            object = getObjectById(obClazz, uid);
+            if (object == null && requester != null) {
+                Cache.addMissingEntity(obClazz, uid);
+            }
+        }
         if (object == null && requester != null) {
             processOnForeground(new Runnable() {
                 @Override
@@ -547,4 +698,13 @@ public class SingleDBManager {
         });
     }
 
+    /**
+     * Returns a copy of the fetched list for one receiver, since identical fetches merged in the queue share one result
+     *
+     * @param result
+     * @return
+     */
+    private static <OBJECT_CLASS extends IModel> List<OBJECT_CLASS> copyOf(List<OBJECT_CLASS> result) {
+        return result != null ? new ArrayList<OBJECT_CLASS>(result) : null;
+    }
 }
@@ -18,6 +18,8 @@ package com.activeandroid.query;
 
 import android.database.Cursor;
 import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
 import android.text.TextUtils;
 import com.activeandroid.Cache;
 import com.activeandroid.IModel;
@@ -44,6 +46,8 @@ public final class From implements Sqlable {
 
 	private List<Object> mArguments;
 
+	private String mSql;
+
 	public From(Class<? extends IModel> table, Sqlable queryBase) {
 		mType = table;
 		mJoins = new ArrayList<Join>();
@@ -55,41 +59,48 @@ public final class From implements Sqlable {
 
 	public From as(String alias) {
 		mAlias = alias;
+		mSql = null;
 		return this;
 	}
 
 	public Join join(Class<? extends IModel> table) {
 		Join join = new Join(this, table, null);
 		mJoins.add(join);
+		mSql = null;
 		return join;
 	}
 
 	public Join leftJoin(Class<? extends IModel> table) {
 		Join join = new Join(this, table, JoinType.LEFT);
 		mJoins.add(join);
+		mSql = null;
 		return join;
 	}
 
 	public Join outerJoin(Class<? extends IModel> table) {
 		Join join = new Join(this, table, JoinType.OUTER);
 		mJoins.add(join);
+		mSql = null;
 		return join;
 	}
 
 	public Join innerJoin(Class<? extends IModel> table) {
 		Join join = new Join(this, table, JoinType.INNER);
 		mJoins.add(join);
+		mSql = null;
 		return join;
 	}
 
 	public Join crossJoin(Class<? extends IModel> table) {
 		Join join = new Join(this, table, JoinType.CROSS);
 		mJoins.add(join);
+		mSql = null;
 		return join;
 	}
 
 	public From where(String where) {
 		mWhere = where;
+		mSql = null;
 		mArguments.clear();
 
 		return this;
@@ -97,6 +108,7 @@ public final class From implements Sqlable {
 
 	public From where(String where, Object... args) {
 		mWhere = where;
+		mSql = null;
 		mArguments.clear();
 		mArguments.addAll(Arrays.asList(args));
 
@@ -105,16 +117,19 @@ public final class From implements Sqlable {
 
 	public From groupBy(String groupBy) {
 		mGroupBy = groupBy;
+		mSql = null;
 		return this;
 	}
 
 	public From having(String having) {
 		mHaving = having;
+		mSql = null;
 		return this;
 	}
 
 	public From orderBy(String orderBy) {
 		mOrderBy = orderBy;
+		mSql = null;
 		return this;
 	}
 
@@ -124,6 +139,7 @@ public final class From implements Sqlable {
 
 	public From limit(String limit) {
 		mLimit = limit;
+		mSql = null;
 		return this;
 	}
 
@@ -133,73 +149,42 @@ public final class From implements Sqlable {
 
 	public From offset(String offset) {
 		mOffset = offset;
+		mSql = null;
 		return this;
 	}
 
+	/**
+	 * Drops the SQL kept by {@link #toSql()}, called when one of the joins changes
+	 */
+	void invalidateSql() {
+		mSql = null;
+	}
+
 	void addArguments(Object[] args) {
 		mArguments.addAll(Arrays.asList(args));
 	}
 
 	@Override
 	public String toSql() {
-		StringBuilder sql = new StringBuilder();
-		sql.append(mQueryBase.toSql());
-		sql.append("FROM ");
-		sql.append(Cache.getTableName(mType)).append(" ");
-
-		if (mAlias != null) {
-			sql.append("AS ");
-			sql.append(mAlias);
-			sql.append(" ");
-		}
-
-		for (Join join : mJoins) {
-			sql.append(join.toSql());
-		}
-
-		if (mWhere != null) {
-			sql.append("WHERE ");
-			sql.append(mWhere);
-			sql.append(" ");
-		}
-
-		if (mGroupBy != null) {
-			sql.append("GROUP BY ");
-			sql.append(mGroupBy);
-			sql.append(" ");
-		}
-
-		if (mHaving != null) {
-			sql.append("HAVING ");
-			sql.append(mHaving);
-			sql.append(" ");
-		}
-
-		if (mOrderBy != null) {
-			sql.append("ORDER BY ");
-			sql.append(mOrderBy);
-			sql.append(" ");
-		}
-
-		if (mLimit != null) {
-			sql.append("LIMIT ");
-			sql.append(mLimit);
-			sql.append(" ");
-		}
-
-		if (mOffset != null) {
-			sql.append("OFFSET ");
-			sql.append(mOffset);
-			sql.append(" ");
+		String sql = mSql;
+		if (sql == null) {
+			final QueryCache.Shape shape = new QueryCache.Shape(mType, mQueryBase.toSql(), mAlias, getJoinSql(), mWhere,
+					mGroupBy, mHaving, mOrderBy, mLimit, mOffset);
+			sql = QueryCache.get(shape);
+			if (sql == null) {
+				sql = buildSql(mWhere, mOrderBy, mLimit, mOffset);
+				QueryCache.put(shape, sql);
+			}
+			mSql = sql;
 		}
 
 		// Don't wast time building the string
 		// unless we're going to log it.
 		if (AALog.isEnabled()) {
-			AALog.v(sql.toString() + " " + TextUtils.join(",", getArguments()));
+			AALog.v(sql + " " + TextUtils.join(",", getArguments()));
 		}
 
-		return sql.toString().trim();
+		return sql;
 	}
 
     /**
@@ -208,19 +193,27 @@ public final class From implements Sqlable {
      */
     public long executeCount(){
         if(mQueryBase instanceof Select){
-            return DatabaseUtils.longForQuery(Cache.openDatabase(), toSql(), getArguments());
+            if (QueryMonitor.isEnabled()) {
+                return QueryMonitor.longForQuery(toSql(), getArguments());
+            }
+            final SQLiteDatabase database = Cache.acquireReadableDatabase();
+            try {
+                return DatabaseUtils.longForQuery(database, toSql(), getArguments());
+            } finally {
+                Cache.releaseReadableDatabase(database);
+            }
         } else{
-            SQLiteUtils.execSql(toSql(), getArguments());
+            execSql();
             return 0L;
         }
     }
 
 	public <T extends IModel> List<T> execute() {
 		if (mQueryBase instanceof Select) {
-			return SQLiteUtils.rawQuery(mType, toSql(), getArguments());
+			return rawQuery();
 		}
 		else {
-			SQLiteUtils.execSql(toSql(), getArguments());
+			execSql();
 			return null;
 		}
 	}
@@ -237,14 +230,184 @@ public final class From implements Sqlable {
 	public <T extends IModel> T executeSingle() {
 		if (mQueryBase instanceof Select) {
 			limit(1);
-			return SQLiteUtils.rawQuerySingle(mType, toSql(), getArguments());
+			final List<T> entities = rawQuery();
+			return entities.size() > 0 ? entities.get(0) : null;
 		}
 		else {
-			SQLiteUtils.execSql(toSql(), getArguments());
+			execSql();
 			return null;
 		}
 	}
 
+	/**
+	 * Returns a page of results by keyset pagination: the page after the token continues from the sort key of the last
+	 * row of the previous page instead of skipping rows with an OFFSET, so deep pages cost as much as the first.
+	 * The rows are ordered by the {@link #orderBy(String)} columns, then by the primary keys to break ties. Those columns
+	 * must be plain, non-null columns of the result, and {@link #limit(int)} and {@link #offset(int)} are ignored.
+	 * @param pageSize
+	 * @param after - the {@link com.activeandroid.query.Page#getNextToken()} of the previous page, null for the first page
+	 * @return
+	 */
+	public <T extends IModel> Page<T> executePage(int pageSize, PageToken after) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("The page size must be positive: " + pageSize);
+		}
+
+		final List<String> columns = new ArrayList<String>();
+		final List<Boolean> descending = new ArrayList<Boolean>();
+		if (mOrderBy != null) {
+			for (String term : mOrderBy.split(",")) {
+				term = term.trim();
+				final String upperTerm = term.toUpperCase();
+				if (upperTerm.endsWith(" DESC")) {
+					columns.add(term.substring(0, term.length() - 5).trim());
+					descending.add(true);
+				}
+				else if (upperTerm.endsWith(" ASC")) {
+					columns.add(term.substring(0, term.length() - 4).trim());
+					descending.add(false);
+				}
+				else {
+					columns.add(term);
+					descending.add(false);
+				}
+			}
+		}
+		for (String primaryKey : Cache.getTableInfo(mType).getPrimaryKeyColumnNames()) {
+			if (!columns.contains(primaryKey)) {
+				columns.add(primaryKey);
+				descending.add(false);
+			}
+		}
+
+		final StringBuilder orderBy = new StringBuilder();
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0) {
+				orderBy.append(", ");
+			}
+			orderBy.append(columns.get(i)).append(descending.get(i) ? " DESC" : " ASC");
+		}
+
+		String where = mWhere;
+		final List<String> arguments = new ArrayList<String>(Arrays.asList(getArguments()));
+		if (after != null) {
+			if (!after.getOrderBy().equals(orderBy.toString())) {
+				throw new IllegalArgumentException("The token is for a query ordered by " + after.getOrderBy());
+			}
+
+			// (a > ?) OR (a = ? AND b > ?) OR ..., since row values only compare from SQLite 3.15
+			final Object[] values = after.getValues();
+			final StringBuilder seek = new StringBuilder("(");
+			for (int i = 0; i < columns.size(); i++) {
+				if (i > 0) {
+					seek.append(" OR ");
+				}
+				seek.append('(');
+				for (int j = 0; j < i; j++) {
+					seek.append(columns.get(j)).append("=? AND ");
+					arguments.add(values[j].toString());
+				}
+				seek.append(columns.get(i)).append(descending.get(i) ? "<?" : ">?").append(')');
+				// a Double prints every digit it needs to parse back, and the column's affinity converts the text
+				arguments.add(values[i].toString());
+			}
+			seek.append(')');
+			where = where != null ? "(" + where + ") AND " + seek : seek.toString();
+		}
+
+		final String sql = buildSql(where, orderBy.toString(), String.valueOf(pageSize + 1), null);
+		final String[] selectionArgs = arguments.toArray(new String[arguments.size()]);
+		final SQLiteDatabase database = Cache.acquireReadableDatabase();
+		try {
+			final Cursor cursor = QueryMonitor.isEnabled() ? QueryMonitor.rawQuery(database, sql, selectionArgs)
+					: database.rawQuery(sql, selectionArgs);
+			try {
+				final List<T> entities = SQLiteUtils.processCursor(mType, cursor);
+				if (entities.size() <= pageSize) {
+					return new Page<T>(entities, null);
+				}
+
+				// one row more than the page was read only to know there is a next page
+				entities.remove(pageSize);
+				cursor.moveToPosition(pageSize - 1);
+				final Object[] values = new Object[columns.size()];
+				for (int i = 0; i < values.length; i++) {
+					final String column = columns.get(i);
+					values[i] = getSortKey(cursor, cursor.getColumnIndexOrThrow(column.substring(column.lastIndexOf('.') + 1)), column);
+				}
+				return new Page<T>(entities, new PageToken(orderBy.toString(), values));
+			}
+			finally {
+				cursor.close();
+			}
+		}
+		finally {
+			Cache.releaseReadableDatabase(database);
+		}
+	}
+
+	/**
+	 * Returns the results as a read-only list that loads rows as they are read, keeping the models of the last
+	 * {@link com.activeandroid.query.LazyModelList#DEFAULT_WINDOW_SIZE} positions. Close it to release the cursor.
+	 * @return
+	 */
+	public <T extends IModel> LazyModelList<T> executeLazy() {
+		return executeLazy(LazyModelList.DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Returns the results as a read-only list that loads rows as they are read. Close it to release the cursor.
+	 * @param windowSize - the number of loaded models kept
+	 * @return
+	 */
+	public <T extends IModel> LazyModelList<T> executeLazy(int windowSize) {
+		return new LazyModelList<T>(mType, toSql(), getArguments(), windowSize);
+	}
+
+	/**
+	 * Streams the results instead of loading them all at once. Close the iterator if iteration stops before the end.
+	 * @return
+	 */
+	public <T extends IModel> ModelIterator<T> iterate() {
+		return iterate(false);
+	}
+
+	/**
+	 * Streams the results instead of loading them all at once. Close the iterator if iteration stops before the end.
+	 * @param reuseInstance - true to load every row into the same model instance, which is kept out of the entity cache
+	 * @return
+	 */
+	public <T extends IModel> ModelIterator<T> iterate(boolean reuseInstance) {
+		return new ModelIterator<T>(mType, toSql(), getArguments(), reuseInstance);
+	}
+
+	/**
+	 * Passes the results to the consumer one at a time, releasing the cursor when done
+	 * @param consumer
+	 */
+	public <T extends IModel> void forEach(ModelConsumer<T> consumer) {
+		forEach(consumer, false);
+	}
+
+	/**
+	 * Passes the results to the consumer one at a time, releasing the cursor when done
+	 * @param consumer
+	 * @param reuseInstance - true to load every row into the same model instance, which is kept out of the entity cache
+	 */
+	public <T extends IModel> void forEach(ModelConsumer<T> consumer, boolean reuseInstance) {
+		final ModelIterator<T> iterator = iterate(reuseInstance);
+		try {
+			while (iterator.hasNext()) {
+				if (!consumer.onModel(iterator.next())) {
+					break;
+				}
+			}
+		}
+		finally {
+			iterator.close();
+		}
+	}
+
 	public String[] getArguments() {
 		final int size = mArguments.size();
 		final String[] args = new String[size];
@@ -255,4 +418,121 @@ public final class From implements Sqlable {
 
 		return args;
 	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the SQL of the joins, null if there are none
+	 */
+	private String getJoinSql() {
+		if (mJoins.isEmpty()) {
+			return null;
+		}
+
+		final StringBuilder sql = new StringBuilder();
+		for (Join join : mJoins) {
+			sql.append(join.toSql());
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * Returns the SQL of this query with the clauses passed instead of its own
+	 */
+	private String buildSql(String where, String orderBy, String limit, String offset) {
+		StringBuilder sql = new StringBuilder();
+		sql.append(mQueryBase.toSql());
+		sql.append("FROM ");
+		sql.append(Cache.getTableName(mType)).append(" ");
+
+		if (mAlias != null) {
+			sql.append("AS ");
+			sql.append(mAlias);
+			sql.append(" ");
+		}
+
+		for (Join join : mJoins) {
+			sql.append(join.toSql());
+		}
+
+		if (where != null) {
+			sql.append("WHERE ");
+			sql.append(where);
+			sql.append(" ");
+		}
+
+		if (mGroupBy != null) {
+			sql.append("GROUP BY ");
+			sql.append(mGroupBy);
+			sql.append(" ");
+		}
+
+		if (mHaving != null) {
+			sql.append("HAVING ");
+			sql.append(mHaving);
+			sql.append(" ");
+		}
+
+		if (orderBy != null) {
+			sql.append("ORDER BY ");
+			sql.append(orderBy);
+			sql.append(" ");
+		}
+
+		if (limit != null) {
+			sql.append("LIMIT ");
+			sql.append(limit);
+			sql.append(" ");
+		}
+
+		if (offset != null) {
+			sql.append("OFFSET ");
+			sql.append(offset);
+			sql.append(" ");
+		}
+
+		return sql.toString().trim();
+	}
+
+	/**
+	 * Returns the value of a sort key column as the type it is stored as. Before Honeycomb the type cannot be read,
+	 * and it is read as a string.
+	 */
+	private static Object getSortKey(Cursor cursor, int columnIndex, String column) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			switch (cursor.getType(columnIndex)) {
+				case Cursor.FIELD_TYPE_INTEGER:
+					return cursor.getLong(columnIndex);
+				case Cursor.FIELD_TYPE_FLOAT:
+					return cursor.getDouble(columnIndex);
+				case Cursor.FIELD_TYPE_BLOB:
+					throw new IllegalStateException("Cannot page on a blob value of " + column);
+			}
+		}
+
+		final String value = cursor.getString(columnIndex);
+		if (value == null) {
+			throw new IllegalStateException("Cannot page on a null value of " + column);
+		}
+		return value;
+	}
+
+	private <T extends IModel> List<T> rawQuery() {
+		if (QueryMonitor.isEnabled()) {
+			return QueryMonitor.rawQuery(mType, toSql(), getArguments());
+		}
+		return SQLiteUtils.rawQuery(mType, toSql(), getArguments());
+	}
+
+	private void execSql() {
+		if (QueryMonitor.isEnabled()) {
+			QueryMonitor.execSql(toSql(), getArguments());
+		}
+		else {
+			// only deletes run here, which cannot make a row known as missing exist
+			Cache.openDatabase().execSQL(toSql(), getArguments());
+		}
+	}
 }
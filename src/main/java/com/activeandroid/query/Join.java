@@ -41,22 +41,26 @@ public final class Join implements Sqlable {
 
 	public Join as(String alias) {
 		mAlias = alias;
+		mFrom.invalidateSql();
 		return this;
 	}
 
 	public From on(String on) {
 		mOn = on;
+		mFrom.invalidateSql();
 		return mFrom;
 	}
 
 	public From on(String on, Object... args) {
 		mOn = on;
+		mFrom.invalidateSql();
 		mFrom.addArguments(args);
 		return mFrom;
 	}
 
 	public From using(String... columns) {
 		mUsing = columns;
+		mFrom.invalidateSql();
 		return mFrom;
 	}
 
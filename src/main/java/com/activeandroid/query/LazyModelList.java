@@ -0,0 +1,160 @@
+package com.activeandroid.query;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.activeandroid.Cache;
+import com.activeandroid.IModel;
+import com.activeandroid.IModelAdapter;
+import com.activeandroid.Model;
+import com.activeandroid.TableInfo;
+import com.activeandroid.util.SQLiteUtils;
+
+import java.io.Closeable;
+import java.lang.reflect.Constructor;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Description: A read-only list over the cursor of a {@link com.activeandroid.query.From}, returned by
+ * {@link com.activeandroid.query.From#executeLazy()}. A row is only loaded into a model when {@link #get(int)} asks for it,
+ * and only the models of the last window of positions stay in memory, so a list view over a large table only creates
+ * the models it shows. Call {@link #close()} to release the cursor and its connection once the list is no longer displayed.
+ */
+public final class LazyModelList<T extends IModel> extends AbstractList<T> implements RandomAccess, Closeable {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	public static final int DEFAULT_WINDOW_SIZE = 100;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final Class<? extends IModel> mType;
+	private final SQLiteDatabase mDatabase;
+	private final Cursor mCursor;
+	private final int mSize;
+
+	private final IModelAdapter mModelAdapter;
+	private Constructor<?> mConstructor;
+	private final int[] mColumnIndexes;
+
+	/**
+	 * The loaded models, each in the slot of its position modulo the window size
+	 */
+	private final Object[] mWindow;
+	private final int[] mWindowPositions;
+
+	private boolean mClosed;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	LazyModelList(Class<? extends IModel> type, String sql, String[] selectionArgs, int windowSize) {
+		if (windowSize <= 0) {
+			throw new IllegalArgumentException("The window size must be positive: " + windowSize);
+		}
+
+		mType = type;
+		mDatabase = Cache.acquireReadableDatabase();
+		try {
+			mCursor = QueryMonitor.isEnabled() ? QueryMonitor.rawQuery(mDatabase, sql, selectionArgs)
+					: mDatabase.rawQuery(sql, selectionArgs);
+		}
+		catch (RuntimeException e) {
+			Cache.releaseReadableDatabase(mDatabase);
+			throw e;
+		}
+
+		try {
+			// counting runs the query now instead of on the first get
+			mSize = mCursor.getCount();
+
+			final TableInfo tableInfo = Cache.getTableInfo(type);
+			mModelAdapter = tableInfo.getModelAdapter();
+			if (mModelAdapter == null) {
+				mConstructor = type.getConstructor();
+				mConstructor.setAccessible(true);
+			}
+			mColumnIndexes = SQLiteUtils.getColumnIndexes(mCursor, tableInfo);
+		}
+		catch (NoSuchMethodException e) {
+			close();
+			throw new RuntimeException("Default constructor for: " + type.getName() + " was not found.");
+		}
+		catch (RuntimeException e) {
+			close();
+			throw e;
+		}
+
+		mWindow = new Object[Math.min(windowSize, Math.max(mSize, 1))];
+		mWindowPositions = new int[mWindow.length];
+		for (int i = 0; i < mWindowPositions.length; i++) {
+			mWindowPositions[i] = -1;
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	@Override
+	public int size() {
+		return mSize;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public synchronized T get(int location) {
+		if (location < 0 || location >= mSize) {
+			throw new IndexOutOfBoundsException("Index: " + location + ", size: " + mSize);
+		}
+
+		final int slot = location % mWindow.length;
+		if (mWindowPositions[slot] == location) {
+			return (T) mWindow[slot];
+		}
+
+		if (mClosed) {
+			throw new IllegalStateException("The list is closed");
+		}
+
+		try {
+			mCursor.moveToPosition(location);
+			final T model = mModelAdapter != null ? (T) mModelAdapter.newInstance() : (T) mConstructor.newInstance();
+			if (model instanceof Model) {
+				SQLiteUtils.loadFromCursor(mCursor, model, mColumnIndexes);
+			}
+			else {
+				model.loadFromCursor(mCursor);
+			}
+
+			mWindow[slot] = model;
+			mWindowPositions[slot] = location;
+			return model;
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Failed to load " + mType.getName() + " from cursor.", e);
+		}
+	}
+
+	/**
+	 * Closes the cursor and releases its connection. Models still in the window can be read, other positions throw an
+	 * {@link IllegalStateException}.
+	 */
+	@Override
+	public synchronized void close() {
+		if (!mClosed) {
+			mClosed = true;
+			mCursor.close();
+			Cache.releaseReadableDatabase(mDatabase);
+		}
+	}
+
+	public synchronized boolean isClosed() {
+		return mClosed;
+	}
+}
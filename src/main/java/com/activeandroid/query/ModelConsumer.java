@@ -0,0 +1,16 @@
+package com.activeandroid.query;
+
+import com.activeandroid.IModel;
+
+/**
+ * Description: Receives the results of {@link com.activeandroid.query.From#forEach(ModelConsumer)} one model at a time
+ */
+public interface ModelConsumer<T extends IModel> {
+
+	/**
+	 * Called for each row, in order
+	 * @param model - in reuse mode the same instance every time, so copy what must outlive the call
+	 * @return false to stop iterating
+	 */
+	public boolean onModel(T model);
+}
@@ -0,0 +1,174 @@
+package com.activeandroid.query;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.activeandroid.Cache;
+import com.activeandroid.ColumnBinder;
+import com.activeandroid.IModel;
+import com.activeandroid.IModelAdapter;
+import com.activeandroid.Model;
+import com.activeandroid.TableInfo;
+import com.activeandroid.util.SQLiteUtils;
+
+import java.io.Closeable;
+import java.lang.reflect.Constructor;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Description: Streams the results of a {@link com.activeandroid.query.From} over its cursor, loading one model per
+ * {@link #next()} so the whole result never sits in memory. The cursor and its connection are released once the last
+ * row is read, or on {@link #close()}, which must be called when iteration stops early.
+ * In reuse mode every row is loaded into the same instance, which is then kept out of the entity cache.
+ */
+public final class ModelIterator<T extends IModel> implements Iterator<T>, Closeable {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final Class<? extends IModel> mType;
+	private final SQLiteDatabase mDatabase;
+	private final Cursor mCursor;
+	private final boolean mReuseInstance;
+
+	private IModelAdapter mModelAdapter;
+	private Constructor<?> mConstructor;
+	private int[] mColumnIndexes;
+	private ColumnBinder[] mBinders;
+	private int[] mBinderIndexes;
+
+	private T mInstance;
+	private boolean mHasNext;
+	private boolean mClosed;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	ModelIterator(Class<? extends IModel> type, String sql, String[] selectionArgs, boolean reuseInstance) {
+		mType = type;
+		mReuseInstance = reuseInstance;
+		mDatabase = Cache.acquireReadableDatabase();
+		try {
+			mCursor = QueryMonitor.isEnabled() ? QueryMonitor.rawQuery(mDatabase, sql, selectionArgs)
+					: mDatabase.rawQuery(sql, selectionArgs);
+		}
+		catch (RuntimeException e) {
+			Cache.releaseReadableDatabase(mDatabase);
+			throw e;
+		}
+
+		try {
+			mHasNext = mCursor.moveToFirst();
+			if (mHasNext) {
+				prepare();
+			}
+		}
+		catch (RuntimeException e) {
+			close();
+			throw e;
+		}
+
+		if (!mHasNext) {
+			close();
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	@Override
+	public boolean hasNext() {
+		return mHasNext;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!mHasNext) {
+			throw new NoSuchElementException();
+		}
+
+		try {
+			T model = mInstance;
+			if (model == null) {
+				model = mModelAdapter != null ? (T) mModelAdapter.newInstance() : (T) mConstructor.newInstance();
+				if (mReuseInstance) {
+					mInstance = model;
+				}
+			}
+			else {
+				// loading skips null columns, so clear what the previous row left in them
+				for (int i = 0; i < mBinders.length; i++) {
+					if (mBinderIndexes[i] >= 0 && mCursor.isNull(mBinderIndexes[i])) {
+						mBinders[i].reset(model);
+					}
+				}
+			}
+
+			if (model instanceof Model) {
+				SQLiteUtils.loadFromCursor(mCursor, model, mColumnIndexes, !mReuseInstance);
+			}
+			else {
+				model.loadFromCursor(mCursor);
+			}
+
+			mHasNext = mCursor.moveToNext();
+			if (!mHasNext) {
+				close();
+			}
+			return model;
+		}
+		catch (Exception e) {
+			close();
+			throw new RuntimeException("Failed to load " + mType.getName() + " from cursor.", e);
+		}
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Cannot remove from a query result");
+	}
+
+	/**
+	 * Closes the cursor and releases its connection. Safe to call more than once.
+	 */
+	@Override
+	public void close() {
+		if (!mClosed) {
+			mClosed = true;
+			mHasNext = false;
+			mCursor.close();
+			Cache.releaseReadableDatabase(mDatabase);
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private void prepare() {
+		final TableInfo tableInfo = Cache.getTableInfo(mType);
+		mModelAdapter = tableInfo.getModelAdapter();
+		if (mModelAdapter == null) {
+			try {
+				mConstructor = mType.getConstructor();
+			}
+			catch (NoSuchMethodException e) {
+				throw new RuntimeException("Default constructor for: " + mType.getName() + " was not found.");
+			}
+			mConstructor.setAccessible(true);
+		}
+		mColumnIndexes = SQLiteUtils.getColumnIndexes(mCursor, tableInfo);
+
+		if (mReuseInstance) {
+			mBinders = tableInfo.getColumnBinders();
+			mBinderIndexes = new int[mBinders.length];
+			for (int i = 0; i < mBinders.length; i++) {
+				mBinderIndexes[i] = mCursor.getColumnIndex(mBinders[i].getColumnName());
+			}
+		}
+	}
+}
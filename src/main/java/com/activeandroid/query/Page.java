@@ -0,0 +1,35 @@
+package com.activeandroid.query;
+
+import com.activeandroid.IModel;
+
+import java.util.List;
+
+/**
+ * Description: One page of results from {@link com.activeandroid.query.From#executePage(int, PageToken)}
+ */
+public final class Page<T extends IModel> {
+	private final List<T> mItems;
+	private final PageToken mNextToken;
+
+	Page(List<T> items, PageToken nextToken) {
+		mItems = items;
+		mNextToken = nextToken;
+	}
+
+	public List<T> getItems() {
+		return mItems;
+	}
+
+	/**
+	 * Returns the token to pass to {@link com.activeandroid.query.From#executePage(int, PageToken)} for the next page,
+	 * null if this is the last page
+	 * @return
+	 */
+	public PageToken getNextToken() {
+		return mNextToken;
+	}
+
+	public boolean hasNext() {
+		return mNextToken != null;
+	}
+}
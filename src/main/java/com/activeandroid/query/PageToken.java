@@ -0,0 +1,34 @@
+package com.activeandroid.query;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Description: Where the next page of a keyset paginated query starts: the sort key values of the last row of the
+ * previous page, along with the order they belong to. Values are kept as the Long, Double or String the column held,
+ * so a REAL key is not rounded the way reading it as a string does.
+ */
+public final class PageToken implements Serializable {
+	private static final long serialVersionUID = 2L;
+
+	private final String mOrderBy;
+	private final Object[] mValues;
+
+	PageToken(String orderBy, Object[] values) {
+		mOrderBy = orderBy;
+		mValues = values;
+	}
+
+	String getOrderBy() {
+		return mOrderBy;
+	}
+
+	Object[] getValues() {
+		return mValues;
+	}
+
+	@Override
+	public String toString() {
+		return mOrderBy + " after " + Arrays.toString(mValues);
+	}
+}
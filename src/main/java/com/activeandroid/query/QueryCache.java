@@ -0,0 +1,108 @@
+package com.activeandroid.query;
+
+import android.support.v4.util.LruCache;
+
+import com.activeandroid.IModel;
+
+/**
+ * Description: Caches the SQL generated by {@link com.activeandroid.query.From} by query shape: the table and the text
+ * of each clause, with bind arguments left out. Each new {@link com.activeandroid.query.From} of a repeated shape, such as
+ * a lookup by primary key, reuses its SQL string instead of rebuilding it. Android keeps the compiled statements of each
+ * connection by SQL text, so a shape whose values are bound as arguments also reuses its prepared statement, while
+ * clauses with inlined values give every query its own shape. The cache is bounded and cleared when the database closes.
+ */
+public final class QueryCache {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static final int DEFAULT_SIZE = 128;
+
+	private static final LruCache<Shape, String> sQueries = new LruCache<Shape, String>(DEFAULT_SIZE);
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private QueryCache() {
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	public static void clear() {
+		sQueries.evictAll();
+	}
+
+	/**
+	 * Returns the number of query shapes cached
+	 * @return
+	 */
+	public static int size() {
+		return sQueries.size();
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PACKAGE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	static String get(Shape shape) {
+		return sQueries.get(shape);
+	}
+
+	static void put(Shape shape, String sql) {
+		sQueries.put(shape, sql);
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// INNER CLASSES
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * The table and clauses of a query
+	 */
+	static final class Shape {
+		private final Class<? extends IModel> mType;
+		private final String[] mClauses;
+		private final int mHashCode;
+
+		Shape(Class<? extends IModel> type, String... clauses) {
+			mType = type;
+			mClauses = clauses;
+
+			int hashCode = type.hashCode();
+			for (String clause : clauses) {
+				hashCode = 31 * hashCode + (clause != null ? clause.hashCode() : 0);
+			}
+			mHashCode = hashCode;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Shape)) {
+				return false;
+			}
+
+			final Shape shape = (Shape) o;
+			if (mHashCode != shape.mHashCode || mType != shape.mType || mClauses.length != shape.mClauses.length) {
+				return false;
+			}
+			for (int i = 0; i < mClauses.length; i++) {
+				final String clause = mClauses[i];
+				if (clause != shape.mClauses[i] && (clause == null || !clause.equals(shape.mClauses[i]))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			return mHashCode;
+		}
+	}
+}
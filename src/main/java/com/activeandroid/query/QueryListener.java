@@ -0,0 +1,11 @@
+package com.activeandroid.query;
+
+/**
+ * Description: Receives the {@link com.activeandroid.query.QueryStats} of every query run through
+ * {@link com.activeandroid.query.From} or {@link com.activeandroid.query.Set} while it is set on the
+ * {@link com.activeandroid.query.QueryMonitor}. Called on the thread that ran the query.
+ */
+public interface QueryListener {
+
+	public void onQuery(QueryStats stats);
+}
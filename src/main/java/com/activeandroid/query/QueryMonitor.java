@@ -0,0 +1,174 @@
+package com.activeandroid.query;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.activeandroid.Cache;
+import com.activeandroid.IModel;
+import com.activeandroid.util.AALog;
+import com.activeandroid.util.SQLiteUtils;
+
+import java.util.List;
+
+/**
+ * Description: Times the queries run through {@link com.activeandroid.query.From} and {@link com.activeandroid.query.Set}.
+ * While neither a {@link com.activeandroid.query.QueryListener} nor a slow query threshold is set, queries run untimed.
+ * Queries slower than the threshold are logged with their EXPLAIN QUERY PLAN, which shows full table scans as "SCAN TABLE".
+ */
+public final class QueryMonitor {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static volatile QueryListener sListener;
+	private static volatile long sSlowQueryThreshold;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private QueryMonitor() {
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Sets the listener receiving the stats of every query, null to stop timing them
+	 * @param listener
+	 */
+	public static void setListener(QueryListener listener) {
+		sListener = listener;
+	}
+
+	public static QueryListener getListener() {
+		return sListener;
+	}
+
+	/**
+	 * Sets the time in ms above which a query is slow and has its query plan captured, 0 to capture none
+	 * @param slowQueryThreshold
+	 */
+	public static void setSlowQueryThreshold(long slowQueryThreshold) {
+		sSlowQueryThreshold = slowQueryThreshold;
+	}
+
+	public static long getSlowQueryThreshold() {
+		return sSlowQueryThreshold;
+	}
+
+	public static boolean isEnabled() {
+		return sListener != null || sSlowQueryThreshold > 0;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PACKAGE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	static <T extends IModel> List<T> rawQuery(Class<? extends IModel> type, String sql, String[] selectionArgs) {
+		final SQLiteDatabase database = Cache.acquireReadableDatabase();
+		try {
+			final long start = System.nanoTime();
+			final Cursor cursor = database.rawQuery(sql, selectionArgs);
+			try {
+				// the cursor is filled lazily, counting forces it so hydration is timed apart
+				final int rowCount = cursor.getCount();
+				final long filled = System.nanoTime();
+				final List<T> entities = SQLiteUtils.processCursor(type, cursor);
+				onQuery(database, sql, selectionArgs, rowCount, (filled - start) / 1000, (System.nanoTime() - filled) / 1000);
+
+				return entities;
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			Cache.releaseReadableDatabase(database);
+		}
+	}
+
+	/**
+	 * Runs the query on the connection and returns its cursor for the caller to load rows from, so the stats only
+	 * have the time to run the query and count its rows
+	 */
+	static Cursor rawQuery(SQLiteDatabase database, String sql, String[] selectionArgs) {
+		final long start = System.nanoTime();
+		final Cursor cursor = database.rawQuery(sql, selectionArgs);
+		try {
+			final int rowCount = cursor.getCount();
+			onQuery(database, sql, selectionArgs, rowCount, (System.nanoTime() - start) / 1000, 0);
+		} catch (RuntimeException e) {
+			cursor.close();
+			throw e;
+		}
+		return cursor;
+	}
+
+	static long longForQuery(String sql, String[] selectionArgs) {
+		final SQLiteDatabase database = Cache.acquireReadableDatabase();
+		try {
+			final long start = System.nanoTime();
+			final long result = DatabaseUtils.longForQuery(database, sql, selectionArgs);
+			onQuery(database, sql, selectionArgs, 1, (System.nanoTime() - start) / 1000, 0);
+
+			return result;
+		} finally {
+			Cache.releaseReadableDatabase(database);
+		}
+	}
+
+	static void execSql(String sql, String[] bindArgs) {
+		final SQLiteDatabase database = Cache.openDatabase();
+		final long start = System.nanoTime();
+		database.execSQL(sql, bindArgs);
+		onQuery(database, sql, bindArgs, -1, (System.nanoTime() - start) / 1000, 0);
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static void onQuery(SQLiteDatabase database, String sql, String[] args, int rowCount, long queryTime,
+			long hydrationTime) {
+		final long slowQueryThreshold = sSlowQueryThreshold;
+		String queryPlan = null;
+		if (slowQueryThreshold > 0 && queryTime + hydrationTime >= slowQueryThreshold * 1000) {
+			queryPlan = explain(database, sql, args);
+		}
+
+		final QueryStats stats = new QueryStats(sql, args != null ? args.length : 0, rowCount, queryTime, hydrationTime,
+				queryPlan);
+		if (queryPlan != null && AALog.isEnabled()) {
+			AALog.w("Slow query: " + stats);
+		}
+
+		final QueryListener listener = sListener;
+		if (listener != null) {
+			listener.onQuery(stats);
+		}
+	}
+
+	private static String explain(SQLiteDatabase database, String sql, String[] args) {
+		try {
+			final Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+			try {
+				final StringBuilder plan = new StringBuilder();
+				while (cursor.moveToNext()) {
+					if (plan.length() > 0) {
+						plan.append('\n');
+					}
+					// the detail is the last column in every SQLite version
+					plan.append(cursor.getString(cursor.getColumnCount() - 1));
+				}
+				return plan.toString();
+			} finally {
+				cursor.close();
+			}
+		} catch (SQLException e) {
+			AALog.e("Could not explain query: " + sql, e);
+			return "";
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.activeandroid.query;
+
+/**
+ * Description: The timing of one query. Times are in microseconds.
+ */
+public final class QueryStats {
+	private final String mSql;
+	private final int mArgumentCount;
+	private final int mRowCount;
+	private final long mQueryTime;
+	private final long mHydrationTime;
+	private final String mQueryPlan;
+
+	QueryStats(String sql, int argumentCount, int rowCount, long queryTime, long hydrationTime, String queryPlan) {
+		mSql = sql;
+		mArgumentCount = argumentCount;
+		mRowCount = rowCount;
+		mQueryTime = queryTime;
+		mHydrationTime = hydrationTime;
+		mQueryPlan = queryPlan;
+	}
+
+	public String getSql() {
+		return mSql;
+	}
+
+	public int getArgumentCount() {
+		return mArgumentCount;
+	}
+
+	/**
+	 * Returns the number of rows returned, -1 for statements that return none
+	 * @return
+	 */
+	public int getRowCount() {
+		return mRowCount;
+	}
+
+	/**
+	 * Returns the time SQLite took to run the query and fill the cursor
+	 * @return
+	 */
+	public long getQueryTime() {
+		return mQueryTime;
+	}
+
+	/**
+	 * Returns the time taken to turn the rows into models
+	 * @return
+	 */
+	public long getHydrationTime() {
+		return mHydrationTime;
+	}
+
+	public long getTotalTime() {
+		return mQueryTime + mHydrationTime;
+	}
+
+	/**
+	 * Returns the EXPLAIN QUERY PLAN output, one line per step, if the query was slower than
+	 * {@link com.activeandroid.query.QueryMonitor#getSlowQueryThreshold()}, otherwise null
+	 * @return
+	 */
+	public String getQueryPlan() {
+		return mQueryPlan;
+	}
+
+	public boolean isSlow() {
+		return mQueryPlan != null;
+	}
+
+	@Override
+	public String toString() {
+		return mSql + " args: " + mArgumentCount + " rows: " + mRowCount + " query: " + mQueryTime + "us hydration: "
+				+ mHydrationTime + "us" + (mQueryPlan != null ? "\n" + mQueryPlan : "");
+	}
+}
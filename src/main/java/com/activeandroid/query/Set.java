@@ -16,7 +16,7 @@ package com.activeandroid.query;
  * limitations under the License.
  */
 
-import com.activeandroid.util.SQLiteUtils;
+import com.activeandroid.Cache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -82,7 +82,14 @@ public final class Set implements Sqlable {
 	}
 
 	public void execute() {
-		SQLiteUtils.execSql(toSql(), getArguments());
+		if (QueryMonitor.isEnabled()) {
+			QueryMonitor.execSql(toSql(), getArguments());
+		}
+		else {
+			Cache.openDatabase().execSQL(toSql(), getArguments());
+		}
+		// the update may have given a row a primary key known as missing
+		Cache.removeMissingEntities(mUpdate.getType());
 	}
 
 	public String[] getArguments() {
@@ -0,0 +1,530 @@
+package com.activeandroid.runtime;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.activeandroid.Cache;
+import com.activeandroid.ColumnBinder;
+import com.activeandroid.IModel;
+import com.activeandroid.TableInfo;
+import com.activeandroid.util.AALog;
+import com.activeandroid.util.SQLiteUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Description: An append-only file of the models pending in the {@link com.activeandroid.runtime.DBBatchSaveQueue}.
+ * Each added model's column values are written and forced to the disk with {@link #sync()} before
+ * {@link com.activeandroid.runtime.DBBatchSaveQueue#add(com.activeandroid.IModel)} returns, one sync per add, so
+ * {@link com.activeandroid.runtime.DBBatchSaveQueue#addAll(java.util.Collection)} is cheaper for many models. When a batch is taken for saving the journal rolls over to a new segment, and the segment of the batch is deleted
+ * once its transaction commits. Segments left behind by a crash are written to the DB by {@link #replay(android.database.sqlite.SQLiteDatabase)}
+ * on the next {@link com.activeandroid.Cache#initialize(com.activeandroid.Configuration)}.
+ */
+public class BatchSaveJournal {
+
+    private static final String SUFFIX = ".journal";
+
+    /**
+     * Appended to the name of a segment with a corrupt record, which is kept but no longer replayed
+     */
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+
+    private static final byte RECORD_SAVE = 1;
+
+    private static final byte RECORD_REMOVE = 2;
+
+    private static final byte VALUE_NULL = 0;
+
+    private static final byte VALUE_LONG = 1;
+
+    private static final byte VALUE_DOUBLE = 2;
+
+    private static final byte VALUE_STRING = 3;
+
+    private static final byte VALUE_BLOB = 4;
+
+    private final File mDirectory;
+
+    private final String mPrefix;
+
+    private long mSequence;
+
+    private File mSegment;
+
+    /**
+     * The sequence number of {@link #mSegment}
+     */
+    private long mSegmentSequence;
+
+    private volatile FileChannel mChannel;
+
+    /**
+     * Identifiers of models recorded while their auto increment key was unassigned, by instance, kept until the
+     * segment they were last recorded in is committed
+     */
+    private final IdentityHashMap<IModel, NewModel> mNewModels = new IdentityHashMap<IModel, NewModel>();
+
+    private long mNewModelSequence;
+
+    private final ByteArrayOutputStream mRecordBytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream mRecord = new DataOutputStream(mRecordBytes);
+
+    private final CRC32 mCrc = new CRC32();
+
+    /**
+     * @param directory - where the segments are kept
+     * @param name      - the prefix of the segment files, usually the database name
+     */
+    public BatchSaveJournal(File directory, String name) {
+        mDirectory = directory;
+        mPrefix = name + "-batch-";
+
+        for (File segment : getSegments()) {
+            mSequence = Math.max(mSequence, getSequence(segment) + 1);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Records the current values of the model
+     * @param model
+     */
+    public synchronized void append(IModel model) {
+        try {
+            final TableInfo tableInfo = Cache.getTableInfo(model.getClass());
+            final ContentValues values = SQLiteUtils.getContentValues(model, tableInfo);
+            if (SQLiteUtils.hasUnassignedAutoIncrementKey(model, tableInfo)) {
+                // left for SQLite to assign on replay, as a save would
+                values.remove(tableInfo.getColumnName(tableInfo.getAutoIncrementKey()));
+            }
+
+            openSegment();
+            mRecordBytes.reset();
+            mRecord.writeByte(RECORD_SAVE);
+            mRecord.writeUTF(tableInfo.getTableName());
+            mRecord.writeUTF(getIdentifier(model));
+            mRecord.writeInt(values.size());
+            for (String key : values.keySet()) {
+                mRecord.writeUTF(key);
+                writeValue(values.get(key));
+            }
+            writeRecord();
+        } catch (IOException e) {
+            AALog.e(e.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * Records that the model was taken out of the queue before it was saved
+     * @param model
+     */
+    public synchronized void remove(IModel model) {
+        try {
+            openSegment();
+            mRecordBytes.reset();
+            mRecord.writeByte(RECORD_REMOVE);
+            mRecord.writeUTF(Cache.getTableName(model.getClass()));
+            mRecord.writeUTF(getIdentifier(model));
+            writeRecord();
+        } catch (IOException e) {
+            AALog.e(e.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * Forces the records written so far to the disk, so they survive a power loss and not only the death of the process.
+     * Not synchronized, so appending is not blocked while the disk writes.
+     */
+    public void sync() {
+        final FileChannel channel = mChannel;
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // rolled over, which forced the segment before closing it
+        } catch (IOException e) {
+            AALog.e(e.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * Closes the current segment so later records go to a new one
+     * @return the closed segment, to pass to {@link #commit(java.io.File)} once its models are saved, or null if nothing was recorded
+     */
+    public synchronized File roll() {
+        final File segment = mSegment;
+        sync();
+        close();
+        mSegment = null;
+        return segment;
+    }
+
+    /**
+     * Deletes a segment returned by {@link #roll()} after the transaction saving its models committed
+     * @param segment
+     */
+    public synchronized void commit(File segment) {
+        if (segment == null) {
+            return;
+        }
+        if (!segment.delete()) {
+            AALog.e("Could not delete journal segment: " + segment);
+        }
+
+        // the models are saved, so the ones recorded later are recorded by their keys
+        final long sequence = getSequence(segment);
+        final Iterator<NewModel> newModels = mNewModels.values().iterator();
+        while (newModels.hasNext()) {
+            if (newModels.next().mSegmentSequence <= sequence) {
+                newModels.remove();
+            }
+        }
+    }
+
+    /**
+     * Writes the models of every segment left from a previous run to the DB in a single transaction and deletes the segments.
+     * Rows are inserted, or updated by primary key if they exist. A row the DB rejects is logged and skipped. A segment
+     * with a corrupt record has the records before it replayed, and is renamed with a {@code .corrupt} suffix instead
+     * of being deleted, since the records after it cannot be read.
+     * @param database
+     * @return the number of rows written
+     */
+    public synchronized int replay(SQLiteDatabase database) {
+        roll();
+        final File[] segments = getSegments();
+        if (segments.length == 0) {
+            return 0;
+        }
+
+        // only the latest values of each model are written, and removed models are dropped
+        final LinkedHashMap<String, ContentValues> pending = new LinkedHashMap<String, ContentValues>();
+        final LinkedHashMap<String, String> tables = new LinkedHashMap<String, String>();
+        final boolean[] complete = new boolean[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            complete[i] = readSegment(segments[i], pending, tables);
+        }
+
+        int written = 0;
+        database.beginTransaction();
+        try {
+            for (Map.Entry<String, ContentValues> entry : pending.entrySet()) {
+                final String tableName = tables.get(entry.getKey());
+                try {
+                    writeRow(database, tableName, entry.getValue());
+                    written++;
+                } catch (RuntimeException e) {
+                    // one bad row must not keep the others, and every later launch, from replaying
+                    AALog.e("Could not replay journal record into " + tableName, e);
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        for (int i = 0; i < segments.length; i++) {
+            if (complete[i]) {
+                commit(segments[i]);
+            } else {
+                moveAside(segments[i]);
+            }
+        }
+        AALog.v("Replayed " + written + " models from the batch save journal");
+        return written;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private void openSegment() throws IOException {
+        if (mChannel == null) {
+            mSegmentSequence = mSequence++;
+            mSegment = new File(mDirectory, mPrefix + mSegmentSequence + SUFFIX);
+            mChannel = new FileOutputStream(mSegment, true).getChannel();
+        }
+    }
+
+    /**
+     * Appends the record to the open segment as its length, its bytes and their CRC so a partially written record
+     * is detected on replay
+     */
+    private void writeRecord() throws IOException {
+        mRecord.flush();
+        final byte[] bytes = mRecordBytes.toByteArray();
+        mCrc.reset();
+        mCrc.update(bytes, 0, bytes.length);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 12);
+        buffer.putInt(bytes.length).put(bytes).putLong(mCrc.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+    }
+
+    /**
+     * Returns the identifier records of the model are coalesced by on replay. Models whose auto increment key is not
+     * assigned yet get one per instance, numbered from the segment they were first recorded in so it is not reused
+     * by a later run.
+     */
+    private String getIdentifier(IModel model) {
+        final Object key = DBBatchSaveQueue.getKey(model);
+        if (key instanceof String) {
+            return (String) key;
+        }
+
+        NewModel newModel = mNewModels.get(model);
+        if (newModel == null) {
+            newModel = new NewModel(Cache.getTableName(model.getClass()) + "@new:" + mSegmentSequence + "." + (mNewModelSequence++));
+            mNewModels.put(model, newModel);
+        }
+        newModel.mSegmentSequence = mSegmentSequence;
+        return newModel.mIdentifier;
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            mRecord.writeByte(VALUE_NULL);
+        } else if (value instanceof Float || value instanceof Double) {
+            mRecord.writeByte(VALUE_DOUBLE);
+            mRecord.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            mRecord.writeByte(VALUE_LONG);
+            mRecord.writeLong(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            mRecord.writeByte(VALUE_LONG);
+            mRecord.writeLong((Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            mRecord.writeByte(VALUE_BLOB);
+            mRecord.writeInt(((byte[]) value).length);
+            mRecord.write((byte[]) value);
+        } else {
+            // not writeUTF, which is limited to 64KB
+            final byte[] string = value.toString().getBytes("UTF-8");
+            mRecord.writeByte(VALUE_STRING);
+            mRecord.writeInt(string.length);
+            mRecord.write(string);
+        }
+    }
+
+    /**
+     * Reads the records of the segment into pending
+     * @return false if a record is corrupt, so the records after it were not read
+     */
+    private boolean readSegment(File segment, Map<String, ContentValues> pending, Map<String, String> tables) {
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new FileInputStream(segment));
+            while (true) {
+                final int length = input.readInt();
+                if (length < 0 || length > segment.length()) {
+                    throw new IOException("Corrupt record length in journal segment: " + segment);
+                }
+                final byte[] bytes = new byte[length];
+                input.readFully(bytes);
+                final long crc = input.readLong();
+                mCrc.reset();
+                mCrc.update(bytes, 0, bytes.length);
+                if (crc != mCrc.getValue()) {
+                    throw new IOException("Corrupt record in journal segment: " + segment);
+                }
+
+                readRecord(new DataInputStream(new ByteArrayInputStream(bytes)), pending, tables);
+            }
+        } catch (EOFException e) {
+            // end of the segment, or a record cut short by a crash
+            return true;
+        } catch (IOException e) {
+            AALog.e(e.getClass().getName(), e);
+            return false;
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    AALog.e(e.getClass().getName(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Renames a segment that could not be fully read so it is kept, but not replayed again
+     */
+    private void moveAside(File segment) {
+        final File corrupt = new File(segment.getPath() + CORRUPT_SUFFIX);
+        if (segment.renameTo(corrupt)) {
+            AALog.e("Kept corrupt journal segment as: " + corrupt);
+        } else {
+            AALog.e("Could not move aside corrupt journal segment: " + segment);
+        }
+    }
+
+    private void readRecord(DataInputStream record, Map<String, ContentValues> pending, Map<String, String> tables) throws IOException {
+        final byte type = record.readByte();
+        final String tableName = record.readUTF();
+        final String identifier = record.readUTF();
+        if (type == RECORD_REMOVE) {
+            pending.remove(identifier);
+            return;
+        }
+
+        final ContentValues values = new ContentValues();
+        final int count = record.readInt();
+        for (int i = 0; i < count; i++) {
+            final String key = record.readUTF();
+            switch (record.readByte()) {
+                case VALUE_LONG:
+                    values.put(key, record.readLong());
+                    break;
+                case VALUE_DOUBLE:
+                    values.put(key, record.readDouble());
+                    break;
+                case VALUE_STRING:
+                    final byte[] string = new byte[record.readInt()];
+                    record.readFully(string);
+                    values.put(key, new String(string, "UTF-8"));
+                    break;
+                case VALUE_BLOB:
+                    final byte[] blob = new byte[record.readInt()];
+                    record.readFully(blob);
+                    values.put(key, blob);
+                    break;
+                default:
+                    values.putNull(key);
+                    break;
+            }
+        }
+        // re-insert so the order reflects the latest save
+        pending.remove(identifier);
+        pending.put(identifier, values);
+        tables.put(identifier, tableName);
+    }
+
+    private void writeRow(SQLiteDatabase database, String tableName, ContentValues values) {
+        if (database.insertWithOnConflict(tableName, null, values, SQLiteDatabase.CONFLICT_IGNORE) != -1) {
+            return;
+        }
+
+        final TableInfo tableInfo = getTableInfo(tableName);
+        if (tableInfo == null) {
+            AALog.e("No table for journal record: " + tableName);
+            return;
+        }
+
+        final ColumnBinder[] primaryKeys = tableInfo.getPrimaryKeyBinders();
+        final StringBuilder where = new StringBuilder();
+        final String[] args = new String[primaryKeys.length];
+        for (int i = 0; i < primaryKeys.length; i++) {
+            if (i > 0) {
+                where.append(" AND ");
+            }
+            where.append(primaryKeys[i].getColumnName()).append("=?");
+            final Object value = values.get(primaryKeys[i].getBindName());
+            args[i] = value == null ? null : value.toString();
+        }
+        database.update(tableName, values, where.toString(), args);
+    }
+
+    private static TableInfo getTableInfo(String tableName) {
+        for (TableInfo tableInfo : Cache.getTableInfos()) {
+            if (tableInfo.getTableName().equals(tableName)) {
+                return tableInfo;
+            }
+        }
+        return null;
+    }
+
+    private File[] getSegments() {
+        final File[] segments = mDirectory.listFiles();
+        if (segments == null) {
+            return new File[0];
+        }
+
+        int count = 0;
+        for (File segment : segments) {
+            if (getSequence(segment) >= 0) {
+                segments[count++] = segment;
+            }
+        }
+        final File[] journal = Arrays.copyOf(segments, count);
+        Arrays.sort(journal, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                final long lhsSequence = getSequence(lhs);
+                final long rhsSequence = getSequence(rhs);
+                return lhsSequence < rhsSequence ? -1 : (lhsSequence == rhsSequence ? 0 : 1);
+            }
+        });
+        return journal;
+    }
+
+    /**
+     * Returns the sequence number of a segment file, -1 if the file is not a segment of this journal
+     */
+    private long getSequence(File file) {
+        final String name = file.getName();
+        if (!name.startsWith(mPrefix) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(mPrefix.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void close() {
+        if (mChannel != null) {
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                AALog.e(e.getClass().getName(), e);
+            }
+            mChannel = null;
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // INNER CLASSES
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class NewModel {
+
+        private final String mIdentifier;
+
+        /**
+         * The segment the model was last recorded in
+         */
+        private long mSegmentSequence;
+
+        NewModel(String identifier) {
+            mIdentifier = identifier;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.activeandroid.runtime;
+
+/**
+ * Description: Decides when the {@link com.activeandroid.runtime.DBBatchSaveQueue} flushes its pending models.
+ * A batch is saved once it reaches the max size or max memory, or once its oldest model has waited for the max latency.
+ * In adaptive mode the batch size doubles, up to {@link #ADAPTIVE_GROWTH_LIMIT} times the max size, while batches keep
+ * filling up, and the queue flushes early once no model has been added for a quarter of the max latency.
+ */
+public class BatchSavePolicy {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+
+    public static final long DEFAULT_MAX_LATENCY = 5000;
+
+    public static final long DEFAULT_MAX_MEMORY = 1024 * 1024;
+
+    /**
+     * How many times the max batch size an adaptive batch can grow to
+     */
+    public static final int ADAPTIVE_GROWTH_LIMIT = 8;
+
+    public static final BatchSavePolicy DEFAULT = new BatchSavePolicy(DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_LATENCY,
+            DEFAULT_MAX_MEMORY, false);
+
+    private final int mMaxBatchSize;
+
+    private final long mMaxLatency;
+
+    private final long mMaxMemory;
+
+    private final boolean mAdaptive;
+
+    /**
+     * @param maxBatchSize - the number of models that triggers a save
+     * @param maxLatency   - the longest time in ms a model waits before it is saved
+     * @param maxMemory    - the estimated bytes of pending models that triggers a save, 0 for no limit
+     * @param adaptive     - whether to grow the batch size under load and flush early when idle
+     */
+    public BatchSavePolicy(int maxBatchSize, long maxLatency, long maxMemory, boolean adaptive) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be at least 1, was: " + maxBatchSize);
+        }
+        if (maxLatency < 1) {
+            throw new IllegalArgumentException("Max latency must be at least 1 ms, was: " + maxLatency);
+        }
+        mMaxBatchSize = maxBatchSize;
+        mMaxLatency = maxLatency;
+        mMaxMemory = maxMemory;
+        mAdaptive = adaptive;
+    }
+
+    public int getMaxBatchSize() {
+        return mMaxBatchSize;
+    }
+
+    public long getMaxLatency() {
+        return mMaxLatency;
+    }
+
+    public long getMaxMemory() {
+        return mMaxMemory;
+    }
+
+    public boolean isAdaptive() {
+        return mAdaptive;
+    }
+
+    /**
+     * Returns how long the queue may sit idle with pending models in adaptive mode before it flushes early
+     * @return
+     */
+    public long getIdleTimeout() {
+        return Math.max(1, mMaxLatency / 4);
+    }
+
+    /**
+     * Returns the batch size to use after a flush
+     * @param batchSize - the batch size used for the flush
+     * @param filled    - true if the flush was triggered by the batch filling up
+     * @return
+     */
+    public int nextBatchSize(int batchSize, boolean filled) {
+        if (!mAdaptive) {
+            return mMaxBatchSize;
+        } else if (filled) {
+            return (int) Math.min((long) batchSize * 2, (long) mMaxBatchSize * ADAPTIVE_GROWTH_LIMIT);
+        } else {
+            return Math.max(batchSize / 2, mMaxBatchSize);
+        }
+    }
+}
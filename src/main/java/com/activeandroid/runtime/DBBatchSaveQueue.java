@@ -1,31 +1,53 @@
 package com.activeandroid.runtime;
 
 import android.os.Looper;
+import android.os.SystemClock;
 
 import com.activeandroid.ActiveAndroid;
+import com.activeandroid.Cache;
 import com.activeandroid.IModel;
 import com.activeandroid.manager.SingleDBManager;
 import com.activeandroid.util.AALog;
+import com.activeandroid.util.SQLiteUtils;
 
-import java.util.ArrayList;
+import java.io.File;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Created by andrewgrosner
  * Date: 3/19/14
  * Contributors:
  * Description: This queue will bulk save items added to it when it gets access to the DB. It should only exist as one entity.
+ * Producers hand models off through a lock-free queue; only this thread builds the batch, so adding never waits on a flush.
+ * The exception is a queue with a {@link com.activeandroid.runtime.BatchSaveJournal}: adding a model and taking a batch
+ * share the journal's lock so each journal segment holds exactly one batch. An add then waits while this thread drains
+ * the handoff queue and rolls the segment over, which forces it to the disk. Forcing the records of an add happens
+ * outside the lock.
  */
 public class DBBatchSaveQueue extends Thread{
 
     private static DBBatchSaveQueue mBatchSaveQueue;
 
     /**
-     *  Once the queue size reaches 50 or larger, the thread will be interrupted and we will batch save the models.
+     * Rough per model and per column overhead used to estimate the memory held by pending models
      */
-    private static final int sMODEL_SAVE_SIZE = 50;
+    private static final int sMODEL_BYTES = 32;
 
-    private boolean mQuit = false;
+    private static final int sCOLUMN_BYTES = 16;
+
+    private static volatile BatchSavePolicy sPolicy = BatchSavePolicy.DEFAULT;
+
+    private static volatile BatchSaveJournal sJournal;
+
+    private volatile boolean mQuit = false;
+
+    private volatile boolean mFlush = false;
 
     public static DBBatchSaveQueue getSharedSaveQueue(){
         if(mBatchSaveQueue==null){
@@ -38,12 +60,64 @@ public class DBBatchSaveQueue extends Thread{
         mBatchSaveQueue = null;
     }
 
-    private final ArrayList<IModel> mModels;
+    /**
+     * Sets the policy that decides when queues flush, applied from their next batch on
+     * @param policy
+     */
+    public static void setPolicy(BatchSavePolicy policy){
+        sPolicy = policy;
+    }
+
+    public static BatchSavePolicy getPolicy(){
+        return sPolicy;
+    }
+
+    /**
+     * Sets the journal that records pending models until they are saved, null to keep them only in memory
+     * @param journal
+     */
+    public static void setJournal(BatchSaveJournal journal){
+        sJournal = journal;
+    }
+
+    /**
+     * Models added and {@link Removal}s, in order, waiting for this thread to apply them to {@link #mModels}
+     */
+    private final ConcurrentLinkedQueue<Object> mHandoff;
+
+    /**
+     * Pending models keyed by {@link #getKey(com.activeandroid.IModel)}, so a model added again replaces its pending version.
+     * Only accessed by this thread.
+     */
+    private LinkedHashMap<Object, IModel> mModels;
+
+    /**
+     * The current batch size, which differs from the max batch size of the policy in adaptive mode
+     */
+    private volatile int mBatchSize;
+
+    /**
+     * Models added since the last flush, counting each add of the same model
+     */
+    private final AtomicInteger mPendingCount = new AtomicInteger();
+
+    private final AtomicLong mPendingBytes = new AtomicLong();
+
+    /**
+     * Uptime of the first model added to the pending batch, 0 when there is none
+     */
+    private final AtomicLong mFirstAddTime = new AtomicLong();
+
+    private volatile long mLastAddTime;
+
+    private final QueueMetrics mMetrics = new QueueMetrics("DBBatchSaveQueue");
 
     public DBBatchSaveQueue(){
         super("DBBatchSaveQueue");
 
-        mModels = new ArrayList<IModel>();
+        mHandoff = new ConcurrentLinkedQueue<Object>();
+        mModels = new LinkedHashMap<Object, IModel>();
+        mBatchSize = sPolicy.getMaxBatchSize();
     }
 
     @Override
@@ -52,20 +126,56 @@ public class DBBatchSaveQueue extends Thread{
         Looper.prepare();
         android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
         while (true){
-            final ArrayList<IModel> tmpModels;
-            synchronized (mModels){
-                tmpModels = new ArrayList<IModel>(mModels);
-                mModels.clear();
+            long waitTime;
+            while ((waitTime = getWaitTime(sPolicy, SystemClock.uptimeMillis())) > 0) {
+                if (waitTime == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(waitTime));
+                }
+                if (Thread.interrupted()) {
+                    AALog.d("DBBatchSaveQueue", "Batch interrupted to start saving");
+                    break;
+                }
+            }
+
+            final BatchSavePolicy policy = sPolicy;
+            mBatchSize = policy.nextBatchSize(mBatchSize, isFilled(policy));
+            mFlush = false;
+
+            final int depth = mPendingCount.get();
+            final long firstAddTime = mFirstAddTime.get();
+            final long flushTime = SystemClock.uptimeMillis();
+
+            final BatchSaveJournal journal = sJournal;
+            final File segment;
+            if (journal != null) {
+                // producers journal and hand off under the journal's lock, so the segment holds exactly this batch
+                synchronized (journal) {
+                    drainHandoff(journal);
+                    segment = journal.roll();
+                }
+            } else {
+                drainHandoff(null);
+                segment = null;
             }
-            if(tmpModels.size()>0) {
+
+            if(mModels.size()>0) {
+                // swap in a new map instead of copying the pending models
+                final Collection<IModel> tmpModels = mModels.values();
+                mModels = new LinkedHashMap<Object, IModel>();
+                final long flushLatency = firstAddTime > 0 ? (flushTime - firstAddTime) * 1000 : 0;
+
                 //run this on the DBManager thread
                 SingleDBManager.getSharedInstance().getQueue().add(new DBRequest(DBRequestInfo.create("Batch Saving")) {
                     @Override
                     public void run() {
-                        long time = System.currentTimeMillis();
+                        final long start = System.nanoTime();
                         ActiveAndroid.beginTransaction();
                         try {
-                            AALog.d("DBBatchSaveQueue", "Executing batch save of: " + tmpModels.size() + " on :" + Thread.currentThread().getName());
+                            if (AALog.isEnabled()) {
+                                AALog.d("DBBatchSaveQueue", "Executing batch save of: " + tmpModels.size() + " on :" + Thread.currentThread().getName());
+                            }
                             for (IModel IModel: tmpModels) {
                                 IModel.save();
                             }
@@ -75,16 +185,20 @@ public class DBBatchSaveQueue extends Thread{
                         } finally {
                             ActiveAndroid.endTransaction();
                         }
-                        AALog.d("DBBatchSaveQueue", "Time took: " + (System.currentTimeMillis() -time));
+                        if (journal != null) {
+                            journal.commit(segment);
+                        }
+                        final long executionTime = (System.nanoTime() - start) / 1000;
+                        mMetrics.recordDepth(getPriority(), depth);
+                        mMetrics.recordBatch(getPriority(), tmpModels.size(), flushLatency, executionTime);
+                        if (AALog.isEnabled()) {
+                            AALog.d("DBBatchSaveQueue", "Time took: " + executionTime / 1000);
+                        }
                     }
                 });
-            }
-
-            try {
-                //sleep for 5 mins, and then check for leftovers
-                Thread.sleep(300000);
-            } catch (InterruptedException e) {
-                AALog.d("DBBatchSaveQueue", "Batch interrupted to start saving");
+            } else if (journal != null) {
+                // everything journaled in the segment was removed again
+                journal.commit(segment);
             }
 
             if(mQuit){
@@ -93,39 +207,209 @@ public class DBBatchSaveQueue extends Thread{
         }
     }
 
+    /**
+     * Adds the model to the pending batch. If a model with the same {@link com.activeandroid.Cache#getIdentifier(com.activeandroid.IModel)}
+     * is already pending, only this latest version is saved.
+     * @param IModel
+     */
     public void add(final IModel IModel){
-        synchronized (mModels){
-            mModels.add(IModel);
-
-            if(mModels.size()>sMODEL_SAVE_SIZE){
-                interrupt();
+        final BatchSaveJournal journal = sJournal;
+        if (journal != null) {
+            synchronized (journal) {
+                journal.append(IModel);
+                mHandoff.offer(IModel);
             }
+            journal.sync();
+        } else {
+            mHandoff.offer(IModel);
         }
+        onAdded(1, estimateSize(IModel));
     }
 
     public <COLLECTION_CLASS extends Collection<OBJECT_CLASS>, OBJECT_CLASS extends IModel> void addAll(final COLLECTION_CLASS list){
-        synchronized (mModels){
-            mModels.addAll(list);
-
-            if(mModels.size()>sMODEL_SAVE_SIZE){
-                interrupt();
+        final BatchSaveJournal journal = sJournal;
+        long bytes = 0;
+        if (journal != null) {
+            synchronized (journal) {
+                for (OBJECT_CLASS model : list) {
+                    journal.append(model);
+                    mHandoff.offer(model);
+                    bytes += estimateSize(model);
+                }
+            }
+            journal.sync();
+        } else {
+            for (OBJECT_CLASS model : list) {
+                mHandoff.offer(model);
+                bytes += estimateSize(model);
             }
         }
+        onAdded(list.size(), bytes);
     }
 
+    /**
+     * Removes the pending model with the same identifier as the one passed, unless its batch is already being saved
+     * @param IModel
+     */
     public void remove(final IModel IModel){
-        synchronized (mModels){
-            mModels.remove(IModel);
-        }
+        mHandoff.offer(new Removal(IModel));
     }
 
     public void removeAll(final Collection collection){
-        synchronized (mModels){
-            mModels.removeAll(collection);
+        for (Object model : collection) {
+            if (model instanceof IModel) {
+                mHandoff.offer(new Removal((IModel) model));
+            }
         }
     }
 
+    /**
+     * Returns the batch sizes, flush latency, save time and number of models added per flush of this queue
+     * @return
+     */
+    public QueueMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Saves the pending models now instead of waiting for the policy
+     */
+    public void flush() {
+        mFlush = true;
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * Stops the queue after saving the pending models
+     */
     public void quit() {
         mQuit = true;
+        LockSupport.unpark(this);
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the key the model is pending under. Models whose auto increment key is not assigned yet all share an
+     * identifier, so they are keyed by instance instead.
+     * @param model
+     * @return
+     */
+    static Object getKey(IModel model) {
+        if (SQLiteUtils.hasUnassignedAutoIncrementKey(model, Cache.getTableInfo(model.getClass()))) {
+            return new InstanceKey(model);
+        }
+        return Cache.getIdentifier(model);
+    }
+
+    /**
+     * Applies the handed off adds and removals to {@link #mModels}. Only called by this thread.
+     * @param journal - records the removals, may be null
+     */
+    private void drainHandoff(BatchSaveJournal journal) {
+        int count = 0;
+        long bytes = 0;
+        Object item;
+        while ((item = mHandoff.poll()) != null) {
+            if (item instanceof Removal) {
+                final IModel model = ((Removal) item).mModel;
+                if (mModels.remove(getKey(model)) != null && journal != null) {
+                    journal.remove(model);
+                }
+            } else {
+                final IModel model = (IModel) item;
+                mModels.put(getKey(model), model);
+                count++;
+                bytes += estimateSize(model);
+            }
+        }
+
+        mPendingCount.addAndGet(-count);
+        mPendingBytes.addAndGet(-bytes);
+        mFirstAddTime.set(mPendingCount.get() > 0 ? SystemClock.uptimeMillis() : 0);
+    }
+
+    private void onAdded(int count, long bytes) {
+        final long now = SystemClock.uptimeMillis();
+        mLastAddTime = now;
+        final int pendingCount = mPendingCount.addAndGet(count);
+        final long pendingBytes = mPendingBytes.addAndGet(bytes);
+
+        final BatchSavePolicy policy = sPolicy;
+        if (mFirstAddTime.compareAndSet(0, now) || pendingCount >= mBatchSize
+                || (policy.getMaxMemory() > 0 && pendingBytes >= policy.getMaxMemory())) {
+            // wake the thread to save, or to start timing the latency of the first model
+            LockSupport.unpark(this);
+        }
+    }
+
+    private boolean isFilled(BatchSavePolicy policy) {
+        return mPendingCount.get() >= mBatchSize || (policy.getMaxMemory() > 0 && mPendingBytes.get() >= policy.getMaxMemory());
+    }
+
+    /**
+     * @param policy
+     * @param now
+     * @return the time to wait in ms before the next flush, {@link Long#MAX_VALUE} while the queue is empty, 0 to flush now
+     */
+    private long getWaitTime(BatchSavePolicy policy, long now) {
+        final long firstAddTime = mFirstAddTime.get();
+        if (mQuit || mFlush) {
+            return 0;
+        } else if (firstAddTime == 0) {
+            return mHandoff.isEmpty() ? Long.MAX_VALUE : 0;
+        } else if (isFilled(policy)) {
+            return 0;
+        }
+
+        long waitTime = firstAddTime + policy.getMaxLatency() - now;
+        if (policy.isAdaptive()) {
+            waitTime = Math.min(waitTime, mLastAddTime + policy.getIdleTimeout() - now);
+        }
+        return Math.max(waitTime, 0);
+    }
+
+    private static long estimateSize(IModel model) {
+        return sMODEL_BYTES + sCOLUMN_BYTES * Cache.getTableInfo(model.getClass()).getColumnBinders().length;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // INNER CLASSES
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Matches only the same model instance, regardless of how the model implements equals
+     */
+    private static final class InstanceKey {
+
+        private final IModel mModel;
+
+        InstanceKey(IModel model) {
+            mModel = model;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof InstanceKey && ((InstanceKey) o).mModel == mModel;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(mModel);
+        }
+    }
+
+    /**
+     * Hands off the removal of a pending model
+     */
+    private static final class Removal {
+
+        private final IModel mModel;
+
+        Removal(IModel model) {
+            mModel = model;
+        }
     }
 }
@@ -0,0 +1,30 @@
+package com.activeandroid.runtime;
+
+/**
+ * Description: A {@link com.activeandroid.runtime.DBRequest} that produces a result, which completes the
+ * {@link com.activeandroid.runtime.DBRequestFuture} of every submission merged into it.
+ * @param <RESULT> - the result of the request
+ */
+public abstract class DBFetchRequest<RESULT> extends DBRequest {
+
+    public DBFetchRequest(DBRequestInfo dbRequestInfo) {
+        super(dbRequestInfo);
+    }
+
+    /**
+     * Runs on the queue's thread and returns the result
+     * @return
+     */
+    public abstract RESULT fetch();
+
+    @Override
+    public final void run() {
+        setResult(fetch());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public DBRequestFuture<RESULT> getFuture() {
+        return (DBRequestFuture<RESULT>) super.getFuture();
+    }
+}
@@ -1,6 +1,7 @@
 package com.activeandroid.runtime;
 
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by andrewgrosner
@@ -44,6 +45,26 @@ public abstract class DBRequest implements Comparable<DBRequest> {
 
     private DBRequestInfo mInfo;
 
+    /**
+     * Scheduling state, guarded by the {@link com.activeandroid.runtime.DBRequestScheduler} the request waits in
+     */
+    private boolean mScheduled;
+
+    private long mSequence;
+
+    private long mScheduledTime;
+
+    private long mScheduledNanos;
+
+    private final DBRequestFuture<Object> mFuture = new DBRequestFuture<Object>();
+
+    /**
+     * Futures of identical requests merged into this one, guarded the same way as the scheduling state
+     */
+    private List<DBRequestFuture<Object>> mMergedFutures;
+
+    private Object mResult;
+
     /**
      * Constructs this class using the specified DBRequest info
      * @param dbRequestInfo
@@ -59,12 +80,173 @@ public abstract class DBRequest implements Comparable<DBRequest> {
         mInfo = DBRequestInfo.create();
     }
 
+    /**
+     * Orders by priority, then by the order requests were scheduled in
+     */
     @Override
     public int compareTo(DBRequest another) {
-        return another.mInfo.getPriority() - mInfo.getPriority();
+        final int priority = another.mInfo.getPriority() - mInfo.getPriority();
+        if (priority != 0) {
+            return priority;
+        }
+        return mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1);
     }
 
     public String getName() {
         return mInfo.getName();
     }
+
+    /**
+     * Returns the key identical requests share, null if it never merges
+     * @return
+     */
+    public String getKey() {
+        return mInfo.getKey();
+    }
+
+    /**
+     * Returns the handle of this request, the same one {@link com.activeandroid.runtime.DBRequestQueue#add(DBRequest)} returns
+     * @return
+     */
+    public DBRequestFuture<?> getFuture() {
+        return mFuture;
+    }
+
+    public int getPriority() {
+        return mInfo.getPriority();
+    }
+
+    /**
+     * Returns true if the request only reads from the DB
+     * @return
+     */
+    public boolean isRead() {
+        return mInfo.isRead();
+    }
+
+    boolean isScheduled() {
+        return mScheduled;
+    }
+
+    void onScheduled(long sequence, long scheduledTime) {
+        mScheduled = true;
+        mSequence = sequence;
+        mScheduledTime = scheduledTime;
+        mScheduledNanos = System.nanoTime();
+    }
+
+    void onUnscheduled() {
+        mScheduled = false;
+    }
+
+    long getSequence() {
+        return mSequence;
+    }
+
+    long getScheduledTime() {
+        return mScheduledTime;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} the request was last scheduled at
+     * @return
+     */
+    long getScheduledNanos() {
+        return mScheduledNanos;
+    }
+
+    /**
+     * Returns the uptime the request should run by, {@link Long#MAX_VALUE} if it has no deadline
+     * @return
+     */
+    long getDeadlineTime() {
+        final long deadline = mInfo.getDeadline();
+        return deadline > 0 ? mScheduledTime + deadline : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns true if the handles of this request and of all requests merged into it are cancelled
+     * @return
+     */
+    boolean isCancelled() {
+        if (!mFuture.isCancelled()) {
+            return false;
+        }
+        if (mMergedFutures != null) {
+            for (DBRequestFuture<Object> future : mMergedFutures) {
+                if (!future.isCancelled()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merges an identical request into this one, so that it completes when this request runs
+     * @param request
+     */
+    void merge(DBRequest request) {
+        if (mMergedFutures == null) {
+            mMergedFutures = new ArrayList<DBRequestFuture<Object>>();
+        }
+        mMergedFutures.add(request.mFuture);
+        if (request.mMergedFutures != null) {
+            mMergedFutures.addAll(request.mMergedFutures);
+        }
+    }
+
+    void setResult(Object result) {
+        mResult = result;
+    }
+
+    /**
+     * Runs the request and completes its handles, failing them if it throws
+     */
+    void execute() {
+        try {
+            run();
+        } catch (RuntimeException e) {
+            onFailed(e);
+            throw e;
+        } catch (Error e) {
+            onFailed(e);
+            throw e;
+        }
+
+        final Object result = mResult;
+        mResult = null;
+        final List<DBRequestFuture<Object>> mergedFutures = mMergedFutures;
+        mMergedFutures = null;
+        mFuture.set(result);
+        if (mergedFutures != null) {
+            for (DBRequestFuture<Object> future : mergedFutures) {
+                future.set(result);
+            }
+        }
+    }
+
+    /**
+     * Cancels the handles of a request removed from its queue before it ran
+     */
+    void onCancelled() {
+        mFuture.cancel();
+        if (mMergedFutures != null) {
+            for (DBRequestFuture<Object> future : mMergedFutures) {
+                future.cancel();
+            }
+            mMergedFutures = null;
+        }
+    }
+
+    private void onFailed(Throwable error) {
+        mResult = null;
+        mFuture.setError(error);
+        if (mMergedFutures != null) {
+            for (DBRequestFuture<Object> future : mMergedFutures) {
+                future.setError(error);
+            }
+            mMergedFutures = null;
+        }
+    }
 }
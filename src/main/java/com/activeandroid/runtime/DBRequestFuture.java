@@ -0,0 +1,160 @@
+package com.activeandroid.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Description: The handle returned when a {@link com.activeandroid.runtime.DBRequest} is added to a
+ * {@link com.activeandroid.runtime.DBRequestQueue}. It can be cancelled, awaited with a timeout and listened to.
+ * When the request was merged into an identical queued request, this handle completes with the result of that one.
+ * @param <RESULT> - the result of the request, null for requests that do not fetch
+ */
+public class DBRequestFuture<RESULT> implements Future<RESULT> {
+
+    private boolean mDone;
+
+    private boolean mCompleted;
+
+    private boolean mCancelled;
+
+    private RESULT mResult;
+
+    private Throwable mError;
+
+    private List<DBRequestListener<RESULT>> mListeners;
+
+    /**
+     * Cancels the request. A request merged from several submissions only stops running once all of their handles are cancelled.
+     * Listeners of a cancelled handle are not called. Like {@link android.os.AsyncTask#cancel(boolean)}, a handle cancelled after its
+     * request ran still reports {@link #isCancelled()}, so results waiting to be posted to the main thread can be dropped.
+     * @param mayInterruptIfRunning - ignored, a running request is never interrupted
+     * @return false if the request already finished
+     */
+    @Override
+    public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+        mCancelled = true;
+        if (mDone) {
+            return false;
+        }
+        mDone = true;
+        mListeners = null;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Cancels the request
+     * @return false if the request already finished
+     */
+    public boolean cancel() {
+        return cancel(false);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mDone;
+    }
+
+    @Override
+    public synchronized RESULT get() throws InterruptedException, ExecutionException {
+        while (!mDone) {
+            wait();
+        }
+        return getResult();
+    }
+
+    @Override
+    public synchronized RESULT get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        final long end = System.nanoTime() + unit.toNanos(timeout);
+        long remaining = unit.toNanos(timeout);
+        while (!mDone) {
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = end - System.nanoTime();
+        }
+        return getResult();
+    }
+
+    /**
+     * Adds a listener called when the request finishes, or right away if it already did
+     * @param listener
+     * @return this
+     */
+    public DBRequestFuture<RESULT> addListener(DBRequestListener<RESULT> listener) {
+        final RESULT result;
+        synchronized (this) {
+            if (!mDone) {
+                if (mListeners == null) {
+                    mListeners = new ArrayList<DBRequestListener<RESULT>>();
+                }
+                mListeners.add(listener);
+                return this;
+            } else if (mCancelled || mError != null) {
+                return this;
+            }
+            result = mResult;
+        }
+        listener.onRequestFinished(result);
+        return this;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PACKAGE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    void set(RESULT result) {
+        final List<DBRequestListener<RESULT>> listeners;
+        synchronized (this) {
+            if (mDone) {
+                return;
+            }
+            mResult = result;
+            mCompleted = true;
+            mDone = true;
+            listeners = mListeners;
+            mListeners = null;
+            notifyAll();
+        }
+
+        if (listeners != null) {
+            for (DBRequestListener<RESULT> listener : listeners) {
+                listener.onRequestFinished(result);
+            }
+        }
+    }
+
+    synchronized void setError(Throwable error) {
+        if (mDone) {
+            return;
+        }
+        mError = error;
+        mDone = true;
+        mListeners = null;
+        notifyAll();
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private RESULT getResult() throws ExecutionException {
+        if (mCompleted) {
+            return mResult;
+        } else if (mError != null) {
+            throw new ExecutionException(mError);
+        }
+        throw new CancellationException();
+    }
+}
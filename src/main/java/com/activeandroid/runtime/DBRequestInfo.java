@@ -14,6 +14,12 @@ public class DBRequestInfo {
 
     private int priority;
 
+    private boolean read;
+
+    private long deadline;
+
+    private String key;
+
     private DBRequestInfo(){
     }
 
@@ -30,6 +36,19 @@ public class DBRequestInfo {
         return requestInfo;
     }
 
+    /**
+     * Creates with a name and priority
+     * @param name
+     * @param priority
+     * @param read - true if the request only reads, so it can run in parallel on the read lane of a {@link com.activeandroid.runtime.DBRequestQueue}
+     * @return
+     */
+    public static DBRequestInfo create(String name, int priority, boolean read){
+        DBRequestInfo requestInfo = create(name, priority);
+        requestInfo.read = read;
+        return requestInfo;
+    }
+
     /**
      * Creates with a name and default {@link com.activeandroid.runtime.DBRequest#PRIORITY_NORMAL}
      * @param name
@@ -67,7 +86,8 @@ public class DBRequestInfo {
     }
 
     /**
-     * Returns a prefilled, fetch request
+     * Returns a prefilled, fetch request. It runs on the write lane, so it may write; use {@link #createReadFetch()}
+     * for a fetch that only reads.
      * @return
      */
     public static DBRequestInfo createFetch(){
@@ -77,6 +97,17 @@ public class DBRequestInfo {
         return requestInfo;
     }
 
+    /**
+     * Returns a prefilled, fetch request that only reads, so it can run in parallel on the read lane of a
+     * {@link com.activeandroid.runtime.DBRequestQueue}
+     * @return
+     */
+    public static DBRequestInfo createReadFetch(){
+        DBRequestInfo requestInfo = createFetch();
+        requestInfo.read = true;
+        return requestInfo;
+    }
+
 
 
     public String getName() {
@@ -86,4 +117,51 @@ public class DBRequestInfo {
     public int getPriority() {
         return priority;
     }
+
+    /**
+     * Sets the longest time in ms the request should wait in a {@link com.activeandroid.runtime.DBRequestQueue}.
+     * Once it has waited that long it runs ahead of requests without a passed deadline, regardless of priority.
+     * @param deadline - the max wait in ms, 0 for none
+     * @return this
+     */
+    public DBRequestInfo setDeadline(long deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    /**
+     * Returns the max wait in ms, 0 if the request has no deadline
+     * @return
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Sets the key identical requests share. While a request with the key waits in a {@link com.activeandroid.runtime.DBRequestQueue},
+     * requests added with the same key merge into it: it runs once and completes the {@link com.activeandroid.runtime.DBRequestFuture} of each.
+     * Only give a key to requests whose work is the same, such as fetching the same rows.
+     * @param key - the key, null to never merge
+     * @return this
+     */
+    public DBRequestInfo setKey(String key) {
+        this.key = key;
+        return this;
+    }
+
+    /**
+     * Returns the key identical requests share, null if the request never merges
+     * @return
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns true if the request only reads from the DB. Requests write by default.
+     * @return
+     */
+    public boolean isRead() {
+        return read;
+    }
 }
@@ -0,0 +1,15 @@
+package com.activeandroid.runtime;
+
+/**
+ * Description: Called on the thread that ran a {@link com.activeandroid.runtime.DBRequest} once it finished successfully,
+ * unless its {@link com.activeandroid.runtime.DBRequestFuture} was cancelled first.
+ * @param <RESULT> - the result of the request, null for requests that do not fetch
+ */
+public interface DBRequestListener<RESULT> {
+
+    /**
+     * The request finished
+     * @param result
+     */
+    public void onRequestFinished(RESULT result);
+}
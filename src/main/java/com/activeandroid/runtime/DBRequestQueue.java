@@ -5,75 +5,109 @@ import android.os.Process;
 
 import com.activeandroid.util.AALog;
 
-import java.util.Iterator;
-import java.util.concurrent.PriorityBlockingQueue;
-
 /**
  * Created by andrewgrosner
  * Date: 12/11/13
  * Contributors:
- * Description: will handle concurrent requests to the DB based on priority
+ * Description: will handle concurrent requests to the DB based on priority, in the order decided by a
+ * {@link com.activeandroid.runtime.DBRequestScheduler}. With read workers, requests whose {@link com.activeandroid.runtime.DBRequestInfo#isRead()}
+ * is true run in parallel on a read lane of that many threads, while all other requests stay serialized on this thread.
  */
 public class DBRequestQueue extends Thread{
 
+    private static volatile int sDefaultReadWorkers = 0;
+
+    /**
+     * Sets the number of read workers of queues created from now on, 0 to run reads on the write lane
+     * @param readWorkers
+     */
+    public static void setDefaultReadWorkers(int readWorkers){
+        sDefaultReadWorkers = readWorkers;
+    }
+
     /**
      * Queue of requests
      */
-    private final PriorityBlockingQueue<DBRequest> mQueue;
+    private final DBRequestScheduler mQueue;
+
+    /**
+     * Queue of read requests, the same as {@link #mQueue} without read workers
+     */
+    private final DBRequestScheduler mReadQueue;
+
+    private final ReadWorker[] mReadWorkers;
 
-    private boolean mQuit = false;
+    private final QueueMetrics mMetrics;
+
+    private volatile boolean mQuit = false;
 
     /**
      * Creates a queue with the specified name to ID it.
      * @param name
      */
     public DBRequestQueue(String name) {
+        this(name, sDefaultReadWorkers);
+    }
+
+    /**
+     * Creates a queue with the specified name and a read lane
+     * @param name
+     * @param readWorkers - the number of threads running read requests, 0 to run them on the write lane
+     */
+    public DBRequestQueue(String name, int readWorkers) {
         super(name);
 
-        mQueue = new PriorityBlockingQueue<DBRequest>();
+        mMetrics = new QueueMetrics(name);
+        mQueue = new DBRequestScheduler();
+        mReadQueue = readWorkers > 0 ? new DBRequestScheduler() : mQueue;
+        mReadWorkers = new ReadWorker[Math.max(readWorkers, 0)];
+        for (int i = 0; i < mReadWorkers.length; i++) {
+            mReadWorkers[i] = new ReadWorker(name + " read " + i);
+        }
     }
 
     @Override
     public void run() {
         Looper.prepare();
         android.os.Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-        DBRequest runnable;
-        while (true){
-            try{
-                runnable = mQueue.take();
-            } catch (InterruptedException e){
-                if(mQuit){
-                    synchronized (mQueue) {
-                        mQueue.clear();
-                    }
-                    return;
-                }
-                continue;
-            }
-
-            try{
-                AALog.d("DBRequestQueue + " + getName(), "Size is: " + mQueue.size() + " executing:" + runnable.getName());
-                runnable.run();
-            } catch (Throwable t){
-                throw new RuntimeException(t);
-            }
+        for (ReadWorker readWorker : mReadWorkers) {
+            readWorker.start();
         }
+        process(mQueue);
+    }
 
+    /**
+     * Adds the request. If a waiting request has the same {@link com.activeandroid.runtime.DBRequestInfo#getKey()},
+     * the request merges into it and the returned handle completes when that one runs.
+     * @param runnable
+     * @return the handle to cancel, wait for or listen to the request with
+     */
+    public DBRequestFuture<?> add(DBRequest runnable){
+        final DBRequestScheduler queue = runnable.isRead() ? mReadQueue : mQueue;
+        queue.add(runnable);
+        mMetrics.recordDepth(runnable.getPriority(), queue.size());
+        return runnable.getFuture();
     }
 
-    public void add(DBRequest runnable){
-        if (!mQueue.contains(runnable)) {
-            mQueue.add(runnable);
-        }
+    /**
+     * Adds the request. If a waiting request has the same {@link com.activeandroid.runtime.DBRequestInfo#getKey()},
+     * the request merges into it and the returned handle completes with the result of that one.
+     * @param request
+     * @return the handle to cancel, wait for or listen to the request with
+     */
+    public <RESULT> DBRequestFuture<RESULT> add(DBFetchRequest<RESULT> request){
+        add((DBRequest) request);
+        return request.getFuture();
     }
 
     /**
-     * Cancels the specified request.
+     * Cancels the specified request if it is waiting.
      * @param runnable
      */
     public void cancel(DBRequest runnable){
-        if (mQueue.contains(runnable)) {
-            mQueue.remove(runnable);
+        if (!mQueue.cancel(runnable) && !mReadQueue.cancel(runnable)) {
+            // merged into an identical request, which keeps running for the others, or no longer waiting
+            runnable.getFuture().cancel(false);
         }
     }
 
@@ -82,22 +116,87 @@ public class DBRequestQueue extends Thread{
      * @param tag
      */
     public void cancel(String tag){
-        synchronized (mQueue){
-            Iterator<DBRequest> it = mQueue.iterator();
-            while(it.hasNext()){
-                DBRequest next = it.next();
-                if(next.getName().equals(tag)){
-                    it.remove();
-                }
-            }
+        mQueue.cancel(tag);
+        if (mReadQueue != mQueue) {
+            mReadQueue.cancel(tag);
         }
     }
 
+    /**
+     * Returns the wait time, execution time and depth of the requests of this queue
+     * @return
+     */
+    public QueueMetrics getMetrics() {
+        return mMetrics;
+    }
+
     /**
      * Quits this process
      */
     public void quit(){
         mQuit = true;
         interrupt();
+        for (ReadWorker readWorker : mReadWorkers) {
+            readWorker.interrupt();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Runs the requests of the queue on the calling thread until {@link #quit()}
+     * @param queue
+     */
+    private void process(DBRequestScheduler queue) {
+        DBRequest runnable;
+        while (true){
+            try{
+                runnable = queue.take();
+            } catch (InterruptedException e){
+                if(mQuit){
+                    queue.clear();
+                    return;
+                }
+                continue;
+            }
+
+            if (runnable.isCancelled()) {
+                continue;
+            }
+
+            try{
+                if (AALog.isEnabled()) {
+                    AALog.d("DBRequestQueue + " + Thread.currentThread().getName(), "Size is: " + queue.size() + " executing:" + runnable.getName());
+                }
+                final long start = System.nanoTime();
+                runnable.execute();
+                final long end = System.nanoTime();
+                mMetrics.recordRequest(runnable.getPriority(), (start - runnable.getScheduledNanos()) / 1000, (end - start) / 1000);
+            } catch (Throwable t){
+                throw new RuntimeException(t);
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // INNER CLASSES
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Runs requests from the read lane
+     */
+    private class ReadWorker extends Thread {
+
+        ReadWorker(String name) {
+            super(name);
+        }
+
+        @Override
+        public void run() {
+            android.os.Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            process(mReadQueue);
+        }
     }
 }
@@ -0,0 +1,273 @@
+package com.activeandroid.runtime;
+
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Description: The blocking queue a {@link com.activeandroid.runtime.DBRequestQueue} takes its requests from.
+ * Requests of the same priority run in the order they were added. A waiting request gains one priority level
+ * for every aging interval it waits, so a steady stream of high priority requests cannot starve low priority ones.
+ * A request whose {@link com.activeandroid.runtime.DBRequestInfo#getDeadline()} has passed runs before all others,
+ * earliest deadline first. A request added with the {@link com.activeandroid.runtime.DBRequestInfo#getKey()} of a waiting
+ * request merges into it instead of waiting on its own.
+ */
+public class DBRequestScheduler {
+
+    /**
+     * The default time in ms a request waits before it gains a priority level
+     */
+    public static final long DEFAULT_AGING_INTERVAL = 1000;
+
+    private final long mAgingInterval;
+
+    private final ReentrantLock mLock = new ReentrantLock();
+
+    private final Condition mNotEmpty = mLock.newCondition();
+
+    /**
+     * Requests in the order they were added, by priority
+     */
+    private final TreeMap<Integer, ArrayDeque<DBRequest>> mLevels = new TreeMap<Integer, ArrayDeque<DBRequest>>();
+
+    /**
+     * Requests that have a deadline, earliest first
+     */
+    private final PriorityQueue<DBRequest> mDeadlines = new PriorityQueue<DBRequest>(11, new Comparator<DBRequest>() {
+        @Override
+        public int compare(DBRequest lhs, DBRequest rhs) {
+            final long lhsDeadline = lhs.getDeadlineTime();
+            final long rhsDeadline = rhs.getDeadlineTime();
+            return lhsDeadline < rhsDeadline ? -1 : (lhsDeadline == rhsDeadline ? 0 : 1);
+        }
+    });
+
+    /**
+     * Waiting requests that have a key, by key
+     */
+    private final HashMap<String, DBRequest> mKeyed = new HashMap<String, DBRequest>();
+
+    private long mSequence;
+
+    private int mSize;
+
+    public DBRequestScheduler() {
+        this(DEFAULT_AGING_INTERVAL);
+    }
+
+    /**
+     * @param agingInterval - the time in ms a request waits before it gains a priority level
+     */
+    public DBRequestScheduler(long agingInterval) {
+        mAgingInterval = Math.max(agingInterval, 1);
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds the request unless it is already waiting, or merges it into a waiting request with the same key
+     * @param request
+     * @return true if the request was added on its own
+     */
+    public boolean add(DBRequest request) {
+        mLock.lock();
+        try {
+            if (request.isScheduled()) {
+                return false;
+            }
+
+            final String key = request.getKey();
+            if (key != null) {
+                final DBRequest identical = mKeyed.get(key);
+                if (identical != null) {
+                    identical.merge(request);
+                    return false;
+                }
+                mKeyed.put(key, request);
+            }
+            request.onScheduled(mSequence++, SystemClock.uptimeMillis());
+
+            ArrayDeque<DBRequest> level = mLevels.get(request.getPriority());
+            if (level == null) {
+                level = new ArrayDeque<DBRequest>();
+                mLevels.put(request.getPriority(), level);
+            }
+            level.offer(request);
+            if (request.getDeadlineTime() != Long.MAX_VALUE) {
+                mDeadlines.offer(request);
+            }
+            mSize++;
+            mNotEmpty.signal();
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for and removes the next request to run
+     * @return
+     * @throws InterruptedException
+     */
+    public DBRequest take() throws InterruptedException {
+        mLock.lockInterruptibly();
+        try {
+            while (mSize == 0) {
+                mNotEmpty.await();
+            }
+
+            final DBRequest request = next(SystemClock.uptimeMillis());
+            remove(request);
+            return request;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the {@link com.activeandroid.runtime.DBRequestFuture} of the request if it is waiting. The request is removed
+     * once the handles of all requests merged into it are cancelled too, otherwise it keeps waiting to run for them.
+     * @param request
+     * @return true if it was waiting
+     */
+    public boolean cancel(DBRequest request) {
+        mLock.lock();
+        try {
+            if (!request.isScheduled()) {
+                return false;
+            }
+            request.getFuture().cancel(false);
+            if (request.isCancelled()) {
+                remove(request);
+                request.onCancelled();
+            }
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Removes and cancels all waiting requests with the name
+     * @param name
+     */
+    public void cancel(String name) {
+        mLock.lock();
+        try {
+            final Iterator<ArrayDeque<DBRequest>> levels = mLevels.values().iterator();
+            while (levels.hasNext()) {
+                final ArrayDeque<DBRequest> level = levels.next();
+                final Iterator<DBRequest> requests = level.iterator();
+                while (requests.hasNext()) {
+                    final DBRequest request = requests.next();
+                    if (request.getName().equals(name)) {
+                        requests.remove();
+                        mDeadlines.remove(request);
+                        removeKey(request);
+                        request.onUnscheduled();
+                        request.onCancelled();
+                        mSize--;
+                    }
+                }
+                if (level.isEmpty()) {
+                    levels.remove();
+                }
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Removes and cancels all waiting requests
+     */
+    public void clear() {
+        mLock.lock();
+        try {
+            for (ArrayDeque<DBRequest> level : mLevels.values()) {
+                for (DBRequest request : level) {
+                    request.onUnscheduled();
+                    request.onCancelled();
+                }
+            }
+            mLevels.clear();
+            mDeadlines.clear();
+            mKeyed.clear();
+            mSize = 0;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    public int size() {
+        mLock.lock();
+        try {
+            return mSize;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Picks the request with the earliest passed deadline, otherwise the oldest request of the highest aged priority
+     */
+    private DBRequest next(long now) {
+        final DBRequest deadline = mDeadlines.peek();
+        if (deadline != null && deadline.getDeadlineTime() <= now) {
+            return deadline;
+        }
+
+        DBRequest next = null;
+        long nextPriority = Long.MIN_VALUE;
+        for (Map.Entry<Integer, ArrayDeque<DBRequest>> entry : mLevels.entrySet()) {
+            // the head is the oldest request of its level, so it is also the most aged
+            final DBRequest head = entry.getValue().peek();
+            final long priority = entry.getKey() + (now - head.getScheduledTime()) / mAgingInterval;
+            if (priority > nextPriority || (priority == nextPriority && head.getSequence() < next.getSequence())) {
+                next = head;
+                nextPriority = priority;
+            }
+        }
+        return next;
+    }
+
+    private void remove(DBRequest request) {
+        final ArrayDeque<DBRequest> level = mLevels.get(request.getPriority());
+        if (level.peek() == request) {
+            level.poll();
+        } else {
+            level.remove(request);
+        }
+        if (level.isEmpty()) {
+            mLevels.remove(request.getPriority());
+        }
+
+        if (request.getDeadlineTime() != Long.MAX_VALUE) {
+            mDeadlines.remove(request);
+        }
+        removeKey(request);
+        request.onUnscheduled();
+        mSize--;
+    }
+
+    private void removeKey(DBRequest request) {
+        final String key = request.getKey();
+        if (key != null && mKeyed.get(key) == request) {
+            mKeyed.remove(key);
+        }
+    }
+}
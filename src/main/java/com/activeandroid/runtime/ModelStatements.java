@@ -0,0 +1,385 @@
+package com.activeandroid.runtime;
+
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+
+import com.activeandroid.Cache;
+import com.activeandroid.ColumnBinder;
+import com.activeandroid.IModel;
+import com.activeandroid.IModelAdapter;
+import com.activeandroid.TableInfo;
+import com.activeandroid.annotation.Table;
+import com.activeandroid.exception.PrimaryKeyCannotBeNullException;
+import com.activeandroid.util.AALog;
+import com.activeandroid.util.SQLiteUtils;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+
+/**
+ * Description: Holds the compiled insert, upsert, update, delete and exists statements of one table so saving
+ * a model binds its values to an already parsed statement instead of building {@link android.content.ContentValues}
+ * and having SQLite re-parse the SQL every time. Statements are compiled on first use and closed with the database
+ * in {@link com.activeandroid.Cache#closeDatabase()}.
+ */
+public class ModelStatements {
+
+    private static final HashMap<TableInfo, ModelStatements> sStatements = new HashMap<TableInfo, ModelStatements>();
+
+    /**
+     * Returns the shared statements of the table
+     * @param tableInfo
+     * @return
+     */
+    public static ModelStatements getStatements(TableInfo tableInfo) {
+        synchronized (sStatements) {
+            ModelStatements statements = sStatements.get(tableInfo);
+            if (statements == null) {
+                statements = new ModelStatements(tableInfo);
+                sStatements.put(tableInfo, statements);
+            }
+            return statements;
+        }
+    }
+
+    /**
+     * Closes all compiled statements. Must be called before the database they were compiled against is closed.
+     */
+    public static void clear() {
+        synchronized (sStatements) {
+            for (ModelStatements statements : sStatements.values()) {
+                statements.close();
+            }
+            sStatements.clear();
+        }
+    }
+
+    private final TableInfo mTableInfo;
+
+    private final String[] mColumnNames;
+
+    /**
+     * The 1-based index of the {@link com.activeandroid.annotation.PrimaryKey.Type#AUTO_INCREMENT} column, 0 if there is none
+     */
+    private final int mAutoIncrementIndex;
+
+    private final String mWhere;
+
+    private SQLiteStatement mInsertStatement;
+
+    private SQLiteStatement mInsertOrReplaceStatement;
+
+    private SQLiteStatement mInsertOrIgnoreStatement;
+
+    private SQLiteStatement mUpdateStatement;
+
+    private SQLiteStatement mDeleteStatement;
+
+    private SQLiteStatement mExistsStatement;
+
+    private ModelStatements(TableInfo tableInfo) {
+        mTableInfo = tableInfo;
+
+        final IModelAdapter modelAdapter = tableInfo.getModelAdapter();
+        final Field autoIncrementKey = tableInfo.getAutoIncrementKey();
+        int autoIncrementIndex = 0;
+        if (modelAdapter != null) {
+            mColumnNames = modelAdapter.getColumnNames();
+            if (autoIncrementKey != null) {
+                final String autoIncrementName = tableInfo.getColumnName(autoIncrementKey);
+                for (int i = 0; i < mColumnNames.length; i++) {
+                    if (mColumnNames[i].equals(autoIncrementName)) {
+                        autoIncrementIndex = i + 1;
+                    }
+                }
+            }
+        } else {
+            final ColumnBinder[] binders = tableInfo.getColumnBinders();
+            mColumnNames = new String[binders.length];
+            for (int i = 0; i < binders.length; i++) {
+                mColumnNames[i] = binders[i].getBindName();
+                if (binders[i].getField().equals(autoIncrementKey)) {
+                    autoIncrementIndex = i + 1;
+                }
+            }
+        }
+        mAutoIncrementIndex = autoIncrementIndex;
+
+        final ColumnBinder[] primaryKeys = tableInfo.getPrimaryKeyBinders();
+        final StringBuilder where = new StringBuilder();
+        for (int i = 0; i < primaryKeys.length; i++) {
+            if (i > 0) {
+                where.append(" AND ");
+            }
+            where.append(primaryKeys[i].getColumnName()).append("=?");
+        }
+        mWhere = where.toString();
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Saves the model as its table's {@link com.activeandroid.annotation.Table#saveMode()} specifies
+     * @param model
+     * @return the row id of an inserted row, or the number of rows updated, -1 if the insert failed
+     */
+    public long save(IModel model) {
+        return save(model, mTableInfo.getSaveMode());
+    }
+
+    /**
+     * Saves the model and assigns the auto increment key of an inserted row
+     * @param model
+     * @param saveMode - how to write the row
+     * @return the row id of an inserted row, or the number of rows updated, -1 if the insert failed or an
+     * {@link com.activeandroid.annotation.Table.SaveMode#UPSERT} wrote no row
+     */
+    public synchronized long save(IModel model, Table.SaveMode saveMode) {
+        long rowId;
+        switch (saveMode) {
+            case REPLACE:
+                rowId = insertOrReplace(model);
+                if (rowId != -1) {
+                    SQLiteUtils.setAutoIncrementKey(model, mTableInfo, rowId);
+                }
+                break;
+            case UPSERT:
+                rowId = insertOrIgnore(model);
+                if (rowId != -1) {
+                    SQLiteUtils.setAutoIncrementKey(model, mTableInfo, rowId);
+                } else {
+                    rowId = update(model);
+                    if (rowId == 0) {
+                        // the insert conflicted on a unique column or constraint other than the primary key
+                        AALog.w("Could not upsert " + mTableInfo.getTableName() + "@" + model.getId()
+                                + ", it conflicts with another row on a unique column");
+                        rowId = -1;
+                    }
+                }
+                break;
+            default:
+                if (!model.exists()) {
+                    rowId = insert(model);
+                    if (rowId != -1) {
+                        SQLiteUtils.setAutoIncrementKey(model, mTableInfo, rowId);
+                    }
+                } else {
+                    rowId = update(model);
+                }
+                break;
+        }
+        Cache.removeMissingEntity(mTableInfo, model);
+        return rowId;
+    }
+
+    /**
+     * Inserts the model. An auto increment key that is still 0 is left for SQLite to assign.
+     * @param model
+     * @return the row id of the new row, or -1 if the insert failed
+     */
+    public synchronized long insert(IModel model) {
+        if (mInsertStatement == null) {
+            mInsertStatement = compileInsert("INSERT INTO ");
+        }
+        return executeInsert(mInsertStatement, model);
+    }
+
+    /**
+     * Inserts the model, replacing any row it conflicts with
+     * @param model
+     * @return the row id of the new row, or -1 if the insert failed
+     */
+    public synchronized long insertOrReplace(IModel model) {
+        if (mInsertOrReplaceStatement == null) {
+            mInsertOrReplaceStatement = compileInsert("INSERT OR REPLACE INTO ");
+        }
+        return executeInsert(mInsertOrReplaceStatement, model);
+    }
+
+    /**
+     * Inserts the model unless it conflicts with an existing row
+     * @param model
+     * @return the row id of the new row, or -1 if it was ignored
+     */
+    public synchronized long insertOrIgnore(IModel model) {
+        if (mInsertOrIgnoreStatement == null) {
+            mInsertOrIgnoreStatement = compileInsert("INSERT OR IGNORE INTO ");
+        }
+        final long rowId = executeInsert(mInsertOrIgnoreStatement, model);
+        if (rowId == -1 || Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return rowId;
+        }
+
+        // older versions return the previous last_insert_rowid() when the row is ignored
+        return DatabaseUtils.longForQuery(Cache.openDatabase(), "SELECT changes()", null) == 0 ? -1 : rowId;
+    }
+
+    /**
+     * Updates the row of the model by its primary keys
+     * @param model
+     * @return the number of rows updated
+     */
+    public synchronized int update(IModel model) {
+        if (mUpdateStatement == null) {
+            final StringBuilder sql = new StringBuilder("UPDATE ").append(mTableInfo.getTableName()).append(" SET ");
+            for (int i = 0; i < mColumnNames.length; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(mColumnNames[i]).append("=?");
+            }
+            sql.append(" WHERE ").append(mWhere);
+            mUpdateStatement = compile(sql.toString());
+        }
+
+        mUpdateStatement.clearBindings();
+        bindColumns(mUpdateStatement, model);
+        bindPrimaryKeys(mUpdateStatement, model, mColumnNames.length + 1);
+        return executeUpdateDelete(mUpdateStatement);
+    }
+
+    /**
+     * Deletes the row of the model by its primary keys
+     * @param model
+     * @return the number of rows deleted
+     */
+    public synchronized int delete(IModel model) {
+        if (mDeleteStatement == null) {
+            mDeleteStatement = compile("DELETE FROM " + mTableInfo.getTableName() + " WHERE " + mWhere);
+        }
+
+        mDeleteStatement.clearBindings();
+        bindPrimaryKeys(mDeleteStatement, model, 1);
+        return executeUpdateDelete(mDeleteStatement);
+    }
+
+    /**
+     * Checks for a row with the primary keys of the model without loading it
+     * @param model
+     * @return
+     */
+    public synchronized boolean exists(IModel model) {
+        if (mExistsStatement == null) {
+            mExistsStatement = compile("SELECT EXISTS(SELECT 1 FROM " + mTableInfo.getTableName() + " WHERE " + mWhere + " LIMIT 1)");
+        }
+
+        mExistsStatement.clearBindings();
+        bindPrimaryKeys(mExistsStatement, model, 1);
+        return mExistsStatement.simpleQueryForLong() != 0;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private SQLiteStatement compileInsert(String insert) {
+        final StringBuilder sql = new StringBuilder(insert).append(mTableInfo.getTableName()).append(" (");
+        final StringBuilder values = new StringBuilder();
+        for (int i = 0; i < mColumnNames.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+                values.append(", ");
+            }
+            sql.append(mColumnNames[i]);
+            values.append("?");
+        }
+        sql.append(") VALUES (").append(values).append(")");
+        return compile(sql.toString());
+    }
+
+    private long executeInsert(SQLiteStatement statement, IModel model) {
+        statement.clearBindings();
+        bindColumns(statement, model);
+        if (mAutoIncrementIndex > 0 && SQLiteUtils.hasUnassignedAutoIncrementKey(model, mTableInfo)) {
+            statement.bindNull(mAutoIncrementIndex);
+        }
+        try {
+            return statement.executeInsert();
+        } catch (SQLException e) {
+            // like SQLiteDatabase.insert(), a failed insert is logged rather than thrown
+            AALog.e("Error inserting into " + mTableInfo.getTableName(), e);
+            return -1;
+        }
+    }
+
+    private SQLiteStatement compile(String sql) {
+        AALog.v(sql);
+        return Cache.openDatabase().compileStatement(sql);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void bindColumns(SQLiteStatement statement, IModel model) {
+        final IModelAdapter modelAdapter = mTableInfo.getModelAdapter();
+        if (modelAdapter != null) {
+            modelAdapter.bindToStatement(statement, model);
+            return;
+        }
+
+        final ColumnBinder[] binders = mTableInfo.getColumnBinders();
+        for (int i = 0; i < binders.length; i++) {
+            try {
+                binders[i].bind(model, statement, i + 1);
+            } catch (IllegalArgumentException e) {
+                AALog.e(e.getClass().getName(), e);
+            } catch (IllegalAccessException e) {
+                AALog.e(e.getClass().getName(), e);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void bindPrimaryKeys(SQLiteStatement statement, IModel model, int startIndex) {
+        final IModelAdapter modelAdapter = mTableInfo.getModelAdapter();
+        if (modelAdapter != null) {
+            modelAdapter.bindPrimaryKeys(statement, model, startIndex);
+            return;
+        }
+
+        final ColumnBinder[] primaryKeys = mTableInfo.getPrimaryKeyBinders();
+        for (int i = 0; i < primaryKeys.length; i++) {
+            final ColumnBinder binder = primaryKeys[i];
+            try {
+                if (binder.getField().get(model) == null) {
+                    throw new PrimaryKeyCannotBeNullException("The primary key: " + binder.getField().getName() + " from " + mTableInfo.getTableName() + " cannot be null.");
+                }
+                binder.bind(model, statement, startIndex + i);
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private int executeUpdateDelete(SQLiteStatement statement) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            return statement.executeUpdateDelete();
+        }
+
+        statement.execute();
+        return (int) DatabaseUtils.longForQuery(Cache.openDatabase(), "SELECT changes()", null);
+    }
+
+    private synchronized void close() {
+        close(mInsertStatement);
+        close(mInsertOrReplaceStatement);
+        close(mInsertOrIgnoreStatement);
+        close(mUpdateStatement);
+        close(mDeleteStatement);
+        close(mExistsStatement);
+        mInsertStatement = null;
+        mInsertOrReplaceStatement = null;
+        mInsertOrIgnoreStatement = null;
+        mUpdateStatement = null;
+        mDeleteStatement = null;
+        mExistsStatement = null;
+    }
+
+    private static void close(SQLiteStatement statement) {
+        if (statement != null) {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.activeandroid.runtime;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Description: A histogram of non-negative values in power of two buckets. Its counters are allocated up front,
+ * so recording never allocates and is safe from any thread.
+ */
+public class QueueHistogram {
+
+    /**
+     * Bucket 0 counts zeros, bucket i counts values up to 2^i - 1 and the last bucket everything above
+     */
+    public static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong mCount = new AtomicLong();
+
+    private final AtomicLong mSum = new AtomicLong();
+
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Returns the largest value counted by the bucket
+     * @param bucket
+     * @return
+     */
+    public static long getBucketUpperBound(int bucket) {
+        return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getSum() {
+        return mSum.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    public long getMean() {
+        final long count = mCount.get();
+        return count > 0 ? mSum.get() / count : 0;
+    }
+
+    /**
+     * Returns the number of values recorded in the bucket
+     * @param bucket
+     * @return
+     */
+    public long getBucketCount(int bucket) {
+        return mBuckets.get(bucket);
+    }
+
+    /**
+     * Returns the upper bound of the bucket that holds the percentile, capped at the max recorded value
+     * @param percentile - from 0 to 100
+     * @return
+     */
+    public long getPercentile(double percentile) {
+        final long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max((long) Math.ceil(count * percentile / 100), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= rank) {
+                return Math.min(getBucketUpperBound(i), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PACKAGE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mBuckets.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(value), BUCKET_COUNT - 1));
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+
+        long max;
+        while (value > (max = mMax.get()) && !mMax.compareAndSet(max, value)) {
+        }
+    }
+}
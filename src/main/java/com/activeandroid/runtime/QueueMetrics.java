@@ -0,0 +1,156 @@
+package com.activeandroid.runtime;
+
+/**
+ * Description: Per priority histograms of a {@link com.activeandroid.runtime.DBRequestQueue} or the
+ * {@link com.activeandroid.runtime.DBBatchSaveQueue}: the time requests wait before running, the time they run for,
+ * the depth of the queue when they are added and the size of saved batches. Priorities above {@link #MAX_PRIORITY}
+ * are counted as {@link #MAX_PRIORITY}. All times are in microseconds.
+ */
+public class QueueMetrics {
+
+    public static final int MAX_PRIORITY = 7;
+
+    private static final QueueMetricsListener[] EMPTY_LISTENERS = new QueueMetricsListener[0];
+
+    private final String mName;
+
+    private final QueueHistogram[] mWaitTimes;
+
+    private final QueueHistogram[] mExecutionTimes;
+
+    private final QueueHistogram[] mDepths;
+
+    private final QueueHistogram[] mBatchSizes;
+
+    private volatile QueueMetricsListener[] mListeners = EMPTY_LISTENERS;
+
+    /**
+     * @param name - the name of the queue measured
+     */
+    public QueueMetrics(String name) {
+        mName = name;
+        mWaitTimes = createHistograms();
+        mExecutionTimes = createHistograms();
+        mDepths = createHistograms();
+        mBatchSizes = createHistograms();
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Returns the time from being added to starting, or for batches from the first model being added to flushing
+     * @param priority
+     * @return
+     */
+    public QueueHistogram getWaitTimes(int priority) {
+        return mWaitTimes[getSlot(priority)];
+    }
+
+    /**
+     * Returns the time requests ran for, or for batches the time the save transaction took
+     * @param priority
+     * @return
+     */
+    public QueueHistogram getExecutionTimes(int priority) {
+        return mExecutionTimes[getSlot(priority)];
+    }
+
+    /**
+     * Returns the number of waiting requests when one is added, or for batches the number of models added before flushing
+     * @param priority
+     * @return
+     */
+    public QueueHistogram getDepths(int priority) {
+        return mDepths[getSlot(priority)];
+    }
+
+    /**
+     * Returns the number of models in saved batches
+     * @param priority
+     * @return
+     */
+    public QueueHistogram getBatchSizes(int priority) {
+        return mBatchSizes[getSlot(priority)];
+    }
+
+    public synchronized void addListener(QueueMetricsListener listener) {
+        final QueueMetricsListener[] listeners = new QueueMetricsListener[mListeners.length + 1];
+        System.arraycopy(mListeners, 0, listeners, 0, mListeners.length);
+        listeners[mListeners.length] = listener;
+        mListeners = listeners;
+    }
+
+    public synchronized void removeListener(QueueMetricsListener listener) {
+        for (int i = 0; i < mListeners.length; i++) {
+            if (mListeners[i] == listener) {
+                final QueueMetricsListener[] listeners = new QueueMetricsListener[mListeners.length - 1];
+                System.arraycopy(mListeners, 0, listeners, 0, i);
+                System.arraycopy(mListeners, i + 1, listeners, i, listeners.length - i);
+                mListeners = listeners;
+                return;
+            }
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i <= MAX_PRIORITY; i++) {
+            mWaitTimes[i].reset();
+            mExecutionTimes[i].reset();
+            mDepths[i].reset();
+            mBatchSizes[i].reset();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PACKAGE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    void recordDepth(int priority, int depth) {
+        mDepths[getSlot(priority)].record(depth);
+    }
+
+    void recordRequest(int priority, long waitTime, long executionTime) {
+        final int slot = getSlot(priority);
+        mWaitTimes[slot].record(waitTime);
+        mExecutionTimes[slot].record(executionTime);
+
+        final QueueMetricsListener[] listeners = mListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onRequestExecuted(this, priority, waitTime, executionTime);
+        }
+    }
+
+    void recordBatch(int priority, int batchSize, long waitTime, long executionTime) {
+        final int slot = getSlot(priority);
+        mBatchSizes[slot].record(batchSize);
+        mWaitTimes[slot].record(waitTime);
+        mExecutionTimes[slot].record(executionTime);
+
+        final QueueMetricsListener[] listeners = mListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onBatchSaved(this, priority, batchSize, waitTime, executionTime);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    private static int getSlot(int priority) {
+        return priority < 0 ? 0 : Math.min(priority, MAX_PRIORITY);
+    }
+
+    private static QueueHistogram[] createHistograms() {
+        final QueueHistogram[] histograms = new QueueHistogram[MAX_PRIORITY + 1];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new QueueHistogram();
+        }
+        return histograms;
+    }
+}
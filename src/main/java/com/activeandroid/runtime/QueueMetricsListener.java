@@ -0,0 +1,28 @@
+package com.activeandroid.runtime;
+
+/**
+ * Description: Receives every measurement a {@link com.activeandroid.runtime.QueueMetrics} records, on the thread
+ * that recorded it, for exporting to telemetry. Implementations should return quickly and not block.
+ * All times are in microseconds.
+ */
+public interface QueueMetricsListener {
+
+    /**
+     * A request of a {@link com.activeandroid.runtime.DBRequestQueue} ran
+     * @param metrics - the metrics of the queue
+     * @param priority - the priority of the request
+     * @param waitTime - the time from being added to starting
+     * @param executionTime - the time it ran for
+     */
+    public void onRequestExecuted(QueueMetrics metrics, int priority, long waitTime, long executionTime);
+
+    /**
+     * A batch of the {@link com.activeandroid.runtime.DBBatchSaveQueue} was saved
+     * @param metrics - the metrics of the queue
+     * @param priority - the priority of the request that saved the batch
+     * @param batchSize - the number of models saved
+     * @param waitTime - the time from the first model being added to the batch flushing
+     * @param executionTime - the time the save transaction took
+     */
+    public void onBatchSaved(QueueMetrics metrics, int priority, int batchSize, long waitTime, long executionTime);
+}
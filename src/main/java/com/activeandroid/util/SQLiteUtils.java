@@ -24,22 +24,30 @@ import android.os.Build;
 import android.text.TextUtils;
 
 import com.activeandroid.Cache;
+import com.activeandroid.ColumnBinder;
 import com.activeandroid.IModel;
+import com.activeandroid.IModelAdapter;
+import com.activeandroid.Model;
 import com.activeandroid.TableInfo;
 import com.activeandroid.annotation.Column;
 import com.activeandroid.annotation.ForeignKey;
-import com.activeandroid.annotation.IndexedKey;
 import com.activeandroid.annotation.PrimaryKey;
+import com.activeandroid.annotation.Table;
 import com.activeandroid.content.ContentProvider;
 import com.activeandroid.exception.PrimaryKeyCannotBeNullException;
 import com.activeandroid.query.Select;
+import com.activeandroid.runtime.ModelStatements;
 import com.activeandroid.serializer.TypeSerializer;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public final class SQLiteUtils {
 	//////////////////////////////////////////////////////////////////////////////////////
@@ -60,6 +68,20 @@ public final class SQLiteUtils {
 	// PRIVATE CONTSANTS
 	//////////////////////////////////////////////////////////////////////////////////////
 
+	private static final boolean CURSOR_TYPES_SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+
+	/**
+	 * The most arguments of one IN query, below the default limit of SQLite
+	 */
+	private static final int MAX_BATCH_ARGUMENTS = 500;
+
+	private static volatile boolean sBatchForeignKeys = false;
+
+	/**
+	 * Models referenced by the cursor being processed on this thread, by type and primary key
+	 */
+	private static final ThreadLocal<Map<Class<?>, Map<Object, IModel>>> sPrefetched = new ThreadLocal<Map<Class<?>, Map<Object, IModel>>>();
+
 	@SuppressWarnings("serial")
 	private static final HashMap<Class<?>, SQLiteType> TYPE_MAP = new HashMap<Class<?>, SQLiteType>() {
 		{
@@ -89,20 +111,40 @@ public final class SQLiteUtils {
 	// PUBLIC METHODS
 	//////////////////////////////////////////////////////////////////////////////////////
 
+	/**
+	 * Sets whether {@link #processCursor(Class, android.database.Cursor)} loads the models foreign keys reference
+	 * with one IN query per referenced table, instead of one query per row that misses the entity cache
+	 * @param batchForeignKeys
+	 */
+	public static void setBatchForeignKeys(boolean batchForeignKeys) {
+		sBatchForeignKeys = batchForeignKeys;
+	}
+
+	/**
+	 * Runs the SQL. Since it may write any table, the primary keys the negative cache knows as missing are forgotten.
+	 * @param sql
+	 */
 	public static void execSql(String sql) {
 		Cache.openDatabase().execSQL(sql);
+		Cache.clearMissingEntities();
 	}
 
 	public static void execSql(String sql, Object[] bindArgs) {
 		Cache.openDatabase().execSQL(sql, bindArgs);
+		Cache.clearMissingEntities();
 	}
 
 	public static <T extends IModel> List<T> rawQuery(Class<? extends IModel> type, String sql, String[] selectionArgs) {
-		Cursor cursor = Cache.openDatabase().rawQuery(sql, selectionArgs);
-		List<T> entities = processCursor(type, cursor);
-		cursor.close();
+		final SQLiteDatabase database = Cache.acquireReadableDatabase();
+		try {
+			Cursor cursor = database.rawQuery(sql, selectionArgs);
+			List<T> entities = processCursor(type, cursor);
+			cursor.close();
 
-		return entities;
+			return entities;
+		} finally {
+			Cache.releaseReadableDatabase(database);
+		}
 	}
 
 	public static <T extends IModel> T rawQuerySingle(Class<? extends IModel> type, String sql, String[] selectionArgs) {
@@ -229,23 +271,66 @@ public final class SQLiteUtils {
 		return definition.toString();
 	}
 
-	@SuppressWarnings("unchecked")
 	public static <T extends IModel> List<T> processCursor(Class<? extends IModel> type, Cursor cursor) {
+		return processCursor(type, cursor, sBatchForeignKeys);
+	}
+
+	/**
+	 * Loads every row of the cursor into a new model
+	 * @param type
+	 * @param cursor
+	 * @param batchForeignKeys - true to first read the foreign keys of all rows, and load the models they reference
+	 *                         that are not in the entity cache with one IN query per referenced table
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends IModel> List<T> processCursor(Class<? extends IModel> type, Cursor cursor, boolean batchForeignKeys) {
 		final List<T> entities = new ArrayList<T>();
 
 		try {
-			Constructor<?> entityConstructor = type.getConstructor();
-
-            //enable private constructors
-            entityConstructor.setAccessible(true);
+			final TableInfo tableInfo = Cache.getTableInfo(type);
+			final IModelAdapter modelAdapter = tableInfo.getModelAdapter();
+			Constructor<?> entityConstructor = null;
+			if (modelAdapter == null) {
+				entityConstructor = type.getConstructor();
+
+				//enable private constructors
+				entityConstructor.setAccessible(true);
+			}
 
 			if (cursor.moveToFirst()) {
-				do {
-					IModel entity = (T) entityConstructor.newInstance();
-					entity.loadFromCursor(cursor);
-					entities.add((T) entity);
+				// resolve the column indexes once for every row
+				final int[] columnIndexes = getColumnIndexes(cursor, tableInfo);
+
+				final Map<Class<?>, Map<Object, IModel>> previous = sPrefetched.get();
+				Map<Class<?>, Map<Object, IModel>> prefetched = null;
+				if (batchForeignKeys) {
+					prefetched = prefetchForeignEntities(cursor, tableInfo);
+					// the prefetch read every row, even when it found nothing to load
+					cursor.moveToFirst();
+				}
+				if (prefetched != null) {
+					sPrefetched.set(prefetched);
+				}
+
+				try {
+					do {
+						IModel entity = modelAdapter != null ? (T) modelAdapter.newInstance() : (T) entityConstructor.newInstance();
+						if (entity instanceof Model) {
+							loadFromCursor(cursor, entity, columnIndexes);
+						}
+						else {
+							entity.loadFromCursor(cursor);
+						}
+						entities.add((T) entity);
+					}
+					while (cursor.moveToNext());
+				}
+				finally {
+					if (prefetched != null) {
+						sPrefetched.set(previous);
+					}
 				}
-				while (cursor.moveToNext());
 			}
 
 		}
@@ -264,46 +349,11 @@ public final class SQLiteUtils {
      * @return
      */
     public static String getWhereStatement(Class<? extends IModel> modelClass, TableInfo tableInfo){
-        List<Field> fields = new ArrayList<Field>();
-        ArrayList<Field> primaryColumn = new ArrayList<Field>();
-        fields = ReflectionUtils.getAllFields(fields, modelClass);
-
-        for(Field field : fields){
-            if(field.isAnnotationPresent(PrimaryKey.class)
-                    && !field.isAnnotationPresent(IndexedKey.class)
-                    ){
-                primaryColumn.add(field);
-            }
-        }
-
-        final StringBuilder where = new StringBuilder();
-        for(int i = 0 ; i < primaryColumn.size(); i++){
-            final Field field = primaryColumn.get(i);
-            where.append(tableInfo.getColumnName(field));
-            where.append("=?");
-
-            if(i < primaryColumn.size()-1){
-                where.append(" AND ");
-            }
-        }
-
-        String sql = where.toString();
-
-        return sql;
+        return tableInfo.getPrimaryKeyWhere();
     }
 
     public static String getWhereStatement(Class<? extends IModel> modelClass, TableInfo tableInfo, String... primaryKeyColumnNames) {
-        List<Field> fields = new ArrayList<Field>();
-        List<String> primaryColumns = new ArrayList<String>();
-        fields = ReflectionUtils.getAllFields(fields, modelClass);
-
-        for(Field field : fields){
-            if(field.isAnnotationPresent(PrimaryKey.class)
-                    && !field.isAnnotationPresent(IndexedKey.class)
-                    ){
-                primaryColumns.add(tableInfo.getColumnName(field));
-            }
-        }
+        final List<String> primaryColumns = Arrays.asList(tableInfo.getPrimaryKeyColumnNames());
 
         final StringBuilder where = new StringBuilder();
         for(int i = 0 ; i < primaryKeyColumnNames.length; i++){
@@ -328,175 +378,146 @@ public final class SQLiteUtils {
 
 
     /**
-     * Returns the where statement with primary keys and values filled in
+     * Returns the where statement with primary keys and values filled in. Prefer {@link com.activeandroid.TableInfo#getPrimaryKeyWhere()}
+     * with the values as arguments, which SQLite can reuse the compiled statement of.
      * @param IModel
      * @param tableInfo
      * @return
      */
+    @SuppressWarnings("unchecked")
     public static String getWhereStatement(IModel IModel, TableInfo tableInfo){
-        List<Field> fields = new ArrayList<Field>();
-        ArrayList<Field> primaryColumn = new ArrayList<Field>();
-        fields = ReflectionUtils.getAllFields(fields, IModel.getClass());
-
-        for(Field field : fields){
-            if(field.isAnnotationPresent(PrimaryKey.class)
-                    && !field.isAnnotationPresent(IndexedKey.class)
-                    ){
-                primaryColumn.add(field);
-            }
+        if(tableInfo.getModelAdapter()!=null){
+            return tableInfo.getModelAdapter().getWhereStatement(IModel);
         }
 
+        final ColumnBinder[] primaryKeys = tableInfo.getPrimaryKeyBinders();
         final StringBuilder where = new StringBuilder();
-        for(int i = 0 ; i < primaryColumn.size(); i++){
-            final Field field = primaryColumn.get(i);
-            where.append(tableInfo.getColumnName(field));
-            where.append("=?");
-
-            if(i < primaryColumn.size()-1){
-                where.append(" AND ");
-            }
-        }
-
-        String sql = where.toString();
-
-        for(int i = 0; i < primaryColumn.size(); i++){
-            final Field field = primaryColumn.get(i);
-            field.setAccessible(true);
+        for(int i = 0; i < primaryKeys.length; i++){
+            final Field field = primaryKeys[i].getField();
             try {
                 Object object = field.get(IModel);
                 if(object==null){
                     throw new PrimaryKeyCannotBeNullException("The primary key: " + field.getName() + "from " + tableInfo.getTableName() + " cannot be null.");
-                } else if(object instanceof Number){
-                    sql = sql.replaceFirst("\\?", object.toString());
-                } else {
-                    String escaped = DatabaseUtils.sqlEscapeString(object.toString());
+                }
 
-                    sql = sql.replaceFirst("\\?", escaped);
+                if(i > 0){
+                    where.append(" AND ");
+                }
+                where.append(primaryKeys[i].getColumnName()).append('=');
+                if(object instanceof Number){
+                    where.append(object);
+                } else {
+                    where.append(DatabaseUtils.sqlEscapeString(object.toString()));
                 }
             } catch (Throwable e) {
                 throw new RuntimeException(e);
             }
         }
-        return sql;
+        return where.toString();
     }
 
+    /**
+     * Returns the where statement with the primary key values of the id filled in. Prefer {@link #selectByEntityId(Class, String)},
+     * which binds them as arguments.
+     * @param IModel
+     * @param entityId
+     * @return
+     */
     public static String getWhereFromEntityId(Class<? extends IModel> IModel, String entityId){
-        String[] primaries = entityId.split(",");
-        String whereString = getWhereStatement(IModel, Cache.getTableInfo(IModel));
+        final TableInfo tableInfo = Cache.getTableInfo(IModel);
+        final ColumnBinder[] primaryKeys = tableInfo.getPrimaryKeyBinders();
+        final String[] values = tableInfo.getPrimaryKeyArguments(entityId);
 
-        List<Field> fields = new ArrayList<Field>();
-        fields = ReflectionUtils.getAllFields(fields, IModel);
-
-        ArrayList<Field> primaryColumn = new ArrayList<Field>();
-        for(Field field : fields){
-            if(field.isAnnotationPresent(PrimaryKey.class)){
-                primaryColumn.add(field);
+        final StringBuilder where = new StringBuilder();
+        for(int i = 0; i < primaryKeys.length; i++){
+            if(i > 0){
+                where.append(" AND ");
+            }
+            where.append(primaryKeys[i].getColumnName()).append('=');
+            if(primaryKeys[i].getField().getType().isAssignableFrom(String.class)){
+                where.append(DatabaseUtils.sqlEscapeString(values[i]));
+            } else {
+                where.append(values[i]);
             }
         }
 
-        for(int i = 0; i < primaries.length; i++){
-            final Field field = primaryColumn.get(i);
-            field.setAccessible(true);
-            try {
-                if(field.getType().isAssignableFrom(String.class)){
-                    String escaped = DatabaseUtils.sqlEscapeString(primaries[i]);
-                    whereString = whereString.replaceFirst("\\?", escaped);
-                } else {
-                    whereString = whereString.replaceFirst("\\?", primaries[i]);
-                }
-            } catch (Throwable e) {
-                throw new RuntimeException(e);
+        return where.toString();
+    }
+
+    /**
+     * Returns the model with the id returned by {@link com.activeandroid.IModel#getId()}, binding its primary key values as arguments
+     * @param type
+     * @param entityId
+     * @return
+     */
+    public static <T extends IModel> T selectByEntityId(Class<? extends IModel> type, String entityId){
+        final TableInfo tableInfo = Cache.getTableInfo(type);
+        return new Select().from(type).where(tableInfo.getPrimaryKeyWhere(), (Object[]) tableInfo.getPrimaryKeyArguments(entityId)).executeSingle();
+    }
+
+    /**
+     * Returns the model a foreign key column at the cursor references, from the entity cache if it is there. A key
+     * stored as an integer is looked up without reading it as a string, so cache hits allocate nothing.
+     * @param type - the referenced model
+     * @param cursor
+     * @param columnIndex
+     * @return the model, null if the column is null or the model was not found
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends IModel> T loadForeignEntity(Class<? extends IModel> type, Cursor cursor, int columnIndex){
+        if (cursor.isNull(columnIndex)) {
+            return null;
+        }
+
+        final boolean integer = Cache.getTableInfo(type).hasIntegerPrimaryKey();
+        if (CURSOR_TYPES_SUPPORTED && integer && cursor.getType(columnIndex) == Cursor.FIELD_TYPE_INTEGER) {
+            final long id = cursor.getLong(columnIndex);
+            IModel entity = Cache.getEntity(type, id);
+            if (entity == null && sPrefetched.get() != null) {
+                entity = getPrefetched(type, id);
+            }
+            if (entity != null) {
+                return (T) entity;
             }
         }
 
-        return whereString;
+        final String entityId = cursor.getString(columnIndex);
+        IModel entity = Cache.getEntity(type, entityId);
+        if (entity == null && sPrefetched.get() != null) {
+            entity = getPrefetched(type, integer ? parseId(entityId) : entityId);
+        }
+        return entity != null ? (T) entity : (T) selectByEntityId(type, entityId);
     }
 
     public static void delete(IModel IModel){
         TableInfo tableInfo = Cache.getTableInfo(IModel.getClass());
-        Cache.openDatabase().delete(tableInfo.getTableName(), SQLiteUtils.getWhereStatement(IModel, tableInfo), null);
+        ModelStatements.getStatements(tableInfo).delete(IModel);
         Cache.removeEntity(IModel);
 
         Cache.getContext().getContentResolver()
                 .notifyChange(ContentProvider.createUri(tableInfo.getType(), IModel.getId()), null);
     }
 
-    public static void save(IModel IModel){
-        TableInfo tableInfo = Cache.getTableInfo(IModel.getClass());
-        final SQLiteDatabase db = Cache.openDatabase();
+    /**
+     * Returns the values of every column of the model, using the compiled {@link com.activeandroid.ColumnBinder} of the table
+     * @param IModel
+     * @param tableInfo
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static ContentValues getContentValues(IModel IModel, TableInfo tableInfo){
         final ContentValues values = new ContentValues();
+        final IModelAdapter modelAdapter = tableInfo.getModelAdapter();
+        if (modelAdapter != null) {
+            modelAdapter.bindToContentValues(values, IModel);
+            return values;
+        }
 
-        for (Field field : tableInfo.getFields()) {
-            String fieldName = tableInfo.getColumnName(field);
-            Class<?> fieldType = field.getType();
-
-            field.setAccessible(true);
+        final ColumnBinder[] binders = tableInfo.getColumnBinders();
 
+        for (int i = 0; i < binders.length; i++) {
             try {
-                Object value = field.get(IModel);
-
-                if (value != null) {
-                    final TypeSerializer typeSerializer = Cache.getParserForType(fieldType);
-                    if (typeSerializer != null) {
-                        // serialize data
-                        value = typeSerializer.serialize(value);
-                        // set new object type
-                        if (value != null) {
-                            fieldType = value.getClass();
-                            // check that the serializer returned what it promised
-                            if (!fieldType.equals(typeSerializer.getSerializedType())) {
-                                AALog.w(String.format("TypeSerializer returned wrong type: expected a %s but got a %s",
-                                        typeSerializer.getSerializedType(), fieldType));
-                            }
-                        }
-                    }
-                }
-
-                // TODO: Find a smarter way to do this? This if block is necessary because we
-                // can't know the type until runtime.
-                if (value == null) {
-                    values.putNull(fieldName);
-                }
-                else if (fieldType.equals(Byte.class) || fieldType.equals(byte.class)) {
-                    values.put(fieldName, (Byte) value);
-                }
-                else if (fieldType.equals(Short.class) || fieldType.equals(short.class)) {
-                    values.put(fieldName, (Short) value);
-                }
-                else if (fieldType.equals(Integer.class) || fieldType.equals(int.class)) {
-                    values.put(fieldName, (Integer) value);
-                }
-                else if (fieldType.equals(Long.class) || fieldType.equals(long.class)) {
-                    values.put(fieldName, (Long) value);
-                }
-                else if (fieldType.equals(Float.class) || fieldType.equals(float.class)) {
-                    values.put(fieldName, (Float) value);
-                }
-                else if (fieldType.equals(Double.class) || fieldType.equals(double.class)) {
-                    values.put(fieldName, (Double) value);
-                }
-                else if (fieldType.equals(Boolean.class) || fieldType.equals(boolean.class)) {
-                    values.put(fieldName, (Boolean) value);
-                }
-                else if (fieldType.equals(Character.class) || fieldType.equals(char.class)) {
-                    values.put(fieldName, value.toString());
-                }
-                else if (fieldType.equals(String.class)) {
-                    values.put(fieldName, value.toString());
-                }
-                else if (fieldType.equals(Byte[].class) || fieldType.equals(byte[].class)) {
-                    values.put(fieldName, (byte[]) value);
-                }
-                else if (field.isAnnotationPresent(ForeignKey.class) && ReflectionUtils.isModel(fieldType)) {
-                    ForeignKey key = field.getAnnotation(ForeignKey.class);
-                    if(!key.name().equals("")){
-                        fieldName = field.getAnnotation(ForeignKey.class).name();
-                    }
-                    values.put(fieldName, ((IModel) value).getId());
-                }
-                else if (ReflectionUtils.isSubclassOf(fieldType, Enum.class)) {
-                    values.put(fieldName, ((Enum<?>) value).name());
-                }
+                binders[i].bind(IModel, values);
             }
             catch (IllegalArgumentException e) {
                 AALog.e(e.getClass().getName(), e);
@@ -506,131 +527,262 @@ public final class SQLiteUtils {
             }
         }
 
-        if(!IModel.exists()){
-            IModel.setRowId(db.insert(tableInfo.getTableName(), null, values));
-
-            for(Field field : tableInfo.getPrimaryKeys()){
-                if(field.isAnnotationPresent(PrimaryKey.class) &&
-                        field.getAnnotation(PrimaryKey.class).type().equals(PrimaryKey.Type.AUTO_INCREMENT)){
-                    field.setAccessible(true);
-                    try {
-                        field.set(IModel, IModel.getId());
-                    } catch (Throwable e) {
-                        throw new RuntimeException(e);
-                    }
+        return values;
+    }
+
+    /**
+     * Sets the row id returned from an insert on the {@link com.activeandroid.annotation.PrimaryKey.Type#AUTO_INCREMENT} key, if the table has one
+     * @param IModel
+     * @param tableInfo
+     * @param rowId
+     */
+    public static void setAutoIncrementKey(IModel IModel, TableInfo tableInfo, long rowId){
+        final Field field = tableInfo.getAutoIncrementKey();
+        if(field!=null){
+            try {
+                final Class<?> type = field.getType();
+                if(type.equals(int.class) || type.equals(Integer.class)){
+                    field.set(IModel, (int) rowId);
+                } else if(type.equals(String.class)){
+                    field.set(IModel, String.valueOf(rowId));
+                } else {
+                    field.set(IModel, rowId);
                 }
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
             }
-        } else {
-            IModel.setRowId(db.update(tableInfo.getTableName(), values, SQLiteUtils.getWhereStatement(IModel, tableInfo), null));
         }
+    }
+
+    /**
+     * Returns true if the table has an auto increment key that is still 0 or null, so SQLite assigns it on insert
+     * @param IModel
+     * @param tableInfo
+     * @return
+     */
+    public static boolean hasUnassignedAutoIncrementKey(IModel IModel, TableInfo tableInfo){
+        final Field autoIncrementKey = tableInfo.getAutoIncrementKey();
+        if (autoIncrementKey == null) {
+            return false;
+        }
+        try {
+            final Object value = autoIncrementKey.get(IModel);
+            return value == null || (value instanceof Number && ((Number) value).longValue() == 0);
+        } catch (IllegalAccessException e) {
+            return false;
+        }
+    }
+
+    public static void save(IModel IModel){
+        save(IModel, Cache.getTableInfo(IModel.getClass()).getSaveMode());
+    }
+
+    /**
+     * Saves the model with the mode passed instead of the one declared by its {@link com.activeandroid.annotation.Table}
+     * @param IModel
+     * @param saveMode
+     */
+    public static void save(IModel IModel, Table.SaveMode saveMode){
+        TableInfo tableInfo = Cache.getTableInfo(IModel.getClass());
+        IModel.setRowId(ModelStatements.getStatements(tableInfo).save(IModel, saveMode));
 
         Cache.getContext().getContentResolver()
                 .notifyChange(ContentProvider.createUri(tableInfo.getType(), IModel.getId()), null);
     }
 
-    public static void loadFromCursor(Cursor cursor, IModel IModel){
-        TableInfo tableInfo = Cache.getTableInfo(IModel.getClass());
-        for (Field field : tableInfo.getFields()) {
-            final String fieldName = tableInfo.getColumnName(field);
-            Class<?> fieldType = field.getType();
-            final int columnIndex = cursor.getColumnIndex(fieldName);
+    /**
+     * Returns the index of each column of the table in the cursor, -1 for columns the cursor does not have.
+     * Resolve these once per cursor and pass them to {@link #loadFromCursor(android.database.Cursor, com.activeandroid.IModel, int[])}
+     * @param cursor
+     * @param tableInfo
+     * @return
+     */
+    public static int[] getColumnIndexes(Cursor cursor, TableInfo tableInfo){
+        final IModelAdapter modelAdapter = tableInfo.getModelAdapter();
+        if (modelAdapter != null) {
+            return modelAdapter.getColumnIndexes(cursor);
+        }
 
-            if (columnIndex < 0) {
-                continue;
-            }
+        final ColumnBinder[] binders = tableInfo.getColumnBinders();
+        final int[] columnIndexes = new int[binders.length];
+        for (int i = 0; i < binders.length; i++) {
+            columnIndexes[i] = cursor.getColumnIndex(binders[i].getColumnName());
+        }
+        return columnIndexes;
+    }
 
-            field.setAccessible(true);
+    public static void loadFromCursor(Cursor cursor, IModel IModel){
+        loadFromCursor(cursor, IModel, getColumnIndexes(cursor, Cache.getTableInfo(IModel.getClass())));
+    }
 
-            try {
-                boolean columnIsNull = cursor.isNull(columnIndex);
-                TypeSerializer typeSerializer = Cache.getParserForType(fieldType);
-                Object value = null;
+    public static void loadFromCursor(Cursor cursor, IModel IModel, int[] columnIndexes){
+        loadFromCursor(cursor, IModel, columnIndexes, true);
+    }
 
-                if (typeSerializer != null) {
-                    fieldType = typeSerializer.getSerializedType();
-                }
+    /**
+     * Loads the row the cursor is at into the model
+     * @param cursor
+     * @param IModel
+     * @param columnIndexes - from {@link #getColumnIndexes(android.database.Cursor, com.activeandroid.TableInfo)}
+     * @param addToCache - false to keep the model out of the entity cache, such as an instance reused for every row
+     */
+    @SuppressWarnings("unchecked")
+    public static void loadFromCursor(Cursor cursor, IModel IModel, int[] columnIndexes, boolean addToCache){
+        TableInfo tableInfo = Cache.getTableInfo(IModel.getClass());
+        final IModelAdapter modelAdapter = tableInfo.getModelAdapter();
+        if (modelAdapter != null) {
+            modelAdapter.loadFromCursor(cursor, IModel, columnIndexes);
+        } else {
+            final ColumnBinder[] binders = tableInfo.getColumnBinders();
+            for (int i = 0; i < binders.length; i++) {
+                final int columnIndex = columnIndexes[i];
 
-                // TODO: Find a smarter way to do this? This if block is necessary because we
-                // can't know the type until runtime.
-                if (columnIsNull) {
-                    field = null;
-                }
-                else if (fieldType.equals(Byte.class) || fieldType.equals(byte.class)) {
-                    value = cursor.getInt(columnIndex);
-                }
-                else if (fieldType.equals(Short.class) || fieldType.equals(short.class)) {
-                    value = cursor.getInt(columnIndex);
-                }
-                else if (fieldType.equals(Integer.class) || fieldType.equals(int.class)) {
-                    value = cursor.getInt(columnIndex);
+                if (columnIndex < 0) {
+                    continue;
                 }
-                else if (fieldType.equals(Long.class) || fieldType.equals(long.class)) {
-                    value = cursor.getLong(columnIndex);
-                }
-                else if (fieldType.equals(Float.class) || fieldType.equals(float.class)) {
-                    value = cursor.getFloat(columnIndex);
-                }
-                else if (fieldType.equals(Double.class) || fieldType.equals(double.class)) {
-                    value = cursor.getDouble(columnIndex);
-                }
-                else if (fieldType.equals(Boolean.class) || fieldType.equals(boolean.class)) {
-                    value = cursor.getInt(columnIndex) != 0;
+
+                try {
+                    binders[i].load(IModel, cursor, columnIndex);
                 }
-                else if (fieldType.equals(Character.class) || fieldType.equals(char.class)) {
-                    value = cursor.getString(columnIndex).charAt(0);
+                catch (IllegalArgumentException e) {
+                    AALog.e(e.getClass().getName(), e);
                 }
-                else if (fieldType.equals(String.class)) {
-                    value = cursor.getString(columnIndex);
+                catch (IllegalAccessException e) {
+                    AALog.e(e.getClass().getName(), e);
                 }
-                else if (fieldType.equals(Byte[].class) || fieldType.equals(byte[].class)) {
-                    value = cursor.getBlob(columnIndex);
+                catch (SecurityException e) {
+                    AALog.e(e.getClass().getName(), e);
                 }
-                else if (field.isAnnotationPresent(ForeignKey.class) && ReflectionUtils.isModel(fieldType)) {
-                    final String entityId = cursor.getString(columnIndex);
-                    final Class<? extends IModel> entityType = (Class<? extends IModel>) fieldType;
+            }
+        }
 
-                    IModel entity = Cache.getEntity(entityType, entityId);
-                    if (entity == null) {
-                        entity = new Select().from(entityType).where(SQLiteUtils.getWhereFromEntityId(entityType, entityId)).executeSingle();
-                    }
+        if (addToCache) {
+            Cache.addEntity(IModel);
+        }
+    }
+
+    public static boolean exists(IModel iModel){
+        return ModelStatements.getStatements(Cache.getTableInfo(iModel.getClass())).exists(iModel);
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Reads the foreign keys of every row of the cursor, and loads the models they reference that are missing from
+     * the entity cache with one IN query per referenced table. Tables with a composite primary key are left to
+     * {@link #loadForeignEntity(Class, android.database.Cursor, int)}.
+     * @return the models loaded by type and primary key, or null if none were
+     */
+    private static Map<Class<?>, Map<Object, IModel>> prefetchForeignEntities(Cursor cursor, TableInfo tableInfo) {
+        Map<Class<?>, Map<Object, IModel>> prefetched = null;
+        for (ColumnBinder binder : tableInfo.getColumnBinders()) {
+            final Class<? extends IModel> entityType = binder.getForeignEntityType();
+            if (entityType == null) {
+                continue;
+            }
+            // not from getColumnIndexes(), a generated adapter orders those by field declaration, not by binder
+            final int columnIndex = cursor.getColumnIndex(binder.getColumnName());
+            if (columnIndex < 0) {
+                continue;
+            }
+
+            final TableInfo entityTableInfo = Cache.getTableInfo(entityType);
+            if (entityTableInfo.getPrimaryKeys().size() != 1 || entityTableInfo.getPrimaryKeyColumnNames().length != 1) {
+                continue;
+            }
 
-                    value = entity;
+            final boolean integer = entityTableInfo.hasIntegerPrimaryKey();
+            final Set<Object> ids = new LinkedHashSet<Object>();
+            cursor.moveToFirst();
+            do {
+                if (cursor.isNull(columnIndex)) {
+                    continue;
                 }
-                else if (ReflectionUtils.isSubclassOf(fieldType, Enum.class)) {
-                    @SuppressWarnings("rawtypes")
-                    final Class<? extends Enum> enumType = (Class<? extends Enum>) fieldType;
-                    value = Enum.valueOf(enumType, cursor.getString(columnIndex));
+                final Object id = readForeignKey(cursor, columnIndex, integer);
+                if (id != null && !ids.contains(id) && !isPrefetched(prefetched, entityType, id)
+                        && (integer ? Cache.getEntity(entityType, (Long) id) : Cache.getEntity(entityType, (String) id)) == null) {
+                    ids.add(id);
                 }
+            }
+            while (cursor.moveToNext());
 
-                // Use a deserializer if one is available
-                if (typeSerializer != null && !columnIsNull) {
-                    value = typeSerializer.deserialize(value);
+            if (!ids.isEmpty()) {
+                if (prefetched == null) {
+                    prefetched = new HashMap<Class<?>, Map<Object, IModel>>();
                 }
-
-                // Set the field name
-                if (value != null) {
-                    field.set(IModel, value);
+                Map<Object, IModel> entities = prefetched.get(entityType);
+                if (entities == null) {
+                    entities = new HashMap<Object, IModel>(ids.size());
+                    prefetched.put(entityType, entities);
                 }
+                selectByPrimaryKeys(entityType, entityTableInfo, new ArrayList<Object>(ids), entities);
             }
-            catch (IllegalArgumentException e) {
-                AALog.e(e.getClass().getName(), e);
+        }
+        return prefetched;
+    }
+
+    /**
+     * Loads the models with the primary keys into the map, by primary key
+     */
+    private static void selectByPrimaryKeys(Class<? extends IModel> type, TableInfo tableInfo, List<Object> ids, Map<Object, IModel> entities) {
+        final String column = tableInfo.getPrimaryKeyColumnNames()[0];
+        for (int start = 0; start < ids.size(); start += MAX_BATCH_ARGUMENTS) {
+            final List<Object> batch = ids.subList(start, Math.min(start + MAX_BATCH_ARGUMENTS, ids.size()));
+            final StringBuilder where = new StringBuilder(column).append(" IN (");
+            for (int i = 0; i < batch.size(); i++) {
+                where.append(i > 0 ? ",?" : "?");
             }
-            catch (IllegalAccessException e) {
-                AALog.e(e.getClass().getName(), e);
+            where.append(')');
+
+            final List<IModel> models = new Select().from(type).where(where.toString(), batch.toArray()).execute();
+            for (IModel model : models) {
+                entities.put(tableInfo.hasIntegerPrimaryKey() ? (Object) tableInfo.getIntegerPrimaryKey(model) : model.getId(), model);
             }
-            catch (SecurityException e) {
-                AALog.e(e.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * Returns the foreign key at the cursor as a Long for a referenced table with an integer primary key, otherwise as
+     * the String the referenced {@link com.activeandroid.IModel#getId()} was saved as
+     * @return the key, or null if it cannot be the integer primary key
+     */
+    private static Object readForeignKey(Cursor cursor, int columnIndex, boolean integer) {
+        if (!integer) {
+            return cursor.getString(columnIndex);
+        } else if (CURSOR_TYPES_SUPPORTED) {
+            if (cursor.getType(columnIndex) == Cursor.FIELD_TYPE_INTEGER) {
+                return cursor.getLong(columnIndex);
             }
+            return null;
         }
+        return parseId(cursor.getString(columnIndex));
+    }
 
-        if (IModel.getId() != null) {
-            Cache.addEntity(IModel);
+    private static Long parseId(String entityId) {
+        try {
+            return Long.valueOf(entityId);
+        }
+        catch (NumberFormatException e) {
+            return null;
         }
     }
 
-    public static boolean exists(IModel iModel){
-        IModel model = new Select().from(iModel.getClass()).where(SQLiteUtils.getWhereStatement(iModel, Cache.getTableInfo(iModel.getClass()))).executeSingle();
-        return model!=null;
+    private static boolean isPrefetched(Map<Class<?>, Map<Object, IModel>> prefetched, Class<?> type, Object id) {
+        if (prefetched == null) {
+            return false;
+        }
+        final Map<Object, IModel> entities = prefetched.get(type);
+        return entities != null && entities.containsKey(id);
     }
 
+    private static IModel getPrefetched(Class<?> type, Object id) {
+        final Map<Class<?>, Map<Object, IModel>> prefetched = sPrefetched.get();
+        if (prefetched == null || id == null) {
+            return null;
+        }
+        final Map<Object, IModel> entities = prefetched.get(type);
+        return entities != null ? entities.get(id) : null;
+    }
 }
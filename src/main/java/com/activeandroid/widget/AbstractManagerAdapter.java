@@ -5,6 +5,8 @@ import android.widget.BaseAdapter;
 import com.activeandroid.manager.DBManager;
 import com.activeandroid.IModel;
 import com.activeandroid.interfaces.CollectionReceiver;
+import com.activeandroid.query.From;
+import com.activeandroid.query.LazyModelList;
 
 import java.util.List;
 
@@ -40,11 +42,35 @@ public abstract class AbstractManagerAdapter<OBJECT_CLASS extends IModel> extend
         manager.fetchAllWithColumnValue(value, column, mReceiver);
     }
 
+    /**
+     * Shows the objects of a lazy list, which only loads the rows that are displayed
+     * @param manager
+     * @param query - the query of the objects, such as new Select().from(...).orderBy(...)
+     */
+    public AbstractManagerAdapter(DBManager<OBJECT_CLASS> manager, From query){
+        super();
+        manager.fetchLazy(query, mReceiver);
+    }
+
+    /**
+     * Sets the objects shown. A {@link com.activeandroid.query.LazyModelList} that is replaced gets closed.
+     * @param objects
+     */
     public void setData(List<OBJECT_CLASS> objects){
+        if (mObjects != objects && mObjects instanceof LazyModelList) {
+            ((LazyModelList) mObjects).close();
+        }
         mObjects = objects;
         notifyDataSetChanged();
     }
 
+    /**
+     * Releases the cursor of a {@link com.activeandroid.query.LazyModelList} shown, call when the adapter is no longer displayed
+     */
+    public void close(){
+        setData(null);
+    }
+
     @Override
     public int getCount() {
         return mObjects==null? 0: mObjects.size();
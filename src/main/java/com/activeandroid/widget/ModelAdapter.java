@@ -17,10 +17,18 @@ public class ModelAdapter<T extends IModel> extends ArrayAdapter<T> {
 		super(context, resource, textViewResourceId);
 	}
 
+	/**
+	 * Shows the objects of the list, which can be a {@link com.activeandroid.query.LazyModelList} from
+	 * {@link com.activeandroid.query.From#executeLazy()} so only the rows displayed are loaded. That list is read-only,
+	 * so do not add, remove or {@link #setData(java.util.Collection)} on such an adapter.
+	 */
 	public ModelAdapter(Context context, int textViewResourceId, List<T> objects) {
 		super(context, textViewResourceId, objects);
 	}
 
+	/**
+	 * See {@link #ModelAdapter(android.content.Context, int, java.util.List)}
+	 */
 	public ModelAdapter(Context context, int resource, int textViewResourceId, List<T> objects) {
 		super(context, resource, textViewResourceId, objects);
 	}
@@ -0,0 +1,61 @@
+package com.activeandroid.test;
+
+import com.activeandroid.Model;
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.IndexedKey;
+import com.activeandroid.annotation.PrimaryKey;
+import com.activeandroid.annotation.Table;
+
+/**
+ * Description: A model the activeandroid-compiler generates an adapter for, with an enum, nullable columns and an
+ * {@link com.activeandroid.annotation.IndexedKey}
+ */
+@Table(name = "AdapterModel")
+public class AdapterModel extends Model {
+	public enum Shape {
+		CIRCLE, SQUARE
+	}
+
+	@PrimaryKey
+	@Column(name = "Id")
+	public long id;
+
+	@PrimaryKey
+	@IndexedKey
+	@Column(name = "Revision")
+	public int revision;
+
+	@Column(name = "Shape")
+	public Shape shape;
+
+	@Column(name = "Initial")
+	public char initial;
+
+	@Column(name = "Enabled")
+	public boolean enabled;
+
+	@Column(name = "Count")
+	public Integer count;
+
+	@Column(name = "Ratio")
+	public float ratio;
+
+	@Column(name = "Data")
+	public byte[] data;
+
+	@Column(name = "Label")
+	public String label;
+
+	public AdapterModel() {
+	}
+
+	public AdapterModel(long id, int revision) {
+		this.id = id;
+		this.revision = revision;
+	}
+
+	@Override
+	public String getId() {
+		return id + "," + revision;
+	}
+}
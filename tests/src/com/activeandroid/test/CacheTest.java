@@ -0,0 +1,147 @@
+package com.activeandroid.test;
+
+import com.activeandroid.ActiveAndroid;
+import com.activeandroid.Cache;
+import com.activeandroid.Configuration;
+import com.activeandroid.Model;
+import com.activeandroid.manager.SingleDBManager;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.QueryListener;
+import com.activeandroid.query.QueryMonitor;
+import com.activeandroid.query.QueryStats;
+import com.activeandroid.query.Update;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Description: Tests the identity cache lookups of {@link com.activeandroid.Cache}, primary key lookups reading
+ * through it, and its negative cache
+ */
+public class CacheTest extends ActiveAndroidTestCase {
+	private final AtomicInteger mQueries = new AtomicInteger();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		new Delete().from(Customer.class).execute();
+		new Customer(1, "Customer 1").save();
+		new Customer(2, "Customer 2").save();
+		Cache.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		QueryMonitor.setListener(null);
+		super.tearDown();
+	}
+
+	public void testAddGetRemove() {
+		final Customer customer = new Customer(5, "Customer 5");
+		Cache.addEntity(customer);
+
+		assertSame(customer, Cache.getEntity(Customer.class, 5));
+		assertSame(customer, Cache.getEntity(Customer.class, "5"));
+		assertNull(Cache.getEntity(Customer.class, "five"));
+
+		Cache.removeEntity(customer);
+		assertNull(Cache.getEntity(Customer.class, 5));
+	}
+
+	public void testGetEntityByPrimaryKey() {
+		final Customer customer = new Customer(5, "Customer 5");
+		Cache.addEntity(customer);
+
+		assertSame(customer, Cache.getEntityByPrimaryKey(Customer.class, 5L));
+		assertSame(customer, Cache.getEntityByPrimaryKey(Customer.class, 5));
+		assertSame(customer, Cache.getEntityByPrimaryKey(Customer.class, "5"));
+		assertNull(Cache.getEntityByPrimaryKey(Customer.class, 5, 6));
+		assertNull(Cache.getEntityByPrimaryKey(Customer.class));
+		assertNull(Cache.getEntityByPrimaryKey(Customer.class, 6L));
+	}
+
+	public void testLoadReadsThrough() {
+		final Customer customer = Model.load(Customer.class, 1);
+		assertEquals("Customer 1", customer.name);
+
+		countQueries();
+		assertSame(customer, Model.load(Customer.class, 1));
+		assertEquals(0, mQueries.get());
+
+		assertEquals("Customer 2", Model.load(Customer.class, 2).name);
+		assertEquals(1, mQueries.get());
+	}
+
+	public void testManagerReadsThrough() {
+		final Customer customer = Model.load(Customer.class, 1);
+		final SingleDBManager manager = SingleDBManager.getSharedInstance();
+
+		countQueries();
+		assertSame(customer, manager.getObjectById(Customer.class, 1L));
+		assertSame(customer, manager.getObjectById(Customer.class, new String[] {"Id"}, new Object[] {1L}));
+		assertSame(customer, manager.getObjectByColumnValue(Customer.class, "Id", 1L));
+		assertEquals(0, mQueries.get());
+
+		// not the primary key
+		assertSame(customer, manager.getObjectByColumnValue(Customer.class, "Name", "Customer 1"));
+		assertEquals(1, mQueries.get());
+	}
+
+	public void testDeleteEvicts() {
+		Model.load(Customer.class, 1);
+
+		Model.delete(Customer.class, 1);
+
+		assertNull(Cache.getEntity(Customer.class, 1));
+		assertNull(Model.load(Customer.class, 1));
+	}
+
+	public void testNegativeCacheDisabled() {
+		Cache.addMissingEntity(Customer.class, 42L);
+
+		assertFalse(Cache.isEntityMissing(Customer.class, 42L));
+	}
+
+	public void testNegativeCache() {
+		Cache.dispose();
+		ActiveAndroid.initialize(new Configuration.Builder(getApplication()).setNegativeCacheSize(16).create());
+		try {
+			assertFalse(Cache.isEntityMissing(Customer.class, 42L));
+
+			Cache.addMissingEntity(Customer.class, 42L);
+			assertTrue(Cache.isEntityMissing(Customer.class, 42L));
+			assertFalse(Cache.isEntityMissing(Customer.class, 43L));
+
+			// saving a model with the key forgets it was missing
+			new Customer(42, "Customer 42").save();
+			assertFalse(Cache.isEntityMissing(Customer.class, 42L));
+
+			Cache.addMissingEntity(Customer.class, 43L);
+			Cache.clear();
+			assertFalse(Cache.isEntityMissing(Customer.class, 43L));
+
+			// an update forgets the keys of its table only
+			Cache.addMissingEntity(Customer.class, 44L);
+			Cache.addMissingEntity(MockModel.class, 44L);
+			new Update(Customer.class).set("Name = ?", "Renamed").where("Id = ?", 42).execute();
+			assertFalse(Cache.isEntityMissing(Customer.class, 44L));
+			assertTrue(Cache.isEntityMissing(MockModel.class, 44L));
+
+			// raw SQL forgets every key
+			ActiveAndroid.execSQL("UPDATE Customer SET Name = 'Raw' WHERE Id = 42");
+			assertFalse(Cache.isEntityMissing(MockModel.class, 44L));
+		}
+		finally {
+			Cache.dispose();
+			ActiveAndroid.initialize(getApplication());
+		}
+	}
+
+	private void countQueries() {
+		QueryMonitor.setListener(new QueryListener() {
+			@Override
+			public void onQuery(QueryStats stats) {
+				mQueries.incrementAndGet();
+			}
+		});
+	}
+}
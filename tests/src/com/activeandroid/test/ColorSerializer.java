@@ -0,0 +1,28 @@
+package com.activeandroid.test;
+
+import com.activeandroid.serializer.TypeSerializer;
+
+/**
+ * Description: Stores a {@link com.activeandroid.test.SerializedModel.Color} by its ordinal
+ */
+public final class ColorSerializer extends TypeSerializer<SerializedModel.Color> {
+	@Override
+	public Class<?> getDeserializedType() {
+		return SerializedModel.Color.class;
+	}
+
+	@Override
+	public Class<?> getSerializedType() {
+		return Integer.class;
+	}
+
+	@Override
+	public Integer serialize(SerializedModel.Color data) {
+		return data.ordinal();
+	}
+
+	@Override
+	public SerializedModel.Color deserialize(Object data) {
+		return SerializedModel.Color.values()[((Number) data).intValue()];
+	}
+}
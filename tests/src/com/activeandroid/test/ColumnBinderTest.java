@@ -0,0 +1,136 @@
+package com.activeandroid.test;
+
+import android.content.ContentValues;
+
+import com.activeandroid.Cache;
+import com.activeandroid.ColumnBinder;
+import com.activeandroid.TableInfo;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.Select;
+import com.activeandroid.util.SQLiteUtils;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Description: Tests that every column type a {@link com.activeandroid.ColumnBinder} stores reads back as it was saved
+ */
+public class ColumnBinderTest extends ActiveAndroidTestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		new Delete().from(TypesModel.class).execute();
+		Cache.clear();
+	}
+
+	public void testRoundTrip() {
+		final TypesModel model = createModel();
+		model.save();
+		assertTrue(model.id > 0);
+
+		Cache.clear();
+		final TypesModel loaded = new Select().from(TypesModel.class).where("Id = ?", model.id).executeSingle();
+		assertNotNull(loaded);
+		assertNotSame(model, loaded);
+		assertModelEquals(model, loaded);
+	}
+
+	public void testNullRoundTrip() {
+		final TypesModel model = new TypesModel();
+		model.save();
+
+		Cache.clear();
+		final TypesModel loaded = new Select().from(TypesModel.class).where("Id = ?", model.id).executeSingle();
+		assertNotNull(loaded);
+		assertNull(loaded.boxedInteger);
+		assertNull(loaded.boxedLong);
+		assertNull(loaded.boxedDouble);
+		assertNull(loaded.boxedBoolean);
+		assertNull(loaded.stringValue);
+		assertNull(loaded.bytes);
+		assertNull(loaded.boxedBytes);
+		assertNull(loaded.size);
+		assertNull(loaded.date);
+	}
+
+	public void testUpdateRoundTrip() {
+		final TypesModel model = createModel();
+		model.save();
+
+		model.intValue = -1;
+		model.stringValue = null;
+		model.size = TypesModel.Size.SMALL;
+		model.save();
+
+		Cache.clear();
+		final TypesModel loaded = new Select().from(TypesModel.class).where("Id = ?", model.id).executeSingle();
+		assertModelEquals(model, loaded);
+		assertEquals(1, new Select().from(TypesModel.class).execute().size());
+	}
+
+	public void testContentValues() {
+		final TypesModel model = createModel();
+		final TableInfo tableInfo = Cache.getTableInfo(TypesModel.class);
+		final ContentValues values = SQLiteUtils.getContentValues(model, tableInfo);
+
+		assertEquals(Integer.valueOf(model.intValue), values.getAsInteger("IntValue"));
+		assertEquals(Long.valueOf(model.longValue), values.getAsLong("LongValue"));
+		assertEquals(model.stringValue, values.getAsString("StringValue"));
+		assertEquals(model.size.name(), values.getAsString("Size"));
+		assertEquals(Long.valueOf(model.date.getTime()), values.getAsLong("Date"));
+		assertTrue(Arrays.equals(model.bytes, values.getAsByteArray("Bytes")));
+	}
+
+	public void testBinderPerColumn() {
+		final TableInfo tableInfo = Cache.getTableInfo(TypesModel.class);
+		// every field is stored, so each has a binder
+		assertEquals(18, tableInfo.getColumnBinders().length);
+		for (ColumnBinder binder : tableInfo.getColumnBinders()) {
+			assertNull(binder.getColumnName(), binder.getForeignEntityType());
+		}
+	}
+
+	private static TypesModel createModel() {
+		final TypesModel model = new TypesModel();
+		model.intValue = Integer.MAX_VALUE;
+		model.longValue = Long.MIN_VALUE;
+		model.doubleValue = Math.PI;
+		model.booleanValue = true;
+		model.byteValue = Byte.MIN_VALUE;
+		model.shortValue = Short.MAX_VALUE;
+		model.floatValue = 1.5f;
+		model.charValue = 'x';
+		model.boxedInteger = 7;
+		model.boxedLong = 1L << 40;
+		model.boxedDouble = -0.25;
+		model.boxedBoolean = false;
+		model.stringValue = "O'Brien, \"quoted\"";
+		model.bytes = new byte[] { 0, 1, -1, 127 };
+		model.boxedBytes = new Byte[] { 2, 3 };
+		model.size = TypesModel.Size.LARGE;
+		model.date = new Date(1234567890123L);
+		return model;
+	}
+
+	private static void assertModelEquals(TypesModel expected, TypesModel actual) {
+		assertEquals(expected.id, actual.id);
+		assertEquals(expected.intValue, actual.intValue);
+		assertEquals(expected.longValue, actual.longValue);
+		assertEquals(expected.doubleValue, actual.doubleValue, 0);
+		assertEquals(expected.booleanValue, actual.booleanValue);
+		assertEquals(expected.byteValue, actual.byteValue);
+		assertEquals(expected.shortValue, actual.shortValue);
+		assertEquals(expected.floatValue, actual.floatValue, 0);
+		assertEquals(expected.charValue, actual.charValue);
+		assertEquals(expected.boxedInteger, actual.boxedInteger);
+		assertEquals(expected.boxedLong, actual.boxedLong);
+		assertEquals(expected.boxedDouble, actual.boxedDouble);
+		assertEquals(expected.boxedBoolean, actual.boxedBoolean);
+		assertEquals(expected.stringValue, actual.stringValue);
+		assertTrue(Arrays.equals(expected.bytes, actual.bytes));
+		assertTrue(Arrays.equals(expected.boxedBytes, actual.boxedBytes));
+		assertEquals(expected.size, actual.size);
+		assertEquals(expected.date, actual.date);
+	}
+}
@@ -0,0 +1,37 @@
+package com.activeandroid.test;
+
+import com.activeandroid.Model;
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.PrimaryKey;
+import com.activeandroid.annotation.Table;
+
+/**
+ * Description: A model keyed by a string and an integer column
+ */
+@Table(name = "CompositeModel")
+public class CompositeModel extends Model {
+	@PrimaryKey
+	@Column(name = "Region")
+	public String region;
+
+	@PrimaryKey
+	@Column(name = "Number")
+	public long number;
+
+	@Column(name = "Name")
+	public String name;
+
+	public CompositeModel() {
+	}
+
+	public CompositeModel(String region, long number, String name) {
+		this.region = region;
+		this.number = number;
+		this.name = name;
+	}
+
+	@Override
+	public String getId() {
+		return region + "," + number;
+	}
+}
@@ -0,0 +1,32 @@
+package com.activeandroid.test;
+
+import com.activeandroid.Model;
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.PrimaryKey;
+import com.activeandroid.annotation.Table;
+
+/**
+ * Description: The model the foreign key of {@link com.activeandroid.test.Order} references
+ */
+@Table(name = "Customer")
+public class Customer extends Model {
+	@PrimaryKey
+	@Column(name = "Id")
+	public long id;
+
+	@Column(name = "Name")
+	public String name;
+
+	public Customer() {
+	}
+
+	public Customer(long id, String name) {
+		this.id = id;
+		this.name = name;
+	}
+
+	@Override
+	public String getId() {
+		return String.valueOf(id);
+	}
+}
@@ -0,0 +1,250 @@
+package com.activeandroid.test;
+
+import android.content.ComponentCallbacks2;
+
+import com.activeandroid.Cache;
+import com.activeandroid.ClockEntityCache;
+import com.activeandroid.EntityCache;
+import com.activeandroid.IModel;
+import com.activeandroid.TableInfo;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Description: Tests the {@link com.activeandroid.EntityCache} policies, and the CLOCK eviction of the
+ * {@link com.activeandroid.ClockEntityCache}
+ */
+public class EntityCacheTest extends ActiveAndroidTestCase {
+	private TableInfo mTable;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mTable = Cache.getTableInfo(Customer.class);
+	}
+
+	public void testGetPutRemove() {
+		for (EntityCache.Policy policy : EntityCache.Policy.values()) {
+			final EntityCache cache = EntityCache.create(policy, 8, 0);
+			final Customer customer = new Customer(1, "Customer");
+			final Customer replacement = new Customer(1, "Replacement");
+
+			assertNull(cache.get(mTable, 1));
+			cache.put(mTable, 1, customer);
+			assertSame(customer, cache.get(mTable, 1));
+			cache.put(mTable, 1, replacement);
+			assertSame(replacement, cache.get(mTable, 1));
+			assertEquals(1, cache.size());
+
+			cache.put(mTable, "key", customer);
+			assertSame(customer, cache.get(mTable, "key"));
+			assertEquals(2, cache.size());
+
+			cache.remove(mTable, 1);
+			cache.remove(mTable, "key");
+			assertNull(cache.get(mTable, 1));
+			assertNull(cache.get(mTable, "key"));
+			assertEquals(0, cache.size());
+
+			assertEquals(policy.name(), 3, cache.getHitCount());
+			assertEquals(policy.name(), 3, cache.getMissCount());
+		}
+	}
+
+	public void testEvictsWhenFull() {
+		for (EntityCache.Policy policy : EntityCache.Policy.values()) {
+			final EntityCache cache = EntityCache.create(policy, 4, 0);
+			for (int i = 0; i < 10; i++) {
+				cache.put(mTable, i, new Customer(i, "Customer"));
+			}
+
+			assertEquals(policy.name(), 4, cache.size());
+			assertEquals(policy.name(), 6, cache.getEvictionCount());
+			assertNotNull(cache.get(mTable, 9));
+		}
+	}
+
+	public void testClockSecondChance() {
+		final EntityCache cache = new ClockEntityCache(4);
+		for (int i = 1; i <= 4; i++) {
+			cache.put(mTable, i, new Customer(i, "Customer"));
+		}
+		cache.get(mTable, 1);
+		cache.get(mTable, 2);
+		cache.get(mTable, 3);
+
+		// the only model not referenced since it was added
+		cache.put(mTable, 5, new Customer(5, "Customer"));
+		assertNull(cache.get(mTable, 4));
+
+		// the sweep cleared the references, so the oldest goes next
+		cache.put(mTable, 6, new Customer(6, "Customer"));
+		assertNull(cache.get(mTable, 1));
+		assertNotNull(cache.get(mTable, 2));
+		assertNotNull(cache.get(mTable, 3));
+		assertEquals(2, cache.getEvictionCount());
+	}
+
+	public void testWeight() {
+		final int weight = mTable.estimateSize(new Customer(0, "Customer"));
+		for (EntityCache.Policy policy : EntityCache.Policy.values()) {
+			final long maxBytes = 2 * weight + weight / 2;
+			final EntityCache cache = EntityCache.create(policy, 8, maxBytes);
+			for (int i = 0; i < 3; i++) {
+				cache.put(mTable, i, new Customer(i, "Customer"));
+			}
+
+			assertEquals(policy.name(), 2, cache.size());
+			assertEquals(policy.name(), 2 * weight, cache.getWeight());
+			assertEquals(policy.name(), maxBytes, cache.getMaxWeight());
+			assertNotNull(cache.get(mTable, 2));
+
+			cache.remove(mTable, 2);
+			assertEquals(policy.name(), weight, cache.getWeight());
+		}
+	}
+
+	public void testWeightReplaced() {
+		final EntityCache cache = new ClockEntityCache(8, 1024 * 1024);
+		cache.put(mTable, 1, new Customer(1, "Customer"));
+		final long weight = cache.getWeight();
+
+		cache.put(mTable, 1, new Customer(1, "A longer customer name"));
+
+		assertEquals(weight + 2 * ("A longer customer name".length() - "Customer".length()), cache.getWeight());
+	}
+
+	public void testTableBudget() {
+		final TableInfo notes = Cache.getTableInfo(NoteModel.class);
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 150; i++) {
+			text.append('a');
+		}
+		final EntityCache cache = new ClockEntityCache(8);
+
+		// a note weighs more than half of the budget of its table
+		cache.put(notes, 1, new NoteModel(1, text.toString()));
+		cache.put(notes, 2, new NoteModel(2, text.toString()));
+		for (int i = 0; i < 3; i++) {
+			cache.put(mTable, i, new Customer(i, "Customer"));
+		}
+
+		assertNull(cache.get(notes, 1));
+		assertNotNull(cache.get(notes, 2));
+		assertEquals(4, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	public void testTrimMemory() {
+		final EntityCache cache = Cache.getEntityCache();
+		Cache.clear();
+		for (int i = 0; i < 8; i++) {
+			Cache.addEntity(new Customer(i, "Customer"));
+		}
+
+		// far below the fraction kept
+		Cache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+		assertEquals(8, cache.size());
+
+		Cache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+		assertEquals(0, cache.size());
+	}
+
+	public void testTrim() {
+		for (EntityCache.Policy policy : EntityCache.Policy.values()) {
+			final EntityCache cache = EntityCache.create(policy, 8, 0);
+			for (int i = 0; i < 8; i++) {
+				cache.put(mTable, i, new Customer(i, "Customer"));
+			}
+
+			cache.trim(0.5f);
+			assertEquals(policy.name(), 4, cache.size());
+			assertEquals(policy.name(), 8, cache.getMaxSize());
+
+			cache.trim(0);
+			assertEquals(policy.name(), 0, cache.size());
+
+			// keeps its limit
+			for (int i = 0; i < 8; i++) {
+				cache.put(mTable, i, new Customer(i, "Customer"));
+			}
+			assertEquals(policy.name(), 8, cache.size());
+		}
+	}
+
+	public void testClear() {
+		for (EntityCache.Policy policy : EntityCache.Policy.values()) {
+			final EntityCache cache = EntityCache.create(policy, 8, 1024 * 1024);
+			cache.put(mTable, 1, new Customer(1, "Customer"));
+			cache.put(mTable, "key", new Customer(2, "Customer"));
+
+			cache.clear();
+
+			assertEquals(policy.name(), 0, cache.size());
+			assertEquals(policy.name(), 0, cache.getWeight());
+			assertNull(cache.get(mTable, 1));
+			assertNull(cache.get(mTable, "key"));
+		}
+	}
+
+	public void testReusesRemovedIdSlots() {
+		final EntityCache cache = new ClockEntityCache(8);
+		final Customer kept = new Customer(0, "Customer");
+		cache.put(mTable, 0, kept);
+
+		// every removal leaves a tombstone that a later add reuses or a rebuild drops
+		for (int i = 1; i <= 10000; i++) {
+			final Customer customer = new Customer(i, "Customer");
+			cache.put(mTable, i, customer);
+			assertSame(customer, cache.get(mTable, i));
+			cache.remove(mTable, i);
+			assertNull(cache.get(mTable, i));
+		}
+
+		assertSame(kept, cache.get(mTable, 0));
+		assertEquals(1, cache.size());
+		assertEquals(0, cache.getEvictionCount());
+
+		final Customer readded = new Customer(1, "Customer");
+		cache.put(mTable, 1, readded);
+		assertSame(readded, cache.get(mTable, 1));
+		assertEquals(2, cache.size());
+	}
+
+	public void testConcurrentAccess() throws InterruptedException {
+		final EntityCache cache = new ClockEntityCache(64);
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int seed = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					final Random random = new Random(seed);
+					for (int i = 0; i < 20000; i++) {
+						final long id = random.nextInt(256);
+						final int operation = random.nextInt(4);
+						if (operation == 0) {
+							cache.put(mTable, id, new Customer(id, "Customer"));
+						} else if (operation == 1) {
+							cache.remove(mTable, id);
+						} else {
+							final IModel model = cache.get(mTable, id);
+							if (model != null && ((Customer) model).id != id) {
+								failure.set("Got customer " + ((Customer) model).id + " for id " + id);
+							}
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertNull(failure.get());
+		assertTrue(cache.size() <= cache.getMaxSize());
+	}
+}
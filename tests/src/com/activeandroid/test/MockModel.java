@@ -16,9 +16,19 @@ package com.activeandroid.test;
  * limitations under the License.
  */
 
-import com.activeandroid.IModel;
+import com.activeandroid.Model;
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.PrimaryKey;
 import com.activeandroid.annotation.Table;
 
 @Table(name = "MockModel")
-public class MockModel extends IModel {
+public class MockModel extends Model {
+	@PrimaryKey(type = PrimaryKey.Type.AUTO_INCREMENT)
+	@Column(name = "Id")
+	public long id;
+
+	@Override
+	public String getId() {
+		return String.valueOf(id);
+	}
 }
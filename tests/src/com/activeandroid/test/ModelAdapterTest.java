@@ -0,0 +1,206 @@
+package com.activeandroid.test;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import com.activeandroid.Cache;
+import com.activeandroid.ColumnBinder;
+import com.activeandroid.IModel;
+import com.activeandroid.IModelAdapter;
+import com.activeandroid.TableInfo;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.Select;
+
+import java.util.Arrays;
+
+/**
+ * Description: Tests that the {@link com.activeandroid.IModelAdapter} the activeandroid-compiler generates for the test
+ * models binds and loads like the reflective {@link com.activeandroid.ColumnBinder}, and is not used for a table with
+ * a column a {@link com.activeandroid.serializer.TypeSerializer} stores
+ */
+public class ModelAdapterTest extends ActiveAndroidTestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		new Delete().from(SerializedModel.class).execute();
+		new Delete().from(Order.class).execute();
+		new Delete().from(Customer.class).execute();
+		new Delete().from(CompositeModel.class).execute();
+		new Delete().from(AdapterModel.class).execute();
+		Cache.clear();
+	}
+
+	public void testForeignKey() throws Exception {
+		final Customer customer = new Customer(1, "Customer 1");
+		customer.save();
+
+		assertMatchesReflection(new Order(1, customer, 9.5));
+		assertMatchesReflection(new Order(2, null, 0));
+	}
+
+	public void testEnumAndPrimitives() throws Exception {
+		final AdapterModel model = new AdapterModel(1, 3);
+		model.shape = AdapterModel.Shape.SQUARE;
+		model.initial = 'a';
+		model.enabled = true;
+		model.count = 7;
+		model.ratio = 0.5f;
+		model.data = new byte[] { 1, 2, 3 };
+		model.label = "Label";
+
+		assertMatchesReflection(model);
+	}
+
+	public void testNullColumns() throws Exception {
+		assertMatchesReflection(new AdapterModel(2, 0));
+	}
+
+	public void testCompositeKey() throws Exception {
+		assertMatchesReflection(new CompositeModel("EU", 7, "Seven"));
+	}
+
+	public void testIndexedKeyNotBound() throws Exception {
+		// the IndexedKey column is part of the id but not of the primary key lookup
+		assertEquals(1, Cache.getTableInfo(AdapterModel.class).getPrimaryKeyBinders().length);
+
+		assertMatchesReflection(new AdapterModel(3, 5));
+	}
+
+	public void testAdapterIgnoredForSerializedColumn() {
+		assertNull(Cache.getTableInfo(SerializedModel.class).getModelAdapter());
+	}
+
+	public void testSerializerUsed() {
+		new SerializedModel(1, SerializedModel.Color.BLUE).save();
+
+		final Cursor cursor = new Select().from(SerializedModel.class).getCursor();
+		try {
+			assertTrue(cursor.moveToFirst());
+			assertEquals(SerializedModel.Color.BLUE.ordinal(), cursor.getInt(cursor.getColumnIndex("Color")));
+		}
+		finally {
+			cursor.close();
+		}
+
+		Cache.clear();
+		final SerializedModel model = new Select().from(SerializedModel.class).where("Id = ?", 1).executeSingle();
+		assertEquals(SerializedModel.Color.BLUE, model.color);
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Compares every method of the generated adapter with the {@link com.activeandroid.ColumnBinder} of each column
+	 */
+	@SuppressWarnings("unchecked")
+	private void assertMatchesReflection(IModel model) throws Exception {
+		final TableInfo tableInfo = Cache.getTableInfo(model.getClass());
+		final IModelAdapter adapter = tableInfo.getModelAdapter();
+		assertNotNull("No adapter generated for " + tableInfo.getTableName(), adapter);
+		final ColumnBinder[] binders = tableInfo.getColumnBinders();
+
+		assertEquals(model.getClass(), adapter.newInstance().getClass());
+
+		final ContentValues values = new ContentValues();
+		adapter.bindToContentValues(values, model);
+		assertValuesEqual(getValues(binders, model), values);
+
+		final String[] columnNames = adapter.getColumnNames();
+		assertEquals(binders.length, columnNames.length);
+		SQLiteStatement statement = compileQuote(columnNames.length);
+		try {
+			adapter.bindToStatement(statement, model);
+			final String bound = statement.simpleQueryForString();
+			statement.clearBindings();
+			for (int i = 0; i < columnNames.length; i++) {
+				getBinder(binders, columnNames[i]).bind(model, statement, i + 1);
+			}
+			assertEquals(statement.simpleQueryForString(), bound);
+		}
+		finally {
+			statement.close();
+		}
+
+		final ColumnBinder[] primaryKeys = tableInfo.getPrimaryKeyBinders();
+		statement = compileQuote(primaryKeys.length);
+		try {
+			adapter.bindPrimaryKeys(statement, model, 1);
+			final String bound = statement.simpleQueryForString();
+			statement.clearBindings();
+			for (int i = 0; i < primaryKeys.length; i++) {
+				primaryKeys[i].bind(model, statement, i + 1);
+			}
+			assertEquals(statement.simpleQueryForString(), bound);
+		}
+		finally {
+			statement.close();
+		}
+
+		new Delete().from(model.getClass()).execute();
+		model.save();
+		final Cursor cursor = Cache.openDatabase().rawQuery("SELECT * FROM " + tableInfo.getTableName(), null);
+		try {
+			assertTrue(cursor.moveToFirst());
+
+			final IModel loaded = (IModel) adapter.newInstance();
+			adapter.loadFromCursor(cursor, loaded);
+
+			final IModel reflected = model.getClass().newInstance();
+			for (ColumnBinder binder : binders) {
+				binder.load(reflected, cursor, cursor.getColumnIndex(binder.getColumnName()));
+			}
+
+			assertValuesEqual(getValues(binders, reflected), getValues(binders, loaded));
+			assertValuesEqual(getValues(binders, model), getValues(binders, loaded));
+		}
+		finally {
+			cursor.close();
+		}
+	}
+
+	private static ContentValues getValues(ColumnBinder[] binders, IModel model) throws Exception {
+		final ContentValues values = new ContentValues();
+		for (ColumnBinder binder : binders) {
+			binder.bind(model, values);
+		}
+		return values;
+	}
+
+	private static ColumnBinder getBinder(ColumnBinder[] binders, String bindName) {
+		for (ColumnBinder binder : binders) {
+			if (binder.getBindName().equals(bindName)) {
+				return binder;
+			}
+		}
+		throw new AssertionError("No column bound as " + bindName);
+	}
+
+	/**
+	 * Compiles a statement returning its arguments as SQL literals, so both the value and the type bound can be compared
+	 */
+	private static SQLiteStatement compileQuote(int count) {
+		final StringBuilder sql = new StringBuilder("SELECT ");
+		for (int i = 0; i < count; i++) {
+			sql.append(i > 0 ? " || ',' || quote(?)" : "quote(?)");
+		}
+		return Cache.openDatabase().compileStatement(sql.toString());
+	}
+
+	private static void assertValuesEqual(ContentValues expected, ContentValues actual) {
+		assertEquals(expected.size(), actual.size());
+		for (String key : expected.keySet()) {
+			assertTrue(key, actual.containsKey(key));
+			final Object value = expected.get(key);
+			if (value instanceof byte[]) {
+				assertTrue(key, Arrays.equals((byte[]) value, actual.getAsByteArray(key)));
+			}
+			else {
+				assertEquals(key, value, actual.get(key));
+			}
+		}
+	}
+}
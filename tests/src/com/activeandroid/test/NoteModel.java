@@ -0,0 +1,32 @@
+package com.activeandroid.test;
+
+import com.activeandroid.Model;
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.PrimaryKey;
+import com.activeandroid.annotation.Table;
+
+/**
+ * Description: A model with its own entity cache budget
+ */
+@Table(name = "NoteModel", cacheMaxBytes = 500)
+public class NoteModel extends Model {
+	@PrimaryKey
+	@Column(name = "Id")
+	public long id;
+
+	@Column(name = "Text")
+	public String text;
+
+	public NoteModel() {
+	}
+
+	public NoteModel(long id, String text) {
+		this.id = id;
+		this.text = text;
+	}
+
+	@Override
+	public String getId() {
+		return String.valueOf(id);
+	}
+}
@@ -0,0 +1,38 @@
+package com.activeandroid.test;
+
+import com.activeandroid.Model;
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.ForeignKey;
+import com.activeandroid.annotation.PrimaryKey;
+import com.activeandroid.annotation.Table;
+
+/**
+ * Description: A model with a foreign key to {@link com.activeandroid.test.Customer}, declared between other columns
+ */
+@Table(name = "Orders")
+public class Order extends Model {
+	@PrimaryKey
+	@Column(name = "Id")
+	public long id;
+
+	@Column(name = "Customer")
+	@ForeignKey(foreignColumn = "Id")
+	public Customer customer;
+
+	@Column(name = "Total")
+	public double total;
+
+	public Order() {
+	}
+
+	public Order(long id, Customer customer, double total) {
+		this.id = id;
+		this.customer = customer;
+		this.total = total;
+	}
+
+	@Override
+	public String getId() {
+		return String.valueOf(id);
+	}
+}
@@ -0,0 +1,37 @@
+package com.activeandroid.test;
+
+import com.activeandroid.Model;
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.PrimaryKey;
+import com.activeandroid.annotation.Table;
+
+/**
+ * Description: A model with a column stored by {@link ColorSerializer}, which the adapter generated for it does not
+ * know about
+ */
+@Table(name = "SerializedModel")
+public class SerializedModel extends Model {
+	public enum Color {
+		RED, GREEN, BLUE
+	}
+
+	@PrimaryKey
+	@Column(name = "Id")
+	public long id;
+
+	@Column(name = "Color")
+	public Color color;
+
+	public SerializedModel() {
+	}
+
+	public SerializedModel(long id, Color color) {
+		this.id = id;
+		this.color = color;
+	}
+
+	@Override
+	public String getId() {
+		return String.valueOf(id);
+	}
+}
@@ -0,0 +1,55 @@
+package com.activeandroid.test;
+
+import com.activeandroid.Cache;
+import com.activeandroid.TableInfo;
+import com.activeandroid.query.Delete;
+import com.activeandroid.util.SQLiteUtils;
+
+/**
+ * Description: Tests the primary key metadata and the size estimate {@link com.activeandroid.TableInfo} precomputes
+ */
+public class TableInfoTest extends ActiveAndroidTestCase {
+
+	public void testIntegerPrimaryKey() {
+		final TableInfo tableInfo = Cache.getTableInfo(Customer.class);
+
+		assertTrue(tableInfo.hasIntegerPrimaryKey());
+		assertArrayEquals(tableInfo.getPrimaryKeyColumnNames(), "Id");
+		assertEquals("Id=?", tableInfo.getPrimaryKeyWhere());
+		assertArrayEquals(tableInfo.getPrimaryKeyArguments("5"), "5");
+		assertEquals(5, tableInfo.getIntegerPrimaryKey(new Customer(5, "Customer")));
+	}
+
+	public void testCompositePrimaryKey() {
+		final TableInfo tableInfo = Cache.getTableInfo(CompositeModel.class);
+
+		assertFalse(tableInfo.hasIntegerPrimaryKey());
+		assertArrayEquals(tableInfo.getPrimaryKeyColumnNames(), "Region", "Number");
+		assertEquals("Region=? AND Number=?", tableInfo.getPrimaryKeyWhere());
+		assertArrayEquals(tableInfo.getPrimaryKeyArguments("eu,7"), "eu", "7");
+		assertEquals("Region='eu' AND Number=7", SQLiteUtils.getWhereFromEntityId(CompositeModel.class, "eu,7"));
+		assertEquals("Region='it''s' AND Number=7",
+				SQLiteUtils.getWhereStatement(new CompositeModel("it's", 7, null), tableInfo));
+	}
+
+	public void testSelectByEntityId() {
+		new Delete().from(CompositeModel.class).execute();
+		new CompositeModel("eu", 7, "Seven").save();
+		new CompositeModel("us", 7, "Other").save();
+		Cache.clear();
+
+		final CompositeModel model = SQLiteUtils.selectByEntityId(CompositeModel.class, "eu,7");
+
+		assertEquals("Seven", model.name);
+		assertNull(SQLiteUtils.selectByEntityId(CompositeModel.class, "eu,8"));
+	}
+
+	public void testEstimateSize() {
+		final TableInfo tableInfo = Cache.getTableInfo(Customer.class);
+		final int empty = tableInfo.estimateSize(new Customer(1, null));
+
+		assertTrue(empty > 0);
+		// two bytes a char
+		assertEquals(empty + 6, tableInfo.estimateSize(new Customer(1, "abc")));
+	}
+}
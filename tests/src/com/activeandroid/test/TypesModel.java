@@ -0,0 +1,78 @@
+package com.activeandroid.test;
+
+import com.activeandroid.Model;
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.PrimaryKey;
+import com.activeandroid.annotation.Table;
+
+import java.util.Date;
+
+/**
+ * Description: A model with a column of every type a {@link com.activeandroid.ColumnBinder} stores
+ */
+@Table(name = "TypesModel")
+public class TypesModel extends Model {
+	public enum Size {
+		SMALL, LARGE
+	}
+
+	@PrimaryKey(type = PrimaryKey.Type.AUTO_INCREMENT)
+	@Column(name = "Id")
+	public long id;
+
+	@Column(name = "IntValue")
+	public int intValue;
+
+	@Column(name = "LongValue")
+	public long longValue;
+
+	@Column(name = "DoubleValue")
+	public double doubleValue;
+
+	@Column(name = "BooleanValue")
+	public boolean booleanValue;
+
+	@Column(name = "ByteValue")
+	public byte byteValue;
+
+	@Column(name = "ShortValue")
+	public short shortValue;
+
+	@Column(name = "FloatValue")
+	public float floatValue;
+
+	@Column(name = "CharValue")
+	public char charValue;
+
+	@Column(name = "BoxedInteger")
+	public Integer boxedInteger;
+
+	@Column(name = "BoxedLong")
+	public Long boxedLong;
+
+	@Column(name = "BoxedDouble")
+	public Double boxedDouble;
+
+	@Column(name = "BoxedBoolean")
+	public Boolean boxedBoolean;
+
+	@Column(name = "StringValue")
+	public String stringValue;
+
+	@Column(name = "Bytes")
+	public byte[] bytes;
+
+	@Column(name = "BoxedBytes")
+	public Byte[] boxedBytes;
+
+	@Column(name = "Size")
+	public Size size;
+
+	@Column(name = "Date")
+	public Date date;
+
+	@Override
+	public String getId() {
+		return String.valueOf(id);
+	}
+}
@@ -0,0 +1,36 @@
+package com.activeandroid.test;
+
+import com.activeandroid.Model;
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.PrimaryKey;
+import com.activeandroid.annotation.Table;
+
+/**
+ * Description: A model saved with {@link com.activeandroid.annotation.Table.SaveMode#UPSERT} that has a unique column
+ */
+@Table(name = "UniqueModel", saveMode = Table.SaveMode.UPSERT)
+public class UniqueModel extends Model {
+	@PrimaryKey
+	@Column(name = "Id")
+	public long id;
+
+	@Column(name = "Code", unique = true)
+	public String code;
+
+	@Column(name = "Name")
+	public String name;
+
+	public UniqueModel() {
+	}
+
+	public UniqueModel(long id, String code, String name) {
+		this.id = id;
+		this.code = code;
+		this.name = name;
+	}
+
+	@Override
+	public String getId() {
+		return String.valueOf(id);
+	}
+}
@@ -0,0 +1,95 @@
+package com.activeandroid.test.manager;
+
+import com.activeandroid.Cache;
+import com.activeandroid.interfaces.CollectionReceiver;
+import com.activeandroid.manager.SingleDBManager;
+import com.activeandroid.query.Delete;
+import com.activeandroid.runtime.DBRequest;
+import com.activeandroid.runtime.DBRequestInfo;
+import com.activeandroid.runtime.DBRequestQueue;
+import com.activeandroid.test.ActiveAndroidTestCase;
+import com.activeandroid.test.Customer;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description: Tests the fetches of {@link com.activeandroid.manager.SingleDBManager} that merge in its queue
+ */
+public class SingleDBManagerTest extends ActiveAndroidTestCase {
+	private static final long TIMEOUT = 10000;
+
+	private DBRequestQueue mQueue;
+
+	private SingleDBManager mManager;
+
+	private final CountDownLatch mRelease = new CountDownLatch(1);
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		new Delete().from(Customer.class).execute();
+		new Customer(1, "Customer 1").save();
+		new Customer(2, "Customer 2").save();
+		Cache.clear();
+
+		// without read workers every request runs in order on the queue thread
+		mQueue = new DBRequestQueue("SingleDBManagerTest", 0);
+		mManager = new SingleDBManager("SingleDBManagerTest", true) {
+			@Override
+			public DBRequestQueue getQueue() {
+				return mQueue;
+			}
+		};
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mRelease.countDown();
+		mQueue.quit();
+		mQueue.join(TIMEOUT);
+		super.tearDown();
+	}
+
+	public void testMergedFetchesGetOwnLists() throws Exception {
+		final BlockingQueue<List<Customer>> received = new LinkedBlockingQueue<List<Customer>>();
+		final CollectionReceiver<Customer> receiver = new CollectionReceiver<Customer>() {
+			@Override
+			public void onCollectionReceived(List<Customer> object) {
+				received.add(object);
+			}
+		};
+
+		// hold the queue so both fetches wait in it and merge
+		holdQueue();
+		mManager.fetchAll(Customer.class, receiver);
+		mManager.fetchAll(Customer.class, receiver);
+		mRelease.countDown();
+
+		final List<Customer> first = received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+		final List<Customer> second = received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+		assertNotNull(first);
+		assertNotNull(second);
+		assertNotSame(first, second);
+		assertEquals(first, second);
+
+		first.clear();
+		assertEquals(2, second.size());
+	}
+
+	private void holdQueue() {
+		mQueue.add(new DBRequest(DBRequestInfo.create("hold", DBRequest.PRIORITY_UI)) {
+			@Override
+			public void run() {
+				try {
+					mRelease.await(TIMEOUT, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+	}
+}
@@ -16,9 +16,13 @@ package com.activeandroid.test.query;
  * limitations under the License.
  */
 
-import com.activeandroid.IModel;
+import com.activeandroid.Model;
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.PrimaryKey;
 import com.activeandroid.annotation.Table;
 import com.activeandroid.query.From;
+import com.activeandroid.query.Join;
+import com.activeandroid.query.QueryCache;
 import com.activeandroid.query.Select;
 import com.activeandroid.test.MockModel;
 
@@ -152,15 +156,92 @@ public class FromTest extends SqlableTestCase {
 					.as("a"));
 	}
 	
+	public void testSqlKeptUntilClauseChanges() {
+		final From query = from().where("Id = ?", 5);
+		final String sql = query.toSql();
+		assertSame(sql, query.toSql());
+
+		// new arguments for the same clause give the same SQL
+		query.where("Id = ?", 6);
+		assertEquals(sql, query.toSql());
+		assertArrayEquals(query.getArguments(), "6");
+
+		query.orderBy("Id DESC");
+		assertSqlEquals(SELECT_PREFIX + "WHERE Id = ? ORDER BY Id DESC", query);
+		query.limit(5);
+		assertSqlEquals(SELECT_PREFIX + "WHERE Id = ? ORDER BY Id DESC LIMIT 5", query);
+		query.offset(10).as("a");
+		assertSqlEquals(SELECT_PREFIX + "AS a WHERE Id = ? ORDER BY Id DESC LIMIT 5 OFFSET 10", query);
+		query.groupBy("Id").having("Id > 1");
+		assertSqlEquals(SELECT_PREFIX + "AS a WHERE Id = ? GROUP BY Id HAVING Id > 1 ORDER BY Id DESC LIMIT 5 OFFSET 10", query);
+	}
+	
+	public void testSqlWithJoinRebuilt() {
+		final From query = from().as("a");
+		final Join join = query.join(JoinModel.class);
+		assertSqlEquals(SELECT_PREFIX + "AS a JOIN JoinModel", query);
+
+		// the join changes after the SQL was built
+		join.as("b").on("a.Id = b.Id");
+		assertSqlEquals(SELECT_PREFIX + "AS a JOIN JoinModel AS b ON a.Id = b.Id", query);
+	}
+	
+	public void testSqlRebuiltWhenJoinAdded() {
+		final From query = from().as("a");
+		assertSqlEquals(SELECT_PREFIX + "AS a", query);
+
+		query.join(JoinModel.class).as("b").using("Id");
+		assertSqlEquals(SELECT_PREFIX + "AS a JOIN JoinModel AS b USING (Id)", query);
+		query.leftJoin(JoinModel2.class).on("a.Id = ?", 1);
+		assertSqlEquals(SELECT_PREFIX + "AS a JOIN JoinModel AS b USING (Id) LEFT JOIN JoinModel2 ON a.Id = ?", query);
+	}
+	
+	public void testSqlSharedByShape() {
+		QueryCache.clear();
+		final String sql = from().where("Id = ?", 5).toSql();
+
+		// a new query of the same shape reuses the SQL, whatever its arguments
+		assertSame(sql, from().where("Id = ?", 6).toSql());
+		assertEquals(1, QueryCache.size());
+
+		assertNotSame(sql, from().where("Id = ?", 5).orderBy("Id").toSql());
+		assertNotSame(sql, new Select().all().from(JoinModel.class).where("Id = ?", 5).toSql());
+		assertEquals(3, QueryCache.size());
+	}
+	
+	public void testJoinsInShape() {
+		final String sql = from().as("a").join(JoinModel.class).as("b").on("a.Id = b.Id").toSql();
+
+		assertSame(sql, from().as("a").join(JoinModel.class).as("b").on("a.Id = b.Id").toSql());
+		assertSqlEquals(SELECT_PREFIX + "AS a JOIN JoinModel AS b USING (Id)",
+				from().as("a").join(JoinModel.class).as("b").using("Id"));
+	}
+	
 	private From from() {
 		return new Select().all().from(MockModel.class);
 	}
 	
 	@Table(name = "JoinModel")
-	private static class JoinModel extends IModel {
+	private static class JoinModel extends Model {
+		@PrimaryKey
+		@Column(name = "Id")
+		public long id;
+
+		@Override
+		public String getId() {
+			return String.valueOf(id);
+		}
 	}
 	
 	@Table(name = "JoinModel2")
-	private static class JoinModel2 extends IModel {
+	private static class JoinModel2 extends Model {
+		@PrimaryKey
+		@Column(name = "Id")
+		public long id;
+
+		@Override
+		public String getId() {
+			return String.valueOf(id);
+		}
 	}
 }
@@ -0,0 +1,94 @@
+package com.activeandroid.test.query;
+
+import com.activeandroid.Cache;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.LazyModelList;
+import com.activeandroid.query.QueryListener;
+import com.activeandroid.query.QueryMonitor;
+import com.activeandroid.query.QueryStats;
+import com.activeandroid.query.Select;
+import com.activeandroid.test.ActiveAndroidTestCase;
+import com.activeandroid.test.Customer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Description: Tests loading rows as they are read with {@link com.activeandroid.query.From#executeLazy(int)}
+ */
+public class LazyModelListTest extends ActiveAndroidTestCase {
+	private static final int COUNT = 10;
+
+	private final List<QueryStats> mQueries = new ArrayList<QueryStats>();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		new Delete().from(Customer.class).execute();
+		for (int i = 1; i <= COUNT; i++) {
+			new Customer(i, "Customer " + i).save();
+		}
+		Cache.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		QueryMonitor.setListener(null);
+		super.tearDown();
+	}
+
+	public void testGet() {
+		final LazyModelList<Customer> customers = new Select().from(Customer.class).orderBy("Id").executeLazy(3);
+		try {
+			assertEquals(COUNT, customers.size());
+			for (int i = COUNT - 1; i >= 0; i--) {
+				assertEquals(i + 1, customers.get(i).id);
+			}
+			assertSame(customers.get(0), customers.get(0));
+		}
+		finally {
+			customers.close();
+		}
+	}
+
+	public void testClose() {
+		final LazyModelList<Customer> customers = new Select().from(Customer.class).orderBy("Id").executeLazy(3);
+		final Customer first = customers.get(0);
+		customers.close();
+		assertTrue(customers.isClosed());
+
+		// models in the window are still readable
+		assertSame(first, customers.get(0));
+		try {
+			customers.get(COUNT - 1);
+			fail();
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		customers.close();
+	}
+
+	public void testEmpty() {
+		final LazyModelList<Customer> customers = new Select().from(Customer.class).where("Id < 0").executeLazy();
+		assertEquals(0, customers.size());
+		assertTrue(customers.isEmpty());
+		customers.close();
+	}
+
+	public void testMonitored() {
+		QueryMonitor.setListener(new QueryListener() {
+			@Override
+			public void onQuery(QueryStats stats) {
+				mQueries.add(stats);
+			}
+		});
+
+		final LazyModelList<Customer> customers = new Select().from(Customer.class).where("Id > ?", 5).executeLazy();
+		customers.close();
+
+		assertEquals(1, mQueries.size());
+		assertEquals(COUNT - 5, mQueries.get(0).getRowCount());
+		assertEquals(1, mQueries.get(0).getArgumentCount());
+	}
+}
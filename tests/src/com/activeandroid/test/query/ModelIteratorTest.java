@@ -0,0 +1,92 @@
+package com.activeandroid.test.query;
+
+import com.activeandroid.Cache;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.ModelConsumer;
+import com.activeandroid.query.ModelIterator;
+import com.activeandroid.query.QueryListener;
+import com.activeandroid.query.QueryMonitor;
+import com.activeandroid.query.QueryStats;
+import com.activeandroid.query.Select;
+import com.activeandroid.test.ActiveAndroidTestCase;
+import com.activeandroid.test.Customer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Description: Tests streaming query results with {@link com.activeandroid.query.From#iterate(boolean)}
+ */
+public class ModelIteratorTest extends ActiveAndroidTestCase {
+	private static final int COUNT = 5;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		new Delete().from(Customer.class).execute();
+		for (int i = 1; i <= COUNT; i++) {
+			new Customer(i, i % 2 == 0 ? "Customer " + i : null).save();
+		}
+		Cache.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		QueryMonitor.setListener(null);
+		super.tearDown();
+	}
+
+	public void testIterate() {
+		final ModelIterator<Customer> iterator = new Select().from(Customer.class).orderBy("Id").iterate();
+		int count = 0;
+		Customer previous = null;
+		while (iterator.hasNext()) {
+			final Customer customer = iterator.next();
+			assertEquals(++count, customer.id);
+			assertNotSame(previous, customer);
+			previous = customer;
+		}
+		assertEquals(COUNT, count);
+	}
+
+	public void testReuseInstance() {
+		final ModelIterator<Customer> iterator = new Select().from(Customer.class).orderBy("Id").iterate(true);
+		final Customer first = iterator.next();
+		assertNull(first.name);
+		final Customer second = iterator.next();
+		assertSame(first, second);
+		assertEquals("Customer 2", second.name);
+
+		// the null column of the next row clears the name the previous one set
+		assertNull(iterator.next().name);
+		iterator.close();
+		assertFalse(iterator.hasNext());
+	}
+
+	public void testForEachStops() {
+		final List<Customer> customers = new ArrayList<Customer>();
+		new Select().from(Customer.class).orderBy("Id").forEach(new ModelConsumer<Customer>() {
+			@Override
+			public boolean onModel(Customer model) {
+				customers.add(model);
+				return customers.size() < 2;
+			}
+		});
+		assertEquals(2, customers.size());
+	}
+
+	public void testMonitored() {
+		final List<QueryStats> queries = new ArrayList<QueryStats>();
+		QueryMonitor.setListener(new QueryListener() {
+			@Override
+			public void onQuery(QueryStats stats) {
+				queries.add(stats);
+			}
+		});
+
+		new Select().from(Customer.class).iterate().close();
+
+		assertEquals(1, queries.size());
+		assertEquals(COUNT, queries.get(0).getRowCount());
+	}
+}
@@ -0,0 +1,161 @@
+package com.activeandroid.test.query;
+
+import com.activeandroid.Cache;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.From;
+import com.activeandroid.query.Page;
+import com.activeandroid.query.PageToken;
+import com.activeandroid.query.QueryListener;
+import com.activeandroid.query.QueryMonitor;
+import com.activeandroid.query.QueryStats;
+import com.activeandroid.query.Select;
+import com.activeandroid.test.ActiveAndroidTestCase;
+import com.activeandroid.test.Customer;
+import com.activeandroid.test.Order;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Description: Tests keyset pagination with {@link com.activeandroid.query.From#executePage(int, com.activeandroid.query.PageToken)}
+ */
+public class PageTest extends ActiveAndroidTestCase {
+	/**
+	 * Totals that differ past the 15 digits SQLite prints a REAL with, in the order of their ids
+	 */
+	private static final double[] TOTALS = { 1.0, 1.0000000000000002, 1.0000000000000004, 1.0000000000000007, 2.5, 2.5 };
+
+	private final List<QueryStats> mQueries = new ArrayList<QueryStats>();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		new Delete().from(Order.class).execute();
+		new Delete().from(Customer.class).execute();
+		final Customer customer = new Customer(1, "Customer");
+		customer.save();
+		for (int i = 0; i < TOTALS.length; i++) {
+			new Order(i + 1, customer, TOTALS[i]).save();
+		}
+		Cache.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		QueryMonitor.setListener(null);
+		super.tearDown();
+	}
+
+	public void testPagesByPrimaryKey() {
+		final List<Long> ids = readAll(new Select().from(Order.class), 4);
+		assertEquals(TOTALS.length, ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			assertEquals(i + 1, (long) ids.get(i));
+		}
+	}
+
+	public void testPagesByRealColumn() {
+		// one row a page, so every page starts from the total of the row before
+		final List<Long> ids = readAll(new Select().from(Order.class).orderBy("Total"), 1);
+		assertEquals(TOTALS.length, ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			assertEquals(i + 1, (long) ids.get(i));
+		}
+	}
+
+	public void testPagesDescending() {
+		final List<Long> ids = readAll(new Select().from(Order.class).orderBy("Total DESC"), 2);
+		assertEquals(TOTALS.length, ids.size());
+		// the ties on the total are broken by the ascending primary key
+		assertEquals(5, (long) ids.get(0));
+		assertEquals(6, (long) ids.get(1));
+		for (int i = 2; i < ids.size(); i++) {
+			assertEquals(TOTALS.length - i, (long) ids.get(i));
+		}
+	}
+
+	public void testLastPage() {
+		final Page<Order> page = new Select().from(Order.class).executePage(TOTALS.length, null);
+		assertEquals(TOTALS.length, page.getItems().size());
+		assertFalse(page.hasNext());
+		assertNull(page.getNextToken());
+	}
+
+	public void testSql() {
+		QueryMonitor.setListener(new QueryListener() {
+			@Override
+			public void onQuery(QueryStats stats) {
+				mQueries.add(stats);
+			}
+		});
+
+		final Page<Order> first = new Select().from(Order.class).where("Customer = ?", 1).orderBy("Total DESC")
+				.executePage(2, null);
+		new Select().from(Order.class).where("Customer = ?", 1).orderBy("Total DESC")
+				.executePage(2, first.getNextToken());
+
+		assertEquals(2, mQueries.size());
+		assertEquals("SELECT * FROM Orders WHERE Customer = ? ORDER BY Total DESC, Id ASC LIMIT 3",
+				mQueries.get(0).getSql());
+		assertEquals(1, mQueries.get(0).getArgumentCount());
+		assertEquals(3, mQueries.get(0).getRowCount());
+		assertEquals("SELECT * FROM Orders WHERE (Customer = ?) AND ((Total<?) OR (Total=? AND Id>?)) "
+				+ "ORDER BY Total DESC, Id ASC LIMIT 3", mQueries.get(1).getSql());
+		assertEquals(4, mQueries.get(1).getArgumentCount());
+	}
+
+	public void testTokenOfOtherOrder() {
+		final PageToken token = new Select().from(Order.class).orderBy("Total").executePage(1, null).getNextToken();
+		try {
+			new Select().from(Order.class).orderBy("Total DESC").executePage(1, token);
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testSerializedToken() throws Exception {
+		final PageToken token = new Select().from(Order.class).orderBy("Total").executePage(2, null).getNextToken();
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream output = new ObjectOutputStream(bytes);
+		output.writeObject(token);
+		output.close();
+		final PageToken restored = (PageToken) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+				.readObject();
+
+		final Page<Order> page = new Select().from(Order.class).orderBy("Total").executePage(2, restored);
+		assertEquals(3, page.getItems().get(0).id);
+	}
+
+	public void testInvalidPageSize() {
+		try {
+			new Select().from(Order.class).executePage(0, null);
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private static List<Long> readAll(From query, int pageSize) {
+		final List<Long> ids = new ArrayList<Long>();
+		PageToken token = null;
+		do {
+			final Page<Order> page = query.executePage(pageSize, token);
+			assertTrue(page.getItems().size() <= pageSize);
+			for (Order order : page.getItems()) {
+				ids.add(order.id);
+			}
+			token = page.getNextToken();
+		}
+		// a token that does not move past its row would repeat it forever
+		while (token != null && ids.size() <= TOTALS.length);
+		return ids;
+	}
+}
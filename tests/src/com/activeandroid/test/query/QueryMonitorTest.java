@@ -0,0 +1,136 @@
+package com.activeandroid.test.query;
+
+import com.activeandroid.ActiveAndroid;
+import com.activeandroid.Cache;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.QueryListener;
+import com.activeandroid.query.QueryMonitor;
+import com.activeandroid.query.QueryStats;
+import com.activeandroid.query.Select;
+import com.activeandroid.query.Update;
+import com.activeandroid.test.ActiveAndroidTestCase;
+import com.activeandroid.test.Customer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Description: Tests the stats {@link com.activeandroid.query.QueryMonitor} reports for each kind of query
+ */
+public class QueryMonitorTest extends ActiveAndroidTestCase {
+	private static final int COUNT = 5;
+
+	private final List<QueryStats> mQueries = new ArrayList<QueryStats>();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		new Delete().from(Customer.class).execute();
+		for (int i = 1; i <= COUNT; i++) {
+			new Customer(i, "Customer " + i).save();
+		}
+		Cache.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		QueryMonitor.setListener(null);
+		QueryMonitor.setSlowQueryThreshold(0);
+		super.tearDown();
+	}
+
+	public void testDisabled() {
+		assertFalse(QueryMonitor.isEnabled());
+		QueryMonitor.setSlowQueryThreshold(1000);
+		assertTrue(QueryMonitor.isEnabled());
+		QueryMonitor.setSlowQueryThreshold(0);
+		listen();
+		assertTrue(QueryMonitor.isEnabled());
+		QueryMonitor.setListener(null);
+
+		new Select().from(Customer.class).execute();
+
+		assertFalse(QueryMonitor.isEnabled());
+		assertTrue(mQueries.isEmpty());
+	}
+
+	public void testExecute() {
+		listen();
+		final String sql = new Select().from(Customer.class).where("Id > ?", 1).toSql();
+
+		final List<Customer> customers = new Select().from(Customer.class).where("Id > ?", 1).execute();
+
+		assertEquals(COUNT - 1, customers.size());
+		assertEquals(1, mQueries.size());
+		final QueryStats stats = mQueries.get(0);
+		assertEquals(sql, stats.getSql());
+		assertEquals(1, stats.getArgumentCount());
+		assertEquals(COUNT - 1, stats.getRowCount());
+		assertEquals(stats.getQueryTime() + stats.getHydrationTime(), stats.getTotalTime());
+		assertFalse(stats.isSlow());
+		assertNull(stats.getQueryPlan());
+	}
+
+	public void testExecuteSingle() {
+		listen();
+
+		final Customer customer = new Select().from(Customer.class).where("Id = ?", 2).executeSingle();
+
+		assertEquals("Customer 2", customer.name);
+		assertEquals(1, mQueries.size());
+		assertEquals(1, mQueries.get(0).getRowCount());
+	}
+
+	public void testExecuteCount() {
+		listen();
+
+		assertEquals(COUNT, new Select().count().from(Customer.class).executeCount());
+
+		assertEquals(1, mQueries.size());
+		assertEquals(1, mQueries.get(0).getRowCount());
+	}
+
+	public void testUpdate() {
+		listen();
+
+		new Update(Customer.class).set("Name = ?", "Renamed").where("Id = ?", 3).execute();
+
+		assertEquals(1, mQueries.size());
+		assertEquals(2, mQueries.get(0).getArgumentCount());
+		assertEquals(-1, mQueries.get(0).getRowCount());
+		assertEquals("Renamed", new Select().from(Customer.class).where("Id = ?", 3).<Customer>executeSingle().name);
+	}
+
+	public void testSlowQueryPlan() {
+		ActiveAndroid.beginTransaction();
+		try {
+			for (int i = COUNT + 1; i <= 1000; i++) {
+				new Customer(i, "Customer " + i).save();
+			}
+			ActiveAndroid.setTransactionSuccessful();
+		}
+		finally {
+			ActiveAndroid.endTransaction();
+		}
+		listen();
+		QueryMonitor.setSlowQueryThreshold(1);
+
+		// a million rows to count takes well over a millisecond
+		new Select().count().from(Customer.class).as("a").crossJoin(Customer.class).as("b").on("a.Id <> b.Id").executeCount();
+
+		assertEquals(1, mQueries.size());
+		final QueryStats stats = mQueries.get(0);
+		assertTrue(stats.isSlow());
+		assertTrue(stats.getTotalTime() >= 1000);
+		assertTrue(stats.getQueryPlan(), stats.getQueryPlan().contains("SCAN"));
+	}
+
+	private void listen() {
+		QueryMonitor.setListener(new QueryListener() {
+			@Override
+			public void onQuery(QueryStats stats) {
+				mQueries.add(stats);
+			}
+		});
+	}
+}
@@ -0,0 +1,180 @@
+package com.activeandroid.test.runtime;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.activeandroid.Cache;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.Select;
+import com.activeandroid.runtime.BatchSaveJournal;
+import com.activeandroid.test.ActiveAndroidTestCase;
+import com.activeandroid.test.Customer;
+import com.activeandroid.test.MockModel;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+/**
+ * Description: Tests recording models in a {@link com.activeandroid.runtime.BatchSaveJournal} and replaying them
+ */
+public class BatchSaveJournalTest extends ActiveAndroidTestCase {
+	private static final String NAME = "Test";
+
+	private File mDirectory;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mDirectory = new File(getApplication().getCacheDir(), "journal");
+		mDirectory.mkdirs();
+		deleteSegments();
+
+		new Delete().from(Customer.class).execute();
+		new Delete().from(MockModel.class).execute();
+		Cache.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		deleteSegments();
+		super.tearDown();
+	}
+
+	public void testReplay() {
+		final BatchSaveJournal journal = new BatchSaveJournal(mDirectory, NAME);
+		final Customer customer = new Customer(1, "First");
+		journal.append(customer);
+		journal.append(new Customer(2, "Other"));
+		customer.name = "Second";
+		journal.append(customer);
+		journal.sync();
+
+		// a new journal finds the segments a crash left behind
+		assertEquals(2, new BatchSaveJournal(mDirectory, NAME).replay(Cache.openDatabase()));
+		assertEquals(2, new Select().from(Customer.class).execute().size());
+		assertEquals("Second", loadCustomer(1).name);
+		assertEquals(0, new BatchSaveJournal(mDirectory, NAME).replay(Cache.openDatabase()));
+	}
+
+	public void testReplayUpdatesExistingRow() {
+		new Customer(1, "Saved").save();
+
+		final BatchSaveJournal journal = new BatchSaveJournal(mDirectory, NAME);
+		journal.append(new Customer(1, "Journaled"));
+
+		assertEquals(1, new BatchSaveJournal(mDirectory, NAME).replay(Cache.openDatabase()));
+		assertEquals(1, new Select().from(Customer.class).execute().size());
+		assertEquals("Journaled", loadCustomer(1).name);
+	}
+
+	public void testReplaySkipsRemoved() {
+		final BatchSaveJournal journal = new BatchSaveJournal(mDirectory, NAME);
+		final Customer customer = new Customer(1, "Removed");
+		journal.append(customer);
+		journal.append(new Customer(2, "Kept"));
+		journal.remove(customer);
+
+		assertEquals(1, new BatchSaveJournal(mDirectory, NAME).replay(Cache.openDatabase()));
+		assertNull(loadCustomer(1));
+		assertNotNull(loadCustomer(2));
+	}
+
+	public void testReplayNewModelsByInstance() {
+		final BatchSaveJournal journal = new BatchSaveJournal(mDirectory, NAME);
+		final MockModel model = new MockModel();
+		journal.append(model);
+		journal.append(new MockModel());
+		journal.roll();
+		// the same instance in a later segment is still the same row
+		journal.append(model);
+
+		assertEquals(2, new BatchSaveJournal(mDirectory, NAME).replay(Cache.openDatabase()));
+		assertEquals(2, new Select().from(MockModel.class).execute().size());
+	}
+
+	public void testCommit() {
+		final BatchSaveJournal journal = new BatchSaveJournal(mDirectory, NAME);
+		journal.append(new Customer(1, "Committed"));
+		final File segment = journal.roll();
+		assertNotNull(segment);
+		assertTrue(segment.exists());
+		journal.append(new Customer(2, "Pending"));
+
+		journal.commit(segment);
+		assertFalse(segment.exists());
+
+		assertEquals(1, new BatchSaveJournal(mDirectory, NAME).replay(Cache.openDatabase()));
+		assertNull(loadCustomer(1));
+		assertNotNull(loadCustomer(2));
+	}
+
+	public void testCorruptSegmentKept() throws Exception {
+		final BatchSaveJournal journal = new BatchSaveJournal(mDirectory, NAME);
+		journal.append(new Customer(1, "Corrupt"));
+		final File segment = journal.roll();
+		journal.append(new Customer(2, "Intact"));
+		journal.sync();
+
+		// flip a byte of the first record so its CRC fails
+		final RandomAccessFile file = new RandomAccessFile(segment, "rw");
+		try {
+			file.seek(6);
+			final int value = file.read();
+			file.seek(6);
+			file.write(value ^ 0xFF);
+		}
+		finally {
+			file.close();
+		}
+
+		assertEquals(1, new BatchSaveJournal(mDirectory, NAME).replay(Cache.openDatabase()));
+		assertNull(loadCustomer(1));
+		assertNotNull(loadCustomer(2));
+
+		// moved aside rather than deleted, and not replayed again
+		assertFalse(segment.exists());
+		assertTrue(new File(segment.getPath() + ".corrupt").exists());
+		assertEquals(0, new BatchSaveJournal(mDirectory, NAME).replay(Cache.openDatabase()));
+	}
+
+	public void testReplaySkipsFailingRow() {
+		final BatchSaveJournal journal = new BatchSaveJournal(mDirectory, NAME);
+		journal.append(new Customer(1, "Rejected"));
+		journal.append(new Customer(2, "Accepted"));
+		journal.sync();
+
+		final SQLiteDatabase database = Cache.openDatabase();
+		database.execSQL("CREATE TEMP TRIGGER RejectInsert BEFORE INSERT ON Customer WHEN NEW.Id = 1 "
+				+ "BEGIN SELECT RAISE(ABORT, 'rejected'); END");
+		database.execSQL("CREATE TEMP TRIGGER RejectUpdate BEFORE UPDATE ON Customer WHEN NEW.Id = 1 "
+				+ "BEGIN SELECT RAISE(ABORT, 'rejected'); END");
+		try {
+			assertEquals(1, new BatchSaveJournal(mDirectory, NAME).replay(database));
+		}
+		finally {
+			database.execSQL("DROP TRIGGER RejectInsert");
+			database.execSQL("DROP TRIGGER RejectUpdate");
+		}
+
+		assertNull(loadCustomer(1));
+		assertNotNull(loadCustomer(2));
+		assertEquals(0, new BatchSaveJournal(mDirectory, NAME).replay(database));
+	}
+
+	public void testRollWithoutRecords() {
+		assertNull(new BatchSaveJournal(mDirectory, NAME).roll());
+	}
+
+	private void deleteSegments() {
+		final File[] files = mDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+	}
+
+	private static Customer loadCustomer(long id) {
+		Cache.clear();
+		return new Select().from(Customer.class).where("Id = ?", id).executeSingle();
+	}
+}
@@ -0,0 +1,123 @@
+package com.activeandroid.test.runtime;
+
+import com.activeandroid.Cache;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.Select;
+import com.activeandroid.runtime.BatchSavePolicy;
+import com.activeandroid.runtime.DBBatchSaveQueue;
+import com.activeandroid.runtime.QueueMetrics;
+import com.activeandroid.runtime.QueueMetricsListener;
+import com.activeandroid.test.ActiveAndroidTestCase;
+import com.activeandroid.test.Customer;
+import com.activeandroid.test.MockModel;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description: Tests that the {@link com.activeandroid.runtime.DBBatchSaveQueue} saves each pending model once
+ */
+public class DBBatchSaveQueueTest extends ActiveAndroidTestCase {
+	private static final long TIMEOUT = 10000;
+
+	private DBBatchSaveQueue mQueue;
+
+	private final BlockingQueue<Integer> mBatchSizes = new LinkedBlockingQueue<Integer>();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		new Delete().from(Customer.class).execute();
+		new Delete().from(MockModel.class).execute();
+		Cache.clear();
+
+		// only flushed by the tests, or by filling up
+		DBBatchSaveQueue.setPolicy(new BatchSavePolicy(3, TIMEOUT * 6, 0, false));
+		mQueue = new DBBatchSaveQueue();
+		mQueue.getMetrics().addListener(new QueueMetricsListener() {
+			@Override
+			public void onRequestExecuted(QueueMetrics metrics, int priority, long waitTime, long executionTime) {
+			}
+
+			@Override
+			public void onBatchSaved(QueueMetrics metrics, int priority, int batchSize, long waitTime, long executionTime) {
+				mBatchSizes.add(batchSize);
+			}
+		});
+		mQueue.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mQueue.quit();
+		mQueue.join(TIMEOUT);
+		DBBatchSaveQueue.setPolicy(BatchSavePolicy.DEFAULT);
+		super.tearDown();
+	}
+
+	public void testCoalescesSameModel() throws InterruptedException {
+		final Customer customer = new Customer(1, "First");
+		mQueue.add(customer);
+		customer.name = "Second";
+		mQueue.add(customer);
+		// another instance with the same primary key replaces the pending one
+		mQueue.add(new Customer(1, "Third"));
+		mQueue.flush();
+
+		assertEquals(1, awaitBatch());
+		assertEquals(1, new Select().from(Customer.class).execute().size());
+		assertEquals("Third", loadCustomer(1).name);
+	}
+
+	public void testNewModelsNotCoalesced() throws InterruptedException {
+		final MockModel model = new MockModel();
+		mQueue.add(model);
+		mQueue.add(model);
+		mQueue.add(new MockModel());
+		mQueue.flush();
+
+		// two instances without an assigned key are two rows, but one instance added twice is one
+		assertEquals(2, awaitBatch());
+		assertEquals(2, new Select().from(MockModel.class).execute().size());
+	}
+
+	public void testRemove() throws InterruptedException {
+		final Customer removed = new Customer(1, "Removed");
+		mQueue.addAll(Arrays.asList(removed, new Customer(2, "Kept")));
+		mQueue.remove(new Customer(1, "Same key"));
+		mQueue.flush();
+
+		assertEquals(1, awaitBatch());
+		assertNull(loadCustomer(1));
+		assertNotNull(loadCustomer(2));
+	}
+
+	public void testFlushesWhenFilled() throws InterruptedException {
+		mQueue.addAll(Arrays.asList(new Customer(1, "A"), new Customer(2, "B"), new Customer(3, "C")));
+
+		assertEquals(3, awaitBatch());
+		assertEquals(3, new Select().from(Customer.class).execute().size());
+	}
+
+	public void testAdaptiveBatchSize() {
+		final BatchSavePolicy policy = new BatchSavePolicy(10, 1000, 0, true);
+		assertEquals(20, policy.nextBatchSize(10, true));
+		assertEquals(10 * BatchSavePolicy.ADAPTIVE_GROWTH_LIMIT, policy.nextBatchSize(10 * BatchSavePolicy.ADAPTIVE_GROWTH_LIMIT, true));
+		assertEquals(20, policy.nextBatchSize(40, false));
+		assertEquals(10, policy.nextBatchSize(10, false));
+		assertEquals(10, new BatchSavePolicy(10, 1000, 0, false).nextBatchSize(10, true));
+	}
+
+	private int awaitBatch() throws InterruptedException {
+		final Integer batchSize = mBatchSizes.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+		assertNotNull("No batch was saved", batchSize);
+		return batchSize;
+	}
+
+	private static Customer loadCustomer(long id) {
+		Cache.clear();
+		return new Select().from(Customer.class).where("Id = ?", id).executeSingle();
+	}
+}
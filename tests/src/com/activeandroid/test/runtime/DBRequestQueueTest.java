@@ -0,0 +1,279 @@
+package com.activeandroid.test.runtime;
+
+import com.activeandroid.runtime.DBFetchRequest;
+import com.activeandroid.runtime.DBRequest;
+import com.activeandroid.runtime.DBRequestFuture;
+import com.activeandroid.runtime.DBRequestInfo;
+import com.activeandroid.runtime.DBRequestListener;
+import com.activeandroid.runtime.DBRequestQueue;
+import com.activeandroid.test.ActiveAndroidTestCase;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Description: Tests the {@link com.activeandroid.runtime.DBRequestFuture} a {@link com.activeandroid.runtime.DBRequestQueue}
+ * returns and the merging of identical requests
+ */
+public class DBRequestQueueTest extends ActiveAndroidTestCase {
+	private static final long TIMEOUT = 10000;
+
+	private DBRequestQueue mQueue;
+
+	private final CountDownLatch mBlocking = new CountDownLatch(1);
+
+	private final CountDownLatch mRelease = new CountDownLatch(1);
+
+	private final AtomicInteger mFetches = new AtomicInteger();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mQueue = new DBRequestQueue("DBRequestQueueTest", 0);
+		mQueue.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mRelease.countDown();
+		mQueue.quit();
+		mQueue.join(TIMEOUT);
+		super.tearDown();
+	}
+
+	public void testFetchResult() throws Exception {
+		final BlockingQueue<Integer> results = new LinkedBlockingQueue<Integer>();
+		final DBRequestFuture<Integer> future = mQueue.add(new CountingFetch(DBRequestInfo.create("fetch", DBRequest.PRIORITY_UI)));
+		future.addListener(new DBRequestListener<Integer>() {
+			@Override
+			public void onRequestFinished(Integer result) {
+				results.add(result);
+			}
+		});
+
+		assertEquals(Integer.valueOf(1), future.get(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals(Integer.valueOf(1), results.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertTrue(future.isDone());
+		assertFalse(future.isCancelled());
+	}
+
+	public void testTimeout() throws Exception {
+		block();
+		final DBRequestFuture<Integer> future = mQueue.add(new CountingFetch(DBRequestInfo.create("fetch", DBRequest.PRIORITY_UI)));
+
+		try {
+			future.get(10, TimeUnit.MILLISECONDS);
+			fail("The request ran while the queue was blocked");
+		} catch (TimeoutException e) {
+			// expected
+		}
+
+		mRelease.countDown();
+		assertEquals(Integer.valueOf(1), future.get(TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	public void testMergeIdenticalFetches() throws Exception {
+		block();
+		final DBRequestFuture<Integer> first = mQueue.add(new CountingFetch(keyed("first")));
+		final DBRequestFuture<Integer> second = mQueue.add(new CountingFetch(keyed("second")));
+		mRelease.countDown();
+
+		assertEquals(Integer.valueOf(1), first.get(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals(Integer.valueOf(1), second.get(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals(1, mFetches.get());
+	}
+
+	public void testCancelOneMergedFetch() throws Exception {
+		block();
+		final CountingFetch first = new CountingFetch(keyed("first"));
+		final DBRequestFuture<Integer> firstFuture = mQueue.add(first);
+		final DBRequestFuture<Integer> secondFuture = mQueue.add(new CountingFetch(keyed("second")));
+
+		// the request the other merged into keeps running for it
+		mQueue.cancel(first);
+		mRelease.countDown();
+
+		assertEquals(Integer.valueOf(1), secondFuture.get(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertTrue(firstFuture.isCancelled());
+		try {
+			firstFuture.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			fail("A cancelled handle returned a result");
+		} catch (CancellationException e) {
+			// expected
+		}
+	}
+
+	public void testCancelAllMergedFetches() throws Exception {
+		block();
+		final DBRequestFuture<Integer> first = mQueue.add(new CountingFetch(keyed("first")));
+		final DBRequestFuture<Integer> second = mQueue.add(new CountingFetch(keyed("second")));
+		final BlockingQueue<Integer> results = new LinkedBlockingQueue<Integer>();
+		first.addListener(new DBRequestListener<Integer>() {
+			@Override
+			public void onRequestFinished(Integer result) {
+				results.add(result);
+			}
+		});
+
+		first.cancel();
+		second.cancel();
+		mRelease.countDown();
+		awaitIdle();
+
+		assertEquals(0, mFetches.get());
+		assertTrue(results.isEmpty());
+	}
+
+	public void testCancelByName() throws Exception {
+		block();
+		final DBRequestFuture<Integer> future = mQueue.add(new CountingFetch(DBRequestInfo.create("sync", DBRequest.PRIORITY_LOW)));
+		mQueue.cancel("sync");
+		mRelease.countDown();
+		awaitIdle();
+
+		assertTrue(future.isCancelled());
+		assertEquals(0, mFetches.get());
+	}
+
+	public void testFailure() throws Exception {
+		final DBRequestQueue queue = new DBRequestQueue("DBRequestQueueTest failure", 0);
+		// the queue rethrows the error, which ends its thread
+		queue.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			@Override
+			public void uncaughtException(Thread thread, Throwable ex) {
+			}
+		});
+		queue.start();
+		final DBRequestFuture<Integer> future = queue.add(new DBFetchRequest<Integer>(DBRequestInfo.create("failure", DBRequest.PRIORITY_UI)) {
+			@Override
+			public Integer fetch() {
+				throw new IllegalStateException("failure");
+			}
+		});
+
+		try {
+			future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			fail("A failed request returned a result");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		queue.join(TIMEOUT);
+	}
+
+	public void testFetchLanes() {
+		// a plain fetch may write, so only an explicit read fetch goes to the read lane
+		assertFalse(DBRequestInfo.createFetch().isRead());
+		assertTrue(DBRequestInfo.createReadFetch().isRead());
+	}
+
+	public void testReadsRunInParallel() throws Exception {
+		final DBRequestQueue queue = new DBRequestQueue("DBRequestQueueTest reads", 2);
+		queue.start();
+		try {
+			// each read waits for the other, so they only finish if they run at the same time
+			final CountDownLatch reading = new CountDownLatch(2);
+			final DBRequestFuture<Boolean> first = queue.add(new AwaitingFetch(DBRequestInfo.create("first", DBRequest.PRIORITY_UI, true), reading));
+			final DBRequestFuture<Boolean> second = queue.add(new AwaitingFetch(DBRequestInfo.create("second", DBRequest.PRIORITY_UI, true), reading));
+
+			assertTrue(first.get(TIMEOUT, TimeUnit.MILLISECONDS));
+			assertTrue(second.get(TIMEOUT, TimeUnit.MILLISECONDS));
+		} finally {
+			queue.quit();
+			queue.join(TIMEOUT);
+		}
+	}
+
+	public void testWritesNotBlockedByReads() throws Exception {
+		final DBRequestQueue queue = new DBRequestQueue("DBRequestQueueTest lanes", 1);
+		queue.start();
+		// the read counts down once and waits for the test to count down the other
+		final CountDownLatch release = new CountDownLatch(2);
+		try {
+			final DBRequestFuture<Boolean> read = queue.add(new AwaitingFetch(DBRequestInfo.create("read", DBRequest.PRIORITY_UI, true), release));
+			final DBRequestFuture<Integer> write = queue.add(new CountingFetch(DBRequestInfo.create("write", DBRequest.PRIORITY_LOW)));
+
+			assertEquals(Integer.valueOf(1), write.get(TIMEOUT, TimeUnit.MILLISECONDS));
+			assertFalse(read.isDone());
+			release.countDown();
+			assertTrue(read.get(TIMEOUT, TimeUnit.MILLISECONDS));
+		} finally {
+			release.countDown();
+			queue.quit();
+			queue.join(TIMEOUT);
+		}
+	}
+
+	/**
+	 * Keeps the queue busy until {@link #mRelease} counts down, so requests added meanwhile wait together
+	 */
+	private void block() throws InterruptedException {
+		mQueue.add(new DBRequest(DBRequestInfo.create("block", DBRequest.PRIORITY_UI)) {
+			@Override
+			public void run() {
+				mBlocking.countDown();
+				try {
+					mRelease.await(TIMEOUT, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		assertTrue(mBlocking.await(TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Waits until the queue ran all requests added before
+	 */
+	private void awaitIdle() throws Exception {
+		mQueue.add(new DBFetchRequest<Object>(DBRequestInfo.create("idle", DBRequest.PRIORITY_LOW)) {
+			@Override
+			public Object fetch() {
+				return null;
+			}
+		}).get(TIMEOUT, TimeUnit.MILLISECONDS);
+	}
+
+	private static DBRequestInfo keyed(String name) {
+		return DBRequestInfo.create(name, DBRequest.PRIORITY_NORMAL).setKey("fetch");
+	}
+
+	/**
+	 * Counts the latch down and returns whether it reached zero in time
+	 */
+	private static class AwaitingFetch extends DBFetchRequest<Boolean> {
+		private final CountDownLatch mLatch;
+
+		public AwaitingFetch(DBRequestInfo info, CountDownLatch latch) {
+			super(info);
+			mLatch = latch;
+		}
+
+		@Override
+		public Boolean fetch() {
+			mLatch.countDown();
+			try {
+				return mLatch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+	}
+
+	private class CountingFetch extends DBFetchRequest<Integer> {
+		public CountingFetch(DBRequestInfo info) {
+			super(info);
+		}
+
+		@Override
+		public Integer fetch() {
+			return mFetches.incrementAndGet();
+		}
+	}
+}
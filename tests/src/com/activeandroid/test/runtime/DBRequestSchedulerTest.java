@@ -0,0 +1,163 @@
+package com.activeandroid.test.runtime;
+
+import com.activeandroid.runtime.DBRequest;
+import com.activeandroid.runtime.DBRequestInfo;
+import com.activeandroid.runtime.DBRequestScheduler;
+import com.activeandroid.test.ActiveAndroidTestCase;
+
+/**
+ * Description: Tests the order a {@link com.activeandroid.runtime.DBRequestScheduler} hands out requests in
+ */
+public class DBRequestSchedulerTest extends ActiveAndroidTestCase {
+	private static final long NO_AGING = 60 * 60 * 1000;
+
+	public void testFifoWithinPriority() throws InterruptedException {
+		final DBRequestScheduler scheduler = new DBRequestScheduler(NO_AGING);
+		scheduler.add(new NamedRequest("first", DBRequest.PRIORITY_NORMAL));
+		scheduler.add(new NamedRequest("second", DBRequest.PRIORITY_NORMAL));
+		scheduler.add(new NamedRequest("third", DBRequest.PRIORITY_NORMAL));
+
+		assertEquals("first", scheduler.take().getName());
+		assertEquals("second", scheduler.take().getName());
+		assertEquals("third", scheduler.take().getName());
+		assertEquals(0, scheduler.size());
+	}
+
+	public void testHigherPriorityFirst() throws InterruptedException {
+		final DBRequestScheduler scheduler = new DBRequestScheduler(NO_AGING);
+		scheduler.add(new NamedRequest("low", DBRequest.PRIORITY_LOW));
+		scheduler.add(new NamedRequest("ui", DBRequest.PRIORITY_UI));
+		scheduler.add(new NamedRequest("normal", DBRequest.PRIORITY_NORMAL));
+
+		assertEquals("ui", scheduler.take().getName());
+		assertEquals("normal", scheduler.take().getName());
+		assertEquals("low", scheduler.take().getName());
+	}
+
+	public void testAging() throws InterruptedException {
+		final DBRequestScheduler scheduler = new DBRequestScheduler(10);
+		scheduler.add(new NamedRequest("low", DBRequest.PRIORITY_LOW));
+		// waits long enough to gain more levels than separate it from PRIORITY_UI
+		Thread.sleep(100);
+		scheduler.add(new NamedRequest("ui", DBRequest.PRIORITY_UI));
+
+		assertEquals("low", scheduler.take().getName());
+		assertEquals("ui", scheduler.take().getName());
+	}
+
+	public void testDeadline() throws InterruptedException {
+		final DBRequestScheduler scheduler = new DBRequestScheduler(NO_AGING);
+		scheduler.add(new NamedRequest("ui", DBRequest.PRIORITY_UI));
+		scheduler.add(new NamedRequest(DBRequestInfo.create("later", DBRequest.PRIORITY_LOW).setDeadline(NO_AGING)));
+		scheduler.add(new NamedRequest(DBRequestInfo.create("deadline", DBRequest.PRIORITY_LOW).setDeadline(10)));
+		Thread.sleep(50);
+
+		assertEquals("deadline", scheduler.take().getName());
+		assertEquals("ui", scheduler.take().getName());
+		assertEquals("later", scheduler.take().getName());
+	}
+
+	public void testAddTwice() {
+		final DBRequestScheduler scheduler = new DBRequestScheduler(NO_AGING);
+		final NamedRequest request = new NamedRequest("request", DBRequest.PRIORITY_NORMAL);
+
+		assertTrue(scheduler.add(request));
+		assertFalse(scheduler.add(request));
+		assertEquals(1, scheduler.size());
+	}
+
+	public void testMergeSameKey() throws InterruptedException {
+		final DBRequestScheduler scheduler = new DBRequestScheduler(NO_AGING);
+		final NamedRequest first = new NamedRequest(DBRequestInfo.create("first", DBRequest.PRIORITY_NORMAL).setKey("key"));
+		final NamedRequest second = new NamedRequest(DBRequestInfo.create("second", DBRequest.PRIORITY_NORMAL).setKey("key"));
+		final NamedRequest other = new NamedRequest(DBRequestInfo.create("other", DBRequest.PRIORITY_NORMAL).setKey("other"));
+
+		assertTrue(scheduler.add(first));
+		assertFalse(scheduler.add(second));
+		assertTrue(scheduler.add(other));
+		assertEquals(2, scheduler.size());
+
+		assertSame(first, scheduler.take());
+		// no longer waiting, so a request with the key is added on its own
+		assertTrue(scheduler.add(second));
+		assertSame(other, scheduler.take());
+		assertSame(second, scheduler.take());
+	}
+
+	public void testCancel() throws InterruptedException {
+		final DBRequestScheduler scheduler = new DBRequestScheduler(NO_AGING);
+		final NamedRequest cancelled = new NamedRequest("cancelled", DBRequest.PRIORITY_UI);
+		final NamedRequest kept = new NamedRequest("kept", DBRequest.PRIORITY_LOW);
+		scheduler.add(cancelled);
+		scheduler.add(kept);
+
+		assertTrue(scheduler.cancel(cancelled));
+		assertFalse(scheduler.cancel(cancelled));
+		assertTrue(cancelled.getFuture().isCancelled());
+		assertFalse(kept.getFuture().isDone());
+		assertEquals(1, scheduler.size());
+		assertSame(kept, scheduler.take());
+	}
+
+	public void testCancelMerged() {
+		final DBRequestScheduler scheduler = new DBRequestScheduler(NO_AGING);
+		final NamedRequest first = new NamedRequest(DBRequestInfo.create("first", DBRequest.PRIORITY_NORMAL).setKey("key"));
+		final NamedRequest second = new NamedRequest(DBRequestInfo.create("second", DBRequest.PRIORITY_NORMAL).setKey("key"));
+		scheduler.add(first);
+		scheduler.add(second);
+
+		// keeps waiting for the merged request
+		assertTrue(scheduler.cancel(first));
+		assertTrue(first.getFuture().isCancelled());
+		assertFalse(second.getFuture().isCancelled());
+		assertEquals(1, scheduler.size());
+
+		second.getFuture().cancel();
+		assertTrue(scheduler.cancel(first));
+		assertEquals(0, scheduler.size());
+	}
+
+	public void testCancelByName() throws InterruptedException {
+		final DBRequestScheduler scheduler = new DBRequestScheduler(NO_AGING);
+		final NamedRequest first = new NamedRequest("sync", DBRequest.PRIORITY_LOW);
+		final NamedRequest second = new NamedRequest("sync", DBRequest.PRIORITY_UI);
+		scheduler.add(first);
+		scheduler.add(new NamedRequest("fetch", DBRequest.PRIORITY_NORMAL));
+		scheduler.add(second);
+
+		scheduler.cancel("sync");
+
+		assertEquals(1, scheduler.size());
+		assertTrue(first.getFuture().isCancelled());
+		assertTrue(second.getFuture().isCancelled());
+		assertEquals("fetch", scheduler.take().getName());
+	}
+
+	public void testClear() {
+		final DBRequestScheduler scheduler = new DBRequestScheduler(NO_AGING);
+		final NamedRequest request = new NamedRequest("request", DBRequest.PRIORITY_NORMAL);
+		scheduler.add(request);
+		scheduler.add(new NamedRequest("other", DBRequest.PRIORITY_LOW));
+
+		scheduler.clear();
+
+		assertEquals(0, scheduler.size());
+		assertTrue(request.getFuture().isCancelled());
+		// cleared requests can be added again
+		assertTrue(scheduler.add(request));
+	}
+
+	private static class NamedRequest extends DBRequest {
+		public NamedRequest(String name, int priority) {
+			super(DBRequestInfo.create(name, priority));
+		}
+
+		public NamedRequest(DBRequestInfo info) {
+			super(info);
+		}
+
+		@Override
+		public void run() {
+		}
+	}
+}
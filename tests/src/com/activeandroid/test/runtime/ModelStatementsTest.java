@@ -0,0 +1,121 @@
+package com.activeandroid.test.runtime;
+
+import com.activeandroid.Cache;
+import com.activeandroid.annotation.Table;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.Select;
+import com.activeandroid.runtime.ModelStatements;
+import com.activeandroid.test.ActiveAndroidTestCase;
+import com.activeandroid.test.Customer;
+import com.activeandroid.test.MockModel;
+import com.activeandroid.test.UniqueModel;
+
+/**
+ * Description: Tests saving with each {@link com.activeandroid.annotation.Table.SaveMode}
+ */
+public class ModelStatementsTest extends ActiveAndroidTestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		new Delete().from(Customer.class).execute();
+		new Delete().from(UniqueModel.class).execute();
+		new Delete().from(MockModel.class).execute();
+		Cache.clear();
+	}
+
+	public void testExistsInsertsThenUpdates() {
+		final Customer customer = new Customer(1, "First");
+		customer.save();
+		assertTrue(customer.exists());
+
+		customer.name = "Second";
+		customer.save();
+
+		assertEquals(1, new Select().from(Customer.class).execute().size());
+		assertEquals("Second", loadCustomer(1).name);
+	}
+
+	public void testAutoIncrementKeyAssigned() {
+		final MockModel first = new MockModel();
+		first.save();
+		final MockModel second = new MockModel();
+		second.save();
+
+		assertTrue(first.id > 0);
+		assertTrue(second.id > first.id);
+
+		// saving again updates the row the key was assigned to
+		first.save();
+		assertEquals(2, new Select().from(MockModel.class).execute().size());
+	}
+
+	public void testReplace() {
+		new Customer(1, "First").save(Table.SaveMode.REPLACE);
+		new Customer(1, "Second").save(Table.SaveMode.REPLACE);
+
+		assertEquals(1, new Select().from(Customer.class).execute().size());
+		assertEquals("Second", loadCustomer(1).name);
+	}
+
+	public void testReplaceDeletesUniqueConflict() {
+		new UniqueModel(1, "A", "First").save(Table.SaveMode.REPLACE);
+		new UniqueModel(2, "A", "Second").save(Table.SaveMode.REPLACE);
+
+		// the row with the conflicting code is deleted, not updated
+		assertEquals(1, new Select().from(UniqueModel.class).execute().size());
+		assertNull(loadUnique(1));
+		assertEquals("Second", loadUnique(2).name);
+	}
+
+	public void testUpsert() {
+		new UniqueModel(1, "A", "First").save();
+		new UniqueModel(1, "B", "Second").save();
+
+		assertEquals(1, new Select().from(UniqueModel.class).execute().size());
+		final UniqueModel model = loadUnique(1);
+		assertEquals("B", model.code);
+		assertEquals("Second", model.name);
+	}
+
+	public void testUpsertKeepsUniqueConflict() {
+		new UniqueModel(1, "A", "First").save();
+		// ignored by the insert, and the update by primary key finds no row
+		final ModelStatements statements = ModelStatements.getStatements(Cache.getTableInfo(UniqueModel.class));
+		assertEquals(-1, statements.save(new UniqueModel(2, "A", "Second")));
+
+		assertEquals(1, new Select().from(UniqueModel.class).execute().size());
+		assertEquals("First", loadUnique(1).name);
+		assertNull(loadUnique(2));
+	}
+
+	public void testConstraintViolation() {
+		new UniqueModel(1, "A", "First").save(Table.SaveMode.EXISTS);
+
+		// logged and reported as -1 instead of thrown
+		final ModelStatements statements = ModelStatements.getStatements(Cache.getTableInfo(UniqueModel.class));
+		assertEquals(-1, statements.insert(new UniqueModel(2, "A", "Second")));
+		new UniqueModel(3, "A", "Third").save(Table.SaveMode.EXISTS);
+
+		assertEquals(1, new Select().from(UniqueModel.class).execute().size());
+		assertEquals("First", loadUnique(1).name);
+	}
+
+	public void testSaveModeOverride() {
+		new UniqueModel(1, "A", "First").save(Table.SaveMode.EXISTS);
+		new UniqueModel(1, "A", "Second").save(Table.SaveMode.EXISTS);
+
+		assertEquals(1, new Select().from(UniqueModel.class).execute().size());
+		assertEquals("Second", loadUnique(1).name);
+	}
+
+	private static Customer loadCustomer(long id) {
+		Cache.clear();
+		return new Select().from(Customer.class).where("Id = ?", id).executeSingle();
+	}
+
+	private static UniqueModel loadUnique(long id) {
+		Cache.clear();
+		return new Select().from(UniqueModel.class).where("Id = ?", id).executeSingle();
+	}
+}
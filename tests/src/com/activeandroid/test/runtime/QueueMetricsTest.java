@@ -0,0 +1,143 @@
+package com.activeandroid.test.runtime;
+
+import com.activeandroid.runtime.DBRequest;
+import com.activeandroid.runtime.DBRequestInfo;
+import com.activeandroid.runtime.DBRequestQueue;
+import com.activeandroid.runtime.QueueHistogram;
+import com.activeandroid.runtime.QueueMetrics;
+import com.activeandroid.runtime.QueueMetricsListener;
+import com.activeandroid.test.ActiveAndroidTestCase;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description: Tests the {@link com.activeandroid.runtime.QueueMetrics} a {@link com.activeandroid.runtime.DBRequestQueue} records
+ */
+public class QueueMetricsTest extends ActiveAndroidTestCase {
+	private static final long TIMEOUT = 10000;
+
+	private static final long SLEEP = 20;
+
+	private DBRequestQueue mQueue;
+
+	private final BlockingQueue<long[]> mRequests = new LinkedBlockingQueue<long[]>();
+
+	private final QueueMetricsListener mListener = new QueueMetricsListener() {
+		@Override
+		public void onRequestExecuted(QueueMetrics metrics, int priority, long waitTime, long executionTime) {
+			mRequests.add(new long[] {priority, waitTime, executionTime});
+		}
+
+		@Override
+		public void onBatchSaved(QueueMetrics metrics, int priority, int batchSize, long waitTime, long executionTime) {
+		}
+	};
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mQueue = new DBRequestQueue("QueueMetricsTest", 0);
+		mQueue.getMetrics().addListener(mListener);
+		mQueue.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mQueue.quit();
+		mQueue.join(TIMEOUT);
+		super.tearDown();
+	}
+
+	public void testRecordsRequest() throws InterruptedException {
+		mQueue.add(new SleepingRequest(DBRequest.PRIORITY_HIGH));
+
+		final long[] request = mRequests.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+		assertEquals(DBRequest.PRIORITY_HIGH, request[0]);
+		assertTrue(request[1] >= 0);
+		assertTrue(request[2] >= SLEEP * 1000);
+
+		final QueueMetrics metrics = mQueue.getMetrics();
+		assertEquals("QueueMetricsTest", metrics.getName());
+		assertEquals(1, metrics.getWaitTimes(DBRequest.PRIORITY_HIGH).getCount());
+		assertEquals(1, metrics.getDepths(DBRequest.PRIORITY_HIGH).getCount());
+		final QueueHistogram executionTimes = metrics.getExecutionTimes(DBRequest.PRIORITY_HIGH);
+		assertEquals(1, executionTimes.getCount());
+		assertEquals(request[2], executionTimes.getMax());
+		assertEquals(request[2], executionTimes.getSum());
+		assertEquals(0, metrics.getExecutionTimes(DBRequest.PRIORITY_LOW).getCount());
+	}
+
+	public void testPriorityCapped() throws InterruptedException {
+		mQueue.add(new SleepingRequest(QueueMetrics.MAX_PRIORITY + 3));
+		assertNotNull(mRequests.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		final QueueMetrics metrics = mQueue.getMetrics();
+		assertEquals(1, metrics.getExecutionTimes(QueueMetrics.MAX_PRIORITY).getCount());
+		assertSame(metrics.getExecutionTimes(QueueMetrics.MAX_PRIORITY), metrics.getExecutionTimes(QueueMetrics.MAX_PRIORITY + 3));
+	}
+
+	public void testHistogram() throws InterruptedException {
+		for (int i = 0; i < 3; i++) {
+			mQueue.add(new SleepingRequest(DBRequest.PRIORITY_NORMAL));
+		}
+		long max = 0;
+		for (int i = 0; i < 3; i++) {
+			max = Math.max(max, mRequests.poll(TIMEOUT, TimeUnit.MILLISECONDS)[2]);
+		}
+
+		final QueueHistogram executionTimes = mQueue.getMetrics().getExecutionTimes(DBRequest.PRIORITY_NORMAL);
+		assertEquals(3, executionTimes.getCount());
+		assertEquals(max, executionTimes.getMax());
+		assertEquals(executionTimes.getSum() / 3, executionTimes.getMean());
+		assertEquals(max, executionTimes.getPercentile(100));
+		assertTrue(executionTimes.getPercentile(50) <= max);
+		assertTrue(executionTimes.getPercentile(50) >= SLEEP * 1000 / 2);
+
+		long count = 0;
+		for (int i = 0; i < QueueHistogram.BUCKET_COUNT; i++) {
+			count += executionTimes.getBucketCount(i);
+		}
+		assertEquals(3, count);
+	}
+
+	public void testBucketUpperBounds() {
+		assertEquals(0, QueueHistogram.getBucketUpperBound(0));
+		assertEquals(1, QueueHistogram.getBucketUpperBound(1));
+		assertEquals(1023, QueueHistogram.getBucketUpperBound(10));
+		assertEquals(Long.MAX_VALUE, QueueHistogram.getBucketUpperBound(QueueHistogram.BUCKET_COUNT - 1));
+	}
+
+	public void testResetAndRemoveListener() throws Exception {
+		mQueue.add(new SleepingRequest(DBRequest.PRIORITY_UI));
+		assertNotNull(mRequests.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		final QueueMetrics metrics = mQueue.getMetrics();
+		metrics.reset();
+		assertEquals(0, metrics.getExecutionTimes(DBRequest.PRIORITY_UI).getCount());
+		assertEquals(0, metrics.getDepths(DBRequest.PRIORITY_UI).getCount());
+		assertEquals(0, metrics.getExecutionTimes(DBRequest.PRIORITY_UI).getPercentile(50));
+
+		metrics.removeListener(mListener);
+		mQueue.add(new SleepingRequest(DBRequest.PRIORITY_UI)).get(TIMEOUT, TimeUnit.MILLISECONDS);
+		// the request is recorded after its handle completes
+		Thread.sleep(SLEEP);
+		assertTrue(mRequests.isEmpty());
+	}
+
+	private static class SleepingRequest extends DBRequest {
+		public SleepingRequest(int priority) {
+			super(DBRequestInfo.create("sleep", priority));
+		}
+
+		@Override
+		public void run() {
+			try {
+				Thread.sleep(SLEEP);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.activeandroid.test.util;
+
+import com.activeandroid.Cache;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.Select;
+import com.activeandroid.test.ActiveAndroidTestCase;
+import com.activeandroid.test.Customer;
+import com.activeandroid.test.Order;
+import com.activeandroid.util.SQLiteUtils;
+
+import java.util.List;
+
+/**
+ * Description: Tests loading foreign keys with {@link com.activeandroid.util.SQLiteUtils#setBatchForeignKeys(boolean)},
+ * and loading models from cursors whose columns differ from the table
+ */
+public class SQLiteUtilsTest extends ActiveAndroidTestCase {
+	private static final int CUSTOMERS = 3;
+	private static final int ORDERS_PER_CUSTOMER = 4;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		new Delete().from(Order.class).execute();
+		new Delete().from(Customer.class).execute();
+		Cache.clear();
+		SQLiteUtils.setBatchForeignKeys(true);
+
+		long orderId = 1;
+		for (long customerId = 1; customerId <= CUSTOMERS; customerId++) {
+			final Customer customer = new Customer(customerId, "Customer " + customerId);
+			customer.save();
+			for (int i = 0; i < ORDERS_PER_CUSTOMER; i++) {
+				new Order(orderId++, customer, i).save();
+			}
+		}
+		Cache.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		SQLiteUtils.setBatchForeignKeys(false);
+		super.tearDown();
+	}
+
+	public void testPrefetchLoadsMissingEntities() {
+		final List<Order> orders = new Select().from(Order.class).orderBy("Id").execute();
+		assertOrders(orders);
+
+		// every order of a customer shares the one model the prefetch loaded
+		assertSame(orders.get(0).customer, orders.get(ORDERS_PER_CUSTOMER - 1).customer);
+	}
+
+	public void testRepeatedQueryWithCachedEntities() {
+		// loading the customers caches them, so the prefetch finds nothing to load
+		assertEquals(CUSTOMERS, new Select().from(Customer.class).execute().size());
+
+		assertOrders(new Select().from(Order.class).orderBy("Id").<Order>execute());
+		assertOrders(new Select().from(Order.class).orderBy("Id").<Order>execute());
+	}
+
+	public void testRepeatedQueryAfterPrefetch() {
+		assertOrders(new Select().from(Order.class).orderBy("Id").<Order>execute());
+		// the customers the first query prefetched are now cached
+		assertOrders(new Select().from(Order.class).orderBy("Id").<Order>execute());
+	}
+
+	public void testNullForeignKey() {
+		new Order(100, null, 0).save();
+
+		final Order order = new Select().from(Order.class).where("Id = ?", 100).executeSingle();
+		assertNotNull(order);
+		assertNull(order.customer);
+		assertEquals(CUSTOMERS * ORDERS_PER_CUSTOMER + 1, new Select().from(Order.class).execute().size());
+	}
+
+	public void testColumnsInAnyOrder() {
+		final List<Customer> customers = new Select("Name", "Id").from(Customer.class).orderBy("Id").execute();
+
+		assertEquals(CUSTOMERS, customers.size());
+		for (int i = 0; i < CUSTOMERS; i++) {
+			assertEquals(i + 1, customers.get(i).id);
+			assertEquals("Customer " + (i + 1), customers.get(i).name);
+		}
+	}
+
+	public void testMissingColumn() {
+		final List<Customer> customers = new Select("Id").from(Customer.class).orderBy("Id").execute();
+
+		assertEquals(CUSTOMERS, customers.size());
+		for (int i = 0; i < CUSTOMERS; i++) {
+			assertEquals(i + 1, customers.get(i).id);
+			assertNull(customers.get(i).name);
+		}
+	}
+
+	private static void assertOrders(List<Order> orders) {
+		assertEquals(CUSTOMERS * ORDERS_PER_CUSTOMER, orders.size());
+		for (int i = 0; i < orders.size(); i++) {
+			final Order order = orders.get(i);
+			assertEquals(i + 1, order.id);
+			assertNotNull(order.customer);
+			assertEquals(i / ORDERS_PER_CUSTOMER + 1, order.customer.id);
+			assertEquals(i % ORDERS_PER_CUSTOMER, order.total, 0);
+		}
+	}
+}